@@ -0,0 +1,51 @@
+#!/bin/bash
+
+# 平台线程（默认）与虚拟线程（virtual 配置）压测对比
+# 依赖：JDK 21、Maven、k6、已初始化的 MySQL
+# 结果写入 loadtest/results/<模式>-summary.json，对比 p95/p99 延迟、错误率与吞吐
+
+set -e
+cd "$(dirname "$0")/.."
+
+RESULT_DIR=loadtest/results
+mkdir -p "$RESULT_DIR"
+
+echo "[INFO] 使用 Java 21 工具链打包..."
+mvn -q -Pjava21 clean package -DskipTests
+JAR=$(ls target/bank-investment-risk-system-*.jar | head -n 1)
+
+run_case() {
+    local name=$1
+    local profiles=$2
+
+    echo "[INFO] 启动应用 - 模式: $name"
+    java -Djdk.tracePinnedThreads=short -jar "$JAR" --spring.profiles.active="$profiles" \
+        > "$RESULT_DIR/$name-app.log" 2>&1 &
+    local pid=$!
+
+    for _ in $(seq 1 60); do
+        if curl -s -o /dev/null http://localhost:8080/api/v3/api-docs; then
+            break
+        fi
+        sleep 2
+    done
+
+    echo "[INFO] 开始压测 - 模式: $name"
+    k6 run --summary-export "$RESULT_DIR/$name-summary.json" loadtest/market-open.js || true
+
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    # 钉住告警出现在应用日志中
+    grep -c "pinned" "$RESULT_DIR/$name-app.log" > "$RESULT_DIR/$name-pinned.txt" || true
+}
+
+run_case platform default
+run_case virtual virtual
+
+echo "[INFO] 对比结果（http_req_duration，单位毫秒）:"
+for name in platform virtual; do
+    echo "== $name =="
+    grep -o '"http_req_duration":{[^}]*}' "$RESULT_DIR/$name-summary.json" || true
+    grep -o '"http_reqs":{[^}]*}' "$RESULT_DIR/$name-summary.json" || true
+    echo "pinned events: $(cat "$RESULT_DIR/$name-pinned.txt" 2>/dev/null || echo 0)"
+done
@@ -0,0 +1,57 @@
+// 开盘突发流量压测脚本（k6）
+// 用法：k6 run -e BASE_URL=http://localhost:8080/api -e ACCOUNT=13800138001 -e PASSWORD=123456 market-open.js
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080/api';
+const PEAK_RATE = parseInt(__ENV.PEAK_RATE || '2000', 10);
+
+export const options = {
+  scenarios: {
+    market_open: {
+      executor: 'ramping-arrival-rate',
+      startRate: 50,
+      timeUnit: '1s',
+      preAllocatedVUs: 500,
+      maxVUs: 5000,
+      stages: [
+        { target: 50, duration: '30s' },        // 盘前
+        { target: PEAK_RATE, duration: '10s' }, // 开盘瞬间
+        { target: PEAK_RATE, duration: '60s' },
+        { target: 50, duration: '20s' },
+      ],
+    },
+  },
+  thresholds: {
+    http_req_failed: ['rate<0.01'],
+    http_req_duration: ['p(95)<800', 'p(99)<2000'],
+  },
+  summaryTrendStats: ['avg', 'med', 'p(90)', 'p(95)', 'p(99)', 'max'],
+};
+
+export function setup() {
+  const res = http.post(`${BASE_URL}/auth/login`, JSON.stringify({
+    account: __ENV.ACCOUNT || '13800138001',
+    password: __ENV.PASSWORD || '123456',
+  }), { headers: { 'Content-Type': 'application/json' } });
+  check(res, { 'login ok': (r) => r.status === 200 });
+  const body = res.json();
+  return {
+    token: body.data && body.data.token,
+    userId: body.data && body.data.user && body.data.user.id,
+  };
+}
+
+export default function (data) {
+  const params = { headers: { Authorization: `Bearer ${data.token}` } };
+  const roll = Math.random();
+  let res;
+  if (roll < 0.5) {
+    res = http.get(`${BASE_URL}/products`, params);
+  } else if (roll < 0.8) {
+    res = http.get(`${BASE_URL}/portfolios/user/${data.userId}/latest`, params);
+  } else {
+    res = http.get(`${BASE_URL}/risk-assessments/customer/${data.userId}/latest`, params);
+  }
+  check(res, { 'status 2xx/4xx': (r) => r.status > 0 && r.status < 500 });
+}
@@ -0,0 +1,30 @@
+#!/bin/bash
+
+# 启动本地主从实例，建立复制并在主库执行初始化脚本（经复制同步到从库）
+# 依赖：docker compose、mysql 客户端
+
+set -e
+cd "$(dirname "$0")"
+
+PRIMARY="mysql -h127.0.0.1 -P3306 -uroot -padmin"
+REPLICA="mysql -h127.0.0.1 -P3307 -uroot -padmin"
+
+echo "[INFO] 启动主从实例..."
+docker compose up -d --wait
+
+echo "[INFO] 创建复制账号..."
+$PRIMARY -e "CREATE USER IF NOT EXISTS 'repl'@'%' IDENTIFIED BY 'repl';
+             GRANT REPLICATION SLAVE ON *.* TO 'repl'@'%';"
+
+echo "[INFO] 建立复制..."
+$REPLICA -e "STOP REPLICA;
+             CHANGE REPLICATION SOURCE TO SOURCE_HOST='mysql-primary', SOURCE_PORT=3306,
+               SOURCE_USER='repl', SOURCE_PASSWORD='repl', SOURCE_AUTO_POSITION=1, GET_SOURCE_PUBLIC_KEY=1;
+             START REPLICA;"
+
+echo "[INFO] 初始化主库..."
+$PRIMARY bankrisk < ../../mysql.sql
+
+sleep 2
+$REPLICA -e "SHOW REPLICA STATUS\G" | grep -E "Replica_IO_Running|Replica_SQL_Running|Seconds_Behind_Source"
+echo "[INFO] 完成，使用 --spring.profiles.active=replica 启动应用"
@@ -0,0 +1,41 @@
+#!/bin/bash
+
+# 在 replica 配置下运行的应用上验证读写分离路由
+# 依赖：已执行 setup.sh、应用以 replica 配置运行在 8080、curl、jq
+
+set -e
+
+BASE_URL=${BASE_URL:-http://localhost:8080/api}
+ACCOUNT=${ACCOUNT:-13800138001}
+PASSWORD=${PASSWORD:-123456}
+REPLICA="mysql -h127.0.0.1 -P3307 -uroot -padmin"
+
+routing() {
+    # 输出各 target/reason 的路由计数
+    curl -s "$BASE_URL/actuator/prometheus" | grep '^datasource_routing_total' | sed 's/{application="[^"]*",/{/'
+}
+
+LOGIN=$(curl -s -H 'Content-Type: application/json' \
+    -d "{\"account\":\"$ACCOUNT\",\"password\":\"$PASSWORD\"}" "$BASE_URL/auth/login")
+TOKEN=$(echo "$LOGIN" | jq -r '.data.token')
+USER_ID=$(echo "$LOGIN" | jq -r '.data.user.id')
+AUTH="Authorization: Bearer $TOKEN"
+
+echo "== 1. 只读请求读从库（reason=read_only 增加）"
+curl -s -o /dev/null -H "$AUTH" "$BASE_URL/risk-assessments/customer/$USER_ID/latest"
+routing
+
+echo "== 2. 提交评估后粘滞窗口内读主库（reason=write、reason=sticky 增加）"
+curl -s -o /dev/null -H "$AUTH" -H 'Content-Type: application/json' \
+    -d "{\"userId\":$USER_ID,\"answers\":{\"q1\":\"3\",\"q2\":\"4\",\"invest_time\":\"3\",\"max_loss\":\"20\",\"target\":\"稳健增值\",\"year_for_invest\":\"5\"}}" \
+    "$BASE_URL/risk-assessments/submit"
+curl -s -H "$AUTH" "$BASE_URL/risk-assessments/customer/$USER_ID/latest" | jq -c '.data.id'
+routing
+
+echo "== 3. 停止从库复制线程后只读请求回退主库（reason=replica_unavailable 增加）"
+$REPLICA -e "STOP REPLICA SQL_THREAD;"
+sleep 3
+curl -s -o /dev/null "$BASE_URL/products"
+routing
+$REPLICA -e "START REPLICA SQL_THREAD;"
+echo "[INFO] 已恢复从库复制"
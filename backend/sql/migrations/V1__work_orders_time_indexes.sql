@@ -0,0 +1,4 @@
+-- 工单时间索引：看板校准与按日/按月统计使用范围条件查询 created_at / updated_at
+ALTER TABLE work_orders
+  ADD INDEX idx_wo_created (created_at),
+  ADD INDEX idx_wo_status_updated (status, updated_at);
@@ -0,0 +1,41 @@
+-- 产品评分汇总：替代对 product_ratings 全量历史的 AVG / ORDER BY LIMIT 1 / 相关子查询聚合
+CREATE TABLE product_rating_summary (
+  product_id            BIGINT PRIMARY KEY,
+  latest_rating_id      BIGINT,
+  latest_rating_date    DATE,
+  latest_overall_rating DECIMAL(3,1),
+  rating_count          BIGINT NOT NULL DEFAULT 0,  -- 综合评分非空的评分次数
+  rating_sum            DECIMAL(14,1) NOT NULL DEFAULT 0,
+  average_rating        DECIMAL(5,2),
+  decayed_sum           DOUBLE NOT NULL DEFAULT 0,  -- 折算到 decay_reference_date 的加权评分和
+  decayed_weight        DOUBLE NOT NULL DEFAULT 0,
+  decay_reference_date  DATE,
+  decayed_rating        DECIMAL(5,2),               -- 指数衰减平均（半衰期见 risk.rating.decay-half-life-days）
+  updated_at            DATETIME DEFAULT CURRENT_TIMESTAMP,
+  CONSTRAINT fk_summary_product FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE CASCADE,
+  INDEX idx_summary_latest (latest_overall_rating)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 根据评分历史回填（衰减半衰期 180 天，与 risk.rating.decay-half-life-days 保持一致）
+INSERT INTO product_rating_summary (product_id, latest_rating_id, latest_rating_date, latest_overall_rating,
+  rating_count, rating_sum, average_rating, decayed_sum, decayed_weight, decay_reference_date, decayed_rating, updated_at)
+SELECT agg.product_id, latest.id, latest.rating_date, latest.overall_rating,
+       agg.rating_count, agg.rating_sum, ROUND(agg.rating_sum / agg.rating_count, 2),
+       agg.decayed_sum, agg.decayed_weight, agg.reference_date, ROUND(agg.decayed_sum / agg.decayed_weight, 2), NOW()
+FROM (
+  SELECT pr.product_id, ref.reference_date,
+         COUNT(*) AS rating_count,
+         SUM(pr.overall_rating) AS rating_sum,
+         SUM(pr.overall_rating * EXP(-LN(2) / 180 * DATEDIFF(ref.reference_date, pr.rating_date))) AS decayed_sum,
+         SUM(EXP(-LN(2) / 180 * DATEDIFF(ref.reference_date, pr.rating_date))) AS decayed_weight
+  FROM product_ratings pr
+  JOIN (SELECT product_id, MAX(rating_date) AS reference_date
+        FROM product_ratings WHERE overall_rating IS NOT NULL GROUP BY product_id) ref
+    ON ref.product_id = pr.product_id
+  WHERE pr.overall_rating IS NOT NULL
+  GROUP BY pr.product_id, ref.reference_date
+) agg
+JOIN product_ratings latest
+  ON latest.id = (SELECT p2.id FROM product_ratings p2
+                  WHERE p2.product_id = agg.product_id AND p2.overall_rating IS NOT NULL
+                  ORDER BY p2.rating_date DESC, p2.id DESC LIMIT 1);
@@ -0,0 +1,30 @@
+-- 问卷与组合的 JSON 载荷改为 MySQL 原生 JSON 列，并为常用筛选字段建立生成列索引
+-- 早期由 Hibernate 按实体建表的库中这些列为 TEXT；已是 JSON 的库执行 MODIFY 无副作用
+
+-- 非法 JSON 无法转换，先置空（非空列置为空数组）
+UPDATE questionnaires SET answers = NULL WHERE answers IS NOT NULL AND JSON_VALID(answers) = 0;
+UPDATE questionnaires SET score_breakdown = NULL WHERE score_breakdown IS NOT NULL AND JSON_VALID(score_breakdown) = 0;
+UPDATE portfolio_recommendations SET product_ids = '[]' WHERE JSON_VALID(product_ids) = 0;
+UPDATE portfolio_recommendations SET alloc_pcts = '[]' WHERE JSON_VALID(alloc_pcts) = 0;
+UPDATE portfolio_recommendations SET llm_suggestion = NULL WHERE llm_suggestion IS NOT NULL AND JSON_VALID(llm_suggestion) = 0;
+
+ALTER TABLE questionnaires
+  MODIFY answers JSON NULL,
+  MODIFY score_breakdown JSON NULL,
+  ADD INDEX idx_questionnaire_target (target, max_loss);
+
+ALTER TABLE portfolio_recommendations
+  MODIFY product_ids JSON NOT NULL,
+  MODIFY alloc_pcts JSON NOT NULL,
+  MODIFY llm_suggestion JSON NULL;
+
+-- 虚拟生成列：值在读取时由 JSON 计算，二级索引中物化（需 MySQL 8.0.21+ 的 JSON_VALUE）
+ALTER TABLE portfolio_recommendations
+  ADD COLUMN products_count INT AS (JSON_LENGTH(product_ids)) VIRTUAL,
+  ADD COLUMN risk_level VARCHAR(16) AS (JSON_VALUE(llm_suggestion, '$.risk_level' RETURNING CHAR(16) NULL ON ERROR)) VIRTUAL,
+  ADD COLUMN expected_return DECIMAL(10,4) AS (JSON_VALUE(llm_suggestion, '$.expected_return' RETURNING DECIMAL(10,4) NULL ON ERROR)) VIRTUAL,
+  ADD COLUMN expected_risk DECIMAL(10,4) AS (JSON_VALUE(llm_suggestion, '$.expected_risk' RETURNING DECIMAL(10,4) NULL ON ERROR)) VIRTUAL;
+
+ALTER TABLE portfolio_recommendations
+  ADD INDEX idx_pr_risk_return (risk_level, expected_return),
+  ADD INDEX idx_pr_products_count (products_count);
@@ -0,0 +1,10 @@
+-- 审核意见改为压缩编码存储（CompressedTextConverter）
+-- TEXT 转为 BLOB 保留原有 UTF-8 字节，应用按无头部的旧格式读取；
+-- 之后由 PayloadReencodingService 在后台分批重写为压缩格式（storage.reencode.enabled）
+ALTER TABLE work_orders
+  MODIFY junior_comment    MEDIUMBLOB,
+  MODIFY mid_comment       MEDIUMBLOB,
+  MODIFY senior_comment    MEDIUMBLOB,
+  MODIFY committee_comment MEDIUMBLOB;
+
+-- 重编码完成后可重建表以回收空间：ALTER TABLE work_orders ENGINE=InnoDB;
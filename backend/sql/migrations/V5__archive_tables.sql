@@ -0,0 +1,32 @@
+-- 冷数据归档（ArchiveService）：已完成超过保留期的工单、历史问卷移入按月分区的归档表
+-- 分区表不支持外键，热表不分区；归档表去掉外键与自增，主键须包含分区列 created_at
+
+-- 组合明细不再以外键关联工单：工单移入归档时 ON DELETE CASCADE 会删除组合明细（idx_pr_wo 保留）
+ALTER TABLE portfolio_recommendations DROP FOREIGN KEY fk_pr_wo;
+
+CREATE TABLE work_orders_archive LIKE work_orders;
+ALTER TABLE work_orders_archive
+  MODIFY id BIGINT NOT NULL,
+  MODIFY created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  DROP PRIMARY KEY,
+  ADD PRIMARY KEY (id, created_at);
+ALTER TABLE work_orders_archive
+  PARTITION BY RANGE COLUMNS(created_at) (
+    PARTITION p_history VALUES LESS THAN ('2024-01-01'),
+    PARTITION pmax VALUES LESS THAN (MAXVALUE)
+  );
+
+CREATE TABLE questionnaires_archive LIKE questionnaires;
+ALTER TABLE questionnaires_archive
+  MODIFY id BIGINT NOT NULL,
+  MODIFY created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  DROP PRIMARY KEY,
+  ADD PRIMARY KEY (id, created_at);
+ALTER TABLE questionnaires_archive
+  PARTITION BY RANGE COLUMNS(created_at) (
+    PARTITION p_history VALUES LESS THAN ('2024-01-01'),
+    PARTITION pmax VALUES LESS THAN (MAXVALUE)
+  );
+
+-- 月分区由 ArchiveService 在移入数据前从 pmax 拆分，无需手工维护。
+-- 之后对热表的列变更须同步到归档表（INSERT ... SELECT * 依赖两表列顺序一致）
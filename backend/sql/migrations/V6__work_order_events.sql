@@ -0,0 +1,69 @@
+-- 工单审核历史改为只追加的事件日志（WorkOrderEventLog），work_orders 只保留当前状态
+CREATE TABLE work_order_events (
+  id           BIGINT AUTO_INCREMENT PRIMARY KEY,
+  work_order_id BIGINT NOT NULL,
+  event_type   VARCHAR(16) NOT NULL,
+  stage        VARCHAR(32),
+  from_status  VARCHAR(32),
+  to_status    VARCHAR(32) NOT NULL,
+  actor_id     BIGINT,
+  reviewer_id  BIGINT,
+  comment      MEDIUMBLOB,
+  occurred_at  DATETIME NOT NULL,
+  INDEX idx_woe_work_order (work_order_id, id),
+  INDEX idx_woe_actor (actor_id, occurred_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 由宽表回填历史（热表与归档表）：最后一个有提交时间的环节在工单被拒绝时记为 REJECT，其余为 APPROVE。
+-- 意见按原字节复制，旧格式由 PayloadReencodingService 在后台改写
+INSERT INTO work_order_events
+  (work_order_id, event_type, stage, from_status, to_status, actor_id, reviewer_id, comment, occurred_at)
+SELECT work_order_id, event_type, stage, from_status, to_status, actor_id, NULL, comment, occurred_at
+FROM (
+  SELECT id AS work_order_id, 'CREATE' AS event_type, 'JUNIOR' AS stage, NULL AS from_status,
+         'PENDING_JUNIOR' AS to_status, customer_id AS actor_id, NULL AS comment, created_at AS occurred_at, 0 AS seq
+  FROM (SELECT * FROM work_orders UNION ALL SELECT * FROM work_orders_archive) w
+  WHERE created_at IS NOT NULL
+  UNION ALL
+  SELECT id, IF(status = 'REJECTED' AND mid_commit_time IS NULL, 'REJECT', 'APPROVE'), 'JUNIOR', 'PENDING_JUNIOR',
+         IF(status = 'REJECTED' AND mid_commit_time IS NULL, 'REJECTED', 'PENDING_MID'),
+         junior_reviewer_id, junior_comment, junior_commit_time, 1
+  FROM (SELECT * FROM work_orders UNION ALL SELECT * FROM work_orders_archive) w
+  WHERE junior_commit_time IS NOT NULL
+  UNION ALL
+  SELECT id, IF(status = 'REJECTED' AND senior_commit_time IS NULL, 'REJECT', 'APPROVE'), 'MID', 'PENDING_MID',
+         IF(status = 'REJECTED' AND senior_commit_time IS NULL, 'REJECTED', 'PENDING_SENIOR'),
+         mid_reviewer_id, mid_comment, mid_commit_time, 2
+  FROM (SELECT * FROM work_orders UNION ALL SELECT * FROM work_orders_archive) w
+  WHERE mid_commit_time IS NOT NULL
+  UNION ALL
+  SELECT id, IF(status = 'REJECTED' AND committee_commit_time IS NULL, 'REJECT', 'APPROVE'), 'SENIOR', 'PENDING_SENIOR',
+         IF(status = 'REJECTED' AND committee_commit_time IS NULL, 'REJECTED', 'PENDING_COMMITTEE'),
+         senior_reviewer_id, senior_comment, senior_commit_time, 3
+  FROM (SELECT * FROM work_orders UNION ALL SELECT * FROM work_orders_archive) w
+  WHERE senior_commit_time IS NOT NULL
+  UNION ALL
+  SELECT id, IF(status = 'REJECTED', 'REJECT', 'APPROVE'), 'COMMITTEE', 'PENDING_COMMITTEE',
+         IF(status = 'REJECTED', 'REJECTED', 'APPROVED'),
+         committee_reviewer_id, committee_comment, committee_commit_time, 4
+  FROM (SELECT * FROM work_orders UNION ALL SELECT * FROM work_orders_archive) w
+  WHERE committee_commit_time IS NOT NULL
+) history
+ORDER BY work_order_id, seq;
+
+-- 确认回填结果后删除宽表字段；归档表须同步删除（归档时按 SELECT * 复制）
+ALTER TABLE work_orders
+  DROP FOREIGN KEY fk_wo_jr,
+  DROP FOREIGN KEY fk_wo_mr,
+  DROP FOREIGN KEY fk_wo_sr,
+  DROP FOREIGN KEY fk_wo_cr;
+ALTER TABLE work_orders
+  DROP COLUMN junior_reviewer_id, DROP COLUMN junior_comment, DROP COLUMN junior_commit_time,
+  DROP COLUMN mid_reviewer_id, DROP COLUMN mid_comment, DROP COLUMN mid_commit_time,
+  DROP COLUMN senior_reviewer_id, DROP COLUMN senior_comment, DROP COLUMN senior_commit_time,
+  DROP COLUMN committee_reviewer_id, DROP COLUMN committee_comment, DROP COLUMN committee_commit_time;
+ALTER TABLE work_orders_archive
+  DROP COLUMN junior_reviewer_id, DROP COLUMN junior_comment, DROP COLUMN junior_commit_time,
+  DROP COLUMN mid_reviewer_id, DROP COLUMN mid_comment, DROP COLUMN mid_commit_time,
+  DROP COLUMN senior_reviewer_id, DROP COLUMN senior_comment, DROP COLUMN senior_commit_time,
+  DROP COLUMN committee_reviewer_id, DROP COLUMN committee_comment, DROP COLUMN committee_commit_time;
@@ -0,0 +1,13 @@
+-- 认领租约（ClaimLeaseService）：认领带到期时间，心跳续期，到期由后台分批释放
+-- 归档表按 SELECT * 复制，须在相同位置增加同名列
+ALTER TABLE work_orders
+  ADD COLUMN claim_expires_at DATETIME AFTER reviewer_id,
+  ADD INDEX idx_wo_claim_expires (claim_expires_at);
+ALTER TABLE work_orders_archive
+  ADD COLUMN claim_expires_at DATETIME AFTER reviewer_id;
+
+-- 已有认领从现在起获得一个完整租约（与 workflow.claims.lease-ms 默认值一致）
+UPDATE work_orders
+SET claim_expires_at = NOW() + INTERVAL 30 MINUTE, updated_at = updated_at
+WHERE reviewer_id IS NOT NULL
+  AND status IN ('PENDING_JUNIOR', 'PENDING_MID', 'PENDING_SENIOR', 'PENDING_COMMITTEE');
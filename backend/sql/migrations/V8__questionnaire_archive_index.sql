@@ -0,0 +1,3 @@
+-- ArchiveService 选取待归档问卷（is_latest = FALSE AND created_at < cutoff）时按索引范围扫描，不再全表扫描
+ALTER TABLE questionnaires
+  ADD INDEX idx_questionnaire_archive (is_latest, created_at);
@@ -0,0 +1,63 @@
+package com.xingye.bankrisk.quant;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 情景模拟基准测试
+ * 典型组合规模（10个产品），分别测量不同路径数下的单次模拟耗时
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MonteCarloSimulatorBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int paths;
+
+    @Param({"10"})
+    private int products;
+
+    private ForkJoinPool pool;
+    private MonteCarloSimulator simulator;
+    private double[] weights;
+    private double[] expectedReturns;
+    private double[] covariance;
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        simulator = new MonteCarloSimulator(pool);
+
+        weights = new double[products];
+        expectedReturns = new double[products];
+        double[] volatility = new double[products];
+        for (int i = 0; i < products; i++) {
+            weights[i] = 1.0 / products;
+            expectedReturns[i] = 0.02 + 0.08 * i / products;
+            volatility[i] = 0.01 + 0.25 * i / products;
+        }
+        covariance = new double[products * products];
+        for (int i = 0; i < products; i++) {
+            for (int j = 0; j < products; j++) {
+                double correlation = i == j ? 1.0 : 0.3;
+                covariance[i * products + j] = correlation * volatility[i] * volatility[j];
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public MonteCarloSimulator.Result simulate() {
+        return simulator.simulate(weights, expectedReturns, covariance, 5, paths, 0.95, 42L);
+    }
+}
@@ -0,0 +1,18 @@
+package com.xingye.bankrisk.concurrent;
+
+import java.lang.annotation.*;
+
+/**
+ * 并发合并：同一时刻参数相同的调用只执行一次，其余调用等待并共享结果（含异常）
+ * 只用于无副作用的读取方法；返回值会被多个调用方共享，调用方不得修改。等待者得到的实体是执行者结果的浅拷贝，不属于任何会话，不能依赖延迟加载
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface SingleFlight {
+
+    /**
+     * 合并组名，同时作为指标标签；默认取 类名.方法名
+     */
+    String value() default "";
+}
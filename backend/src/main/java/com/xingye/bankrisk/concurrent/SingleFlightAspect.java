@@ -0,0 +1,35 @@
+package com.xingye.bankrisk.concurrent;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * 处理 {@link SingleFlight}：以方法参数为键合并并发调用
+ * 优先级高于事务切面，等待者不开启事务、不占用数据库连接
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+@RequiredArgsConstructor
+public class SingleFlightAspect {
+
+    private final SingleFlightExecutor singleFlightExecutor;
+
+    @Around("@annotation(singleFlight)")
+    public Object coalesce(ProceedingJoinPoint joinPoint, SingleFlight singleFlight) throws Throwable {
+        String name = singleFlight.value();
+        if (name.isEmpty()) {
+            MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+            name = signature.getDeclaringType().getSimpleName() + "." + signature.getName();
+        }
+        return singleFlightExecutor.execute(name, Arrays.asList(joinPoint.getArgs()), joinPoint::proceed);
+    }
+}
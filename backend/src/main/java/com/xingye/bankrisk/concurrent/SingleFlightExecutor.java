@@ -0,0 +1,202 @@
+package com.xingye.bankrisk.concurrent;
+
+import com.xingye.bankrisk.datasource.ReplicaRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 并发调用合并（single-flight）
+ * 同一 组名+键 的并发调用中，第一个调用执行，其余等待并共享结果或异常；执行结束即移除，不缓存结果。
+ * 以下情况直接执行、不参与合并：调用方处于写事务中（需读到本事务未提交的修改）、
+ * 调用方处于读己之写的粘滞窗口内（不能共享写入之前开始的读取）、同一线程内重入同一个键。
+ * 等待超过 wait-timeout-ms 的调用不再等待执行者，改为自行执行。执行者在只读事务内取得的实体仍由它的会话管理，
+ * 等待者拿到的是这些实体的浅拷贝（不属于任何会话），执行者自己仍使用受管实体
+ */
+@Component
+@RequiredArgsConstructor
+public class SingleFlightExecutor {
+
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<ReplicaRouter> replicaRouterProvider;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${singleflight.wait-timeout-ms:5000}")
+    private long waitTimeoutMillis;
+
+    private final ConcurrentHashMap<FlightKey, Flight> flights = new ConcurrentHashMap<>();
+
+    // 当前线程作为执行者持有的键，用于识别重入
+    private final ThreadLocal<Set<FlightKey>> leading = ThreadLocal.withInitial(HashSet::new);
+
+    /**
+     * 可抛出受检异常的调用
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws Throwable;
+    }
+
+    /**
+     * 合并执行；供不抛受检异常的调用方使用
+     */
+    public <T> T get(String name, Object key, Supplier<T> supplier) {
+        try {
+            return execute(name, key, supplier::get);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 合并执行
+     *
+     * @param name 合并组名，同时作为指标标签
+     * @param key 组内的键（通常为方法参数），需正确实现 equals/hashCode；不作为指标标签
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String name, Object key, Call<T> call) throws Throwable {
+        FlightKey flightKey = new FlightKey(name, key);
+        if (mustBypass(flightKey)) {
+            count(name, "bypass");
+            return call.call();
+        }
+
+        Flight flight = new Flight();
+        Flight existing = flights.putIfAbsent(flightKey, flight);
+        if (existing != null) {
+            existing.followers.incrementAndGet();
+            count(name, "follower");
+            try {
+                return (T) existing.result.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            } catch (TimeoutException e) {
+                // 执行者迟迟不返回时不陪它一起挂起
+                count(name, "timeout");
+                return call.call();
+            }
+        }
+
+        count(name, "leader");
+        leading.get().add(flightKey);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            T value = call.call();
+            flight.result.complete(copyForFollowers(value));
+            return value;
+        } catch (Throwable e) {
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            // 先移除再记录：此后到达的调用开始新的执行，不会拿到已完成的旧结果
+            flights.remove(flightKey, flight);
+            leading.get().remove(flightKey);
+            sample.stop(Timer.builder("singleflight.execution")
+                    .description("合并执行的耗时")
+                    .tags("name", name)
+                    .register(meterRegistry));
+            DistributionSummary.builder("singleflight.followers")
+                    .description("每次执行合并掉的并发调用数")
+                    .tags("name", name)
+                    .register(meterRegistry)
+                    .record(flight.followers.get());
+        }
+    }
+
+    // 私有辅助方法
+
+    private boolean mustBypass(FlightKey flightKey) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return true;
+        }
+        ReplicaRouter replicaRouter = replicaRouterProvider.getIfAvailable();
+        if (replicaRouter != null && replicaRouter.isCurrentUserSticky()) {
+            return true;
+        }
+        return leading.get().contains(flightKey);
+    }
+
+    /**
+     * 执行者处于事务内时，结果中受本线程会话管理的实体替换为浅拷贝后再共享；事务已在调用内结束时实体本已脱离，直接共享
+     */
+    private Object copyForFollowers(Object value) {
+        if (value == null || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return value;
+        }
+        if (value instanceof Optional<?> optional) {
+            return optional.map(this::copyEntity);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            list.forEach(element -> copy.add(copyEntity(element)));
+            return copy;
+        }
+        if (value instanceof Set<?> set) {
+            Set<Object> copy = new LinkedHashSet<>();
+            set.forEach(element -> copy.add(copyEntity(element)));
+            return copy;
+        }
+        return copyEntity(value);
+    }
+
+    private Object copyEntity(Object value) {
+        // contains 只接受实体类型
+        if (value == null || !Hibernate.getClass(value).isAnnotationPresent(Entity.class) || !entityManager.contains(value)) {
+            return value;
+        }
+        Object entity = Hibernate.unproxy(value);
+        Object copy = BeanUtils.instantiateClass(entity.getClass());
+        BeanUtils.copyProperties(entity, copy);
+        return copy;
+    }
+
+    private void count(String name, String role) {
+        Counter.builder("singleflight.calls")
+                .description("按角色统计的合并调用数（leader 执行、follower 共享结果、timeout 等待超时后自行执行、bypass 未参与合并）")
+                .tags("name", name, "role", role)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private record FlightKey(String name, Object key) {
+    }
+
+    /**
+     * 进行中的执行
+     */
+    private static class Flight {
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private final AtomicInteger followers = new AtomicInteger();
+    }
+}
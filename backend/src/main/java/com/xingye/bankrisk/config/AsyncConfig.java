@@ -0,0 +1,17 @@
+package com.xingye.bankrisk.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+/**
+ * 异步任务配置
+ * 使用 Spring Boot 自动配置的 applicationTaskExecutor，
+ * 启用 virtual 配置（spring.threads.virtual.enabled）时自动切换为虚拟线程执行器。
+ * 加锁约定：请求、异步任务和定时任务都可能运行在虚拟线程上，临界区内有数据库访问或其他阻塞调用时
+ * 使用 ReentrantLock 而不是 synchronized（JDK 21 中虚拟线程在 synchronized 内阻塞会钉住载体线程）；
+ * 各处锁的注释只说明其保护的状态
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+}
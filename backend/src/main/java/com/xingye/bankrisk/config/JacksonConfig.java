@@ -0,0 +1,31 @@
+package com.xingye.bankrisk.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.xingye.bankrisk.json.ProductJsonCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * JSON序列化配置
+ * Module 类型的 Bean 由 Spring Boot 自动注册到 MVC 使用的 ObjectMapper
+ */
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * 属性读写改用生成的访问器，避免逐字段反射调用
+     */
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    /**
+     * 产品对象按缓存的JSON片段输出
+     */
+    @Bean
+    public Module productJsonCacheModule(ProductJsonCache productJsonCache) {
+        return productJsonCache.module();
+    }
+}
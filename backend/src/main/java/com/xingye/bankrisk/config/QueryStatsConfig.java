@@ -0,0 +1,34 @@
+package com.xingye.bankrisk.config;
+
+import com.xingye.bankrisk.metrics.QueryCountingDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * SQL统计配置
+ * 将数据源包装为 QueryCountingDataSource，统计结果由 QueryStatsFilter（请求）和 QueryStatsAspect（服务方法）汇总
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "query-stats", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class QueryStatsConfig {
+
+    /**
+     * 静态声明，避免后处理器提前初始化本配置类
+     */
+    @Bean
+    public static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof QueryCountingDataSource)) {
+                    return new QueryCountingDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+}
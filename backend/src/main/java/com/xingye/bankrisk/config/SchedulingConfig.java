@@ -0,0 +1,15 @@
+package com.xingye.bankrisk.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 定时任务配置类
+ * 调度线程池按 spring.task.scheduling.pool.size 配置，大小不少于定时任务数，短周期任务不会排在长任务之后；
+ * 新增定时任务时同步调大。fixedDelay 任务在上一次执行结束后才安排下一次，同一任务不会并发执行：
+ * 只由单个定时任务访问的状态不需要加锁，多个定时任务共享的状态仍需加锁
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,6 +1,7 @@
 package com.xingye.bankrisk.controller;
 
 import com.xingye.bankrisk.entity.Questionnaire;
+import com.xingye.bankrisk.service.IdempotencyService;
 import com.xingye.bankrisk.service.RiskAssessmentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -25,36 +26,41 @@ import java.util.Map;
 public class AssessmentController {
 
     private final RiskAssessmentService riskAssessmentService;
+    private final IdempotencyService idempotencyService;
 
     /**
      * 提交风险评估
+     * 携带 Idempotency-Key 时重复提交只创建一份问卷并重放首次响应
      */
     @PostMapping("/submit")
     @Operation(summary = "提交风险评估", description = "提交风险评估问卷并计算风险等级")
     public ResponseEntity<Map<String, Object>> submitAssessment(
             @RequestHeader("Authorization") String token,
+            @RequestHeader(value = IdempotencyService.KEY_HEADER, required = false) String idempotencyKey,
             @RequestBody AssessmentSubmitRequest request) {
 
         log.info("[INFO]AssessmentController::submitAssessment: 提交风险评估 - UserID: {}", request.getUserId());
 
-        try {
-            Questionnaire questionnaire = riskAssessmentService.submitAssessment(
-                    request.getUserId(),
-                    request.getAnswers()
-            );
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "风险评估提交成功");
-            response.put("data", questionnaire);
-
-            log.info("[INFO]AssessmentController::submitAssessment: 风险评估完成 - QuestionnaireID: {}", questionnaire.getId());
-            return ResponseEntity.ok(response);
-
-        } catch (Exception e) {
-            log.error("[ERROR]AssessmentController::submitAssessment: 风险评估提交失败", e);
-            return createErrorResponse("风险评估提交失败: " + e.getMessage());
-        }
+        return idempotencyService.execute("assessment-submit", idempotencyKey, request, () -> {
+            try {
+                Questionnaire questionnaire = riskAssessmentService.submitAssessment(
+                        request.getUserId(),
+                        request.getAnswers()
+                );
+
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("message", "风险评估提交成功");
+                response.put("data", questionnaire);
+
+                log.info("[INFO]AssessmentController::submitAssessment: 风险评估完成 - QuestionnaireID: {}", questionnaire.getId());
+                return ResponseEntity.ok(response);
+
+            } catch (Exception e) {
+                log.error("[ERROR]AssessmentController::submitAssessment: 风险评估提交失败", e);
+                return createErrorResponse("风险评估提交失败: " + e.getMessage());
+            }
+        });
     }
 
     /**
@@ -2,14 +2,23 @@ package com.xingye.bankrisk.controller;
 
 import com.xingye.bankrisk.entity.User;
 import com.xingye.bankrisk.entity.WorkOrder;
+import com.xingye.bankrisk.service.AuditDashboardService;
+import com.xingye.bankrisk.service.AuditQueueStreamService;
 import com.xingye.bankrisk.service.AuthService;
+import com.xingye.bankrisk.service.ClaimLeaseService;
+import com.xingye.bankrisk.service.ReviewerAssignmentService;
 import com.xingye.bankrisk.service.WorkflowService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.List;
@@ -28,6 +37,10 @@ public class AuditController {
 
     private final WorkflowService workflowService;
     private final AuthService authService;
+    private final AuditDashboardService auditDashboardService;
+    private final AuditQueueStreamService auditQueueStreamService;
+    private final ReviewerAssignmentService reviewerAssignmentService;
+    private final ClaimLeaseService claimLeaseService;
 
     /**
      * 获取审核任务列表
@@ -43,6 +56,7 @@ public class AuditController {
         try {
             String actualToken = token.startsWith("Bearer ") ? token.substring(7) : token;
             String userRole = authService.getRoleFromToken(actualToken);
+            reviewerAssignmentService.touch(authService.getUserIdFromToken(actualToken), convertToUserRole(userRole));
 
             // 根据用户角色确定审核员类型
             WorkOrder.WorkOrderStatus workOrderStatus = null;
@@ -82,6 +96,7 @@ public class AuditController {
         try {
             String actualToken = token.startsWith("Bearer ") ? token.substring(7) : token;
             Long reviewerId = authService.getUserIdFromToken(actualToken);
+            reviewerAssignmentService.touch(reviewerId, convertToUserRole(authService.getRoleFromToken(actualToken)));
 
             List<WorkOrder> tasks = workflowService.getReviewerTasks(reviewerId);
 
@@ -121,6 +136,29 @@ public class AuditController {
         }
     }
 
+    /**
+     * 获取审核任务历史
+     */
+    @GetMapping("/tasks/{id}/history")
+    @Operation(summary = "获取审核历史", description = "回放工单事件，返回各环节的审核记录和完整事件列表")
+    public ResponseEntity<Map<String, Object>> getAuditTaskHistory(@PathVariable Long id) {
+        log.info("[INFO]AuditController::getAuditTaskHistory: 获取审核历史 - ID: {}", id);
+
+        try {
+            WorkflowService.WorkOrderHistory history = workflowService.getWorkOrderHistory(id);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", history);
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("[ERROR]AuditController::getAuditTaskHistory: 获取审核历史失败", e);
+            return createErrorResponse("获取审核历史失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 认领审核任务
      */
@@ -184,14 +222,113 @@ public class AuditController {
         }
     }
 
+    /**
+     * 批量完成审核任务
+     */
+    @PostMapping("/tasks/bulk-complete")
+    @Operation(summary = "批量完成审核任务", description = "对多个工单作出同一审核决定，逐项返回处理结果")
+    public ResponseEntity<Map<String, Object>> bulkCompleteAuditTasks(
+            @RequestHeader("Authorization") String token,
+            @RequestBody BulkAuditDecisionRequest request) {
+
+        log.info("[INFO]AuditController::bulkCompleteAuditTasks: 批量完成审核任务 - Decision: {}, Count: {}",
+                request.getDecision(), request.getWorkOrderIds() != null ? request.getWorkOrderIds().size() : 0);
+
+        try {
+            String actualToken = token.startsWith("Bearer ") ? token.substring(7) : token;
+            Long reviewerId = authService.getUserIdFromToken(actualToken);
+
+            List<WorkflowService.BulkDecisionResult> results = workflowService.bulkAdvanceWorkflow(
+                    reviewerId, request.getWorkOrderIds(), request.getDecision(), request.getComments());
+            long succeeded = results.stream().filter(WorkflowService.BulkDecisionResult::isSuccess).count();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "批量审核完成");
+            response.put("data", results);
+            response.put("succeeded", succeeded);
+            response.put("failed", results.size() - succeeded);
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("[ERROR]AuditController::bulkCompleteAuditTasks: 批量完成审核任务失败", e);
+            return createErrorResponse("批量完成审核任务失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 审核员心跳：续期名下工单的认领租约
+     */
+    @PostMapping("/heartbeat")
+    @Operation(summary = "审核心跳", description = "续期当前审核员名下全部待审工单的认领租约，同时标记在线")
+    public ResponseEntity<Map<String, Object>> heartbeat(@RequestHeader("Authorization") String token) {
+        try {
+            String actualToken = token.startsWith("Bearer ") ? token.substring(7) : token;
+            Long reviewerId = authService.getUserIdFromToken(actualToken);
+
+            reviewerAssignmentService.touch(reviewerId, convertToUserRole(authService.getRoleFromToken(actualToken)));
+            int extended = claimLeaseService.heartbeat(reviewerId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", Map.of("extended", extended));
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("[ERROR]AuditController::heartbeat: 审核心跳失败", e);
+            return createErrorResponse("审核心跳失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 更新审核员在线状态
+     */
+    @PutMapping("/presence")
+    @Operation(summary = "更新在线状态", description = "上线或心跳后接收自动分配的审核任务；下线后收回系统分配的未完成任务")
+    public ResponseEntity<Map<String, Object>> updatePresence(
+            @RequestHeader("Authorization") String token,
+            @RequestParam(defaultValue = "true") boolean online) {
+
+        try {
+            String actualToken = token.startsWith("Bearer ") ? token.substring(7) : token;
+            Long reviewerId = authService.getUserIdFromToken(actualToken);
+
+            if (online) {
+                reviewerAssignmentService.touch(reviewerId, convertToUserRole(authService.getRoleFromToken(actualToken)));
+            } else {
+                reviewerAssignmentService.goOffline(reviewerId);
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", online ? "已上线" : "已下线");
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("[ERROR]AuditController::updatePresence: 更新在线状态失败", e);
+            return createErrorResponse("更新在线状态失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取工作流统计数据
      */
     @GetMapping("/statistics")
     @Operation(summary = "获取审核统计", description = "获取审核流程的统计数据")
-    public ResponseEntity<Map<String, Object>> getAuditStatistics() {
+    public ResponseEntity<Map<String, Object>> getAuditStatistics(WebRequest webRequest) {
         log.info("[INFO]AuditController::getAuditStatistics: 获取审核统计");
 
+        // 先取版本再读计数：读取期间计数变化时，下次请求的版本不同，不会长期返回旧数据
+        String etag = "W/\"audit-stats-" + auditDashboardService.getCountsVersion() + "\"";
+        // 统计随工单变化频繁，每次都重新验证；未变化时只返回304
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+
         try {
             List<Object[]> statistics = workflowService.getWorkflowStatistics();
 
@@ -199,7 +336,7 @@ public class AuditController {
             response.put("success", true);
             response.put("data", statistics);
 
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(response);
 
         } catch (Exception e) {
             log.error("[ERROR]AuditController::getAuditStatistics: 获取审核统计失败", e);
@@ -207,6 +344,27 @@ public class AuditController {
         }
     }
 
+    /**
+     * 获取审核看板统计
+     */
+    @GetMapping("/dashboard")
+    @Operation(summary = "获取审核看板", description = "获取各状态/优先级工单数、各环节SLA超时数及按小时/天的工单趋势，数据来自内存计数")
+    public ResponseEntity<Map<String, Object>> getAuditDashboard() {
+        try {
+            AuditDashboardService.DashboardSnapshot dashboard = auditDashboardService.getDashboard();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", dashboard);
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("[ERROR]AuditController::getAuditDashboard: 获取审核看板失败", e);
+            return createErrorResponse("获取审核看板失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取超期工单
      */
@@ -230,6 +388,24 @@ public class AuditController {
         }
     }
 
+    /**
+     * 订阅审核队列增量推送
+     * 断线重连时携带 Last-Event-ID（或 lastEventId 参数）续传；收到 RESYNC 事件时应重新拉取 /audit/tasks
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "订阅审核队列", description = "以SSE推送当前角色审核队列的新增、认领、流转和SLA超时事件")
+    public SseEmitter streamAuditQueue(
+            @RequestHeader("Authorization") String token,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(required = false) String lastEventId) {
+
+        String actualToken = token.startsWith("Bearer ") ? token.substring(7) : token;
+        User.UserRole role = User.UserRole.valueOf(authService.getRoleFromToken(actualToken));
+
+        log.info("[INFO]AuditController::streamAuditQueue: 订阅审核队列 - Role: {}", role);
+        return auditQueueStreamService.subscribe(role, lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
+
     /**
      * 转换角色字符串为UserRole枚举
      */
@@ -271,4 +447,23 @@ public class AuditController {
         public String getComments() { return comments; }
         public void setComments(String comments) { this.comments = comments; }
     }
+
+    /**
+     * 批量审核决策请求
+     */
+    public static class BulkAuditDecisionRequest {
+        private List<Long> workOrderIds; // 工单ID列表
+        private String decision; // APPROVE 或 REJECT
+        private String comments; // 审核意见
+
+        // Getters and Setters
+        public List<Long> getWorkOrderIds() { return workOrderIds; }
+        public void setWorkOrderIds(List<Long> workOrderIds) { this.workOrderIds = workOrderIds; }
+
+        public String getDecision() { return decision; }
+        public void setDecision(String decision) { this.decision = decision; }
+
+        public String getComments() { return comments; }
+        public void setComments(String comments) { this.comments = comments; }
+    }
 }
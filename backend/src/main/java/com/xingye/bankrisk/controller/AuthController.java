@@ -1,9 +1,14 @@
 package com.xingye.bankrisk.controller;
 
+import com.xingye.bankrisk.dto.LoginResult;
+import com.xingye.bankrisk.dto.UserView;
 import com.xingye.bankrisk.entity.User;
+import com.xingye.bankrisk.exception.AdmissionRejectedException;
+import com.xingye.bankrisk.security.LoginRateLimiter;
 import com.xingye.bankrisk.service.AuthService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -24,6 +29,7 @@ import java.util.Map;
 public class AuthController {
 
     private final AuthService authService;
+    private final LoginRateLimiter loginRateLimiter;
 
     /**
      * 用户注册
@@ -46,11 +52,13 @@ public class AuthController {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "注册成功");
-            response.put("data", user);
+            response.put("data", UserView.from(user));
 
             log.info("[INFO]AuthController::register: 用户注册成功 - ID: {}", user.getId());
             return ResponseEntity.ok(response);
 
+        } catch (AdmissionRejectedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("[ERROR]AuthController::register: 用户注册失败", e);
             return createErrorResponse("注册失败: " + e.getMessage());
@@ -62,11 +70,15 @@ public class AuthController {
      */
     @PostMapping("/login")
     @Operation(summary = "用户登录", description = "用户账号登录")
-    public ResponseEntity<Map<String, Object>> login(@RequestBody LoginRequest request) {
+    public ResponseEntity<Map<String, Object>> login(@RequestBody LoginRequest request,
+                                                     HttpServletRequest httpRequest) {
         log.info("[INFO]AuthController::login: 用户登录请求 - Account: {}", request.getAccount());
 
+        // 限流在查库和密码哈希之前，超限时由全局异常处理返回 429
+        loginRateLimiter.acquire(request.getAccount(), httpRequest.getRemoteAddr());
+
         try {
-            Map<String, Object> loginResult = authService.login(request.getAccount(), request.getPassword());
+            LoginResult loginResult = authService.login(request.getAccount(), request.getPassword());
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -76,6 +88,8 @@ public class AuthController {
             log.info("[INFO]AuthController::login: 用户登录成功");
             return ResponseEntity.ok(response);
 
+        } catch (AdmissionRejectedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("[ERROR]AuthController::login: 用户登录失败", e);
             return createErrorResponse("登录失败: " + e.getMessage());
@@ -97,7 +111,7 @@ public class AuthController {
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("data", user);
+            response.put("data", UserView.from(user));
 
             return ResponseEntity.ok(response);
 
@@ -156,6 +170,8 @@ public class AuthController {
             log.info("[INFO]AuthController::updatePassword: 密码更新成功 - UserID: {}", userId);
             return ResponseEntity.ok(response);
 
+        } catch (AdmissionRejectedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("[ERROR]AuthController::updatePassword: 密码更新失败", e);
             return createErrorResponse("密码更新失败: " + e.getMessage());
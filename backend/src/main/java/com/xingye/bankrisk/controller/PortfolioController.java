@@ -1,7 +1,10 @@
 package com.xingye.bankrisk.controller;
 
 import com.xingye.bankrisk.entity.PortfolioRecommendation;
+import com.xingye.bankrisk.exception.AdmissionRejectedException;
+import com.xingye.bankrisk.service.IdempotencyService;
 import com.xingye.bankrisk.service.PortfolioGenerationService;
+import com.xingye.bankrisk.service.PortfolioSimulationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -25,37 +28,43 @@ import java.util.Map;
 public class PortfolioController {
 
     private final PortfolioGenerationService portfolioGenerationService;
+    private final PortfolioSimulationService portfolioSimulationService;
+    private final IdempotencyService idempotencyService;
 
     /**
      * 生成投资组合
+     * 携带 Idempotency-Key 时重复提交只生成一次组合并重放首次响应
      */
     @PostMapping("/generate")
     @Operation(summary = "生成投资组合", description = "为指定用户生成投资组合建议")
     public ResponseEntity<Map<String, Object>> generatePortfolio(
             @RequestHeader("Authorization") String token,
+            @RequestHeader(value = IdempotencyService.KEY_HEADER, required = false) String idempotencyKey,
             @RequestBody PortfolioGenerateRequest request) {
 
         log.info("[INFO]PortfolioController::generatePortfolio: 生成投资组合 - UserID: {}", request.getUserId());
 
-        try {
-            PortfolioRecommendation portfolio = portfolioGenerationService.generatePortfolio(
-                    request.getUserId(),
-                    request.getCustomerId(),
-                    request.getWorkOrderId()
-            );
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "投资组合生成成功");
-            response.put("data", portfolio);
-
-            log.info("[INFO]PortfolioController::generatePortfolio: 投资组合生成完成 - ID: {}", portfolio.getId());
-            return ResponseEntity.ok(response);
-
-        } catch (Exception e) {
-            log.error("[ERROR]PortfolioController::generatePortfolio: 生成投资组合失败", e);
-            return createErrorResponse("生成投资组合失败: " + e.getMessage());
-        }
+        return idempotencyService.execute("portfolio-generate", idempotencyKey, request, () -> {
+            try {
+                PortfolioRecommendation portfolio = portfolioGenerationService.generatePortfolio(
+                        request.getUserId(),
+                        request.getCustomerId(),
+                        request.getWorkOrderId()
+                );
+
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("message", "投资组合生成成功");
+                response.put("data", portfolio);
+
+                log.info("[INFO]PortfolioController::generatePortfolio: 投资组合生成完成 - ID: {}", portfolio.getId());
+                return ResponseEntity.ok(response);
+
+            } catch (Exception e) {
+                log.error("[ERROR]PortfolioController::generatePortfolio: 生成投资组合失败", e);
+                return createErrorResponse("生成投资组合失败: " + e.getMessage());
+            }
+        });
     }
 
     /**
@@ -160,17 +169,19 @@ public class PortfolioController {
      * 优化投资组合
      */
     @PostMapping("/{id}/optimize")
-    @Operation(summary = "优化投资组合", description = "优化指定投资组合的配置")
+    @Operation(summary = "优化投资组合", description = "以均值-方差模型重新优化指定投资组合，生成新的组合建议")
     public ResponseEntity<Map<String, Object>> optimizePortfolio(@PathVariable Long id) {
         log.info("[INFO]PortfolioController::optimizePortfolio: 优化投资组合 - ID: {}", id);
 
         try {
-            // 这里需要实现投资组合优化算法
+            PortfolioRecommendation portfolio = portfolioGenerationService.optimizeRecommendation(id);
+
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "投资组合优化完成");
-            response.put("data", Map.of("id", id, "optimized", true));
+            response.put("data", portfolio);
 
+            log.info("[INFO]PortfolioController::optimizePortfolio: 投资组合优化完成 - ID: {}, NewID: {}", id, portfolio.getId());
             return ResponseEntity.ok(response);
 
         } catch (Exception e) {
@@ -179,6 +190,36 @@ public class PortfolioController {
         }
     }
 
+    /**
+     * 投资组合情景模拟
+     */
+    @PostMapping("/{id}/simulate")
+    @Operation(summary = "组合情景模拟", description = "按客户投资期限对组合进行蒙特卡洛模拟，返回收益分位数、亏损概率和预期损失")
+    public ResponseEntity<Map<String, Object>> simulatePortfolio(
+            @PathVariable Long id,
+            @RequestParam(required = false) Integer paths,
+            @RequestParam(required = false) Long seed) {
+
+        log.info("[INFO]PortfolioController::simulatePortfolio: 组合情景模拟 - ID: {}, Paths: {}", id, paths);
+
+        try {
+            PortfolioSimulationService.SimulationResult result =
+                    portfolioSimulationService.simulatePortfolio(id, paths, seed);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", result);
+
+            return ResponseEntity.ok(response);
+
+        } catch (AdmissionRejectedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("[ERROR]PortfolioController::simulatePortfolio: 组合情景模拟失败", e);
+            return createErrorResponse("组合情景模拟失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 创建错误响应
      */
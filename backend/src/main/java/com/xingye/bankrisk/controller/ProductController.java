@@ -1,21 +1,34 @@
 package com.xingye.bankrisk.controller;
 
 import com.xingye.bankrisk.entity.Product;
+import com.xingye.bankrisk.entity.ProductRating;
+import com.xingye.bankrisk.entity.ProductRatingSummary;
 import com.xingye.bankrisk.entity.ProductTag;
 import com.xingye.bankrisk.entity.User;
+import com.xingye.bankrisk.service.AuthService;
+import com.xingye.bankrisk.service.ProductCatalogService;
+import com.xingye.bankrisk.service.ProductCovarianceService;
+import com.xingye.bankrisk.service.ProductRatingService;
 import com.xingye.bankrisk.service.ProductRecommendationService;
 import com.xingye.bankrisk.service.ProductRecommendationService.ProductRecommendationResult;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 产品控制器
@@ -29,6 +42,13 @@ import java.util.Map;
 public class ProductController {
 
     private final ProductRecommendationService productRecommendationService;
+    private final ProductCatalogService productCatalogService;
+    private final ProductCovarianceService productCovarianceService;
+    private final ProductRatingService productRatingService;
+    private final AuthService authService;
+
+    @Value("${product.catalog.http-max-age-seconds:60}")
+    private long catalogMaxAgeSeconds;
 
     /**
      * 获取个性化产品推荐
@@ -66,7 +86,7 @@ public class ProductController {
      * 获取产品列表（支持筛选）
      */
     @GetMapping
-    @Operation(summary = "获取产品列表", description = "获取产品列表，支持多种筛选条件")
+    @Operation(summary = "获取产品列表", description = "获取产品列表，支持多种筛选条件；传入上一页返回的 nextCursor 按游标翻页")
     public ResponseEntity<Map<String, Object>> getProducts(
             @RequestParam(required = false) List<Product.ProductType> productTypes,
             @RequestParam(required = false) List<User.RiskLevel> riskLevels,
@@ -76,24 +96,39 @@ public class ProductController {
             @RequestParam(defaultValue = "expectedReturn") String sortBy,
             @RequestParam(defaultValue = "desc") String sortOrder,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor,
+            WebRequest webRequest) {
 
         log.info("[INFO]ProductController::getProducts: 获取产品列表 - Page: {}, Size: {}", page, size);
 
+        // 目录版本未变化时，同一查询的结果不变
+        String etag = catalogEtag(productCatalogService.getVersion());
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+
         try {
-            // 这里应该调用ProductService来获取筛选后的产品
-            // 暂时返回模拟数据
+            ProductCatalogService.ProductPage result = productCatalogService.search(
+                    ProductCatalogService.ProductQuery.builder()
+                            .productTypes(productTypes)
+                            .riskLevels(riskLevels)
+                            .minReturn(minReturn)
+                            .maxReturn(maxReturn)
+                            .sectors(sectors)
+                            .sortBy(sortBy)
+                            .sortOrder(sortOrder)
+                            .page(page)
+                            .size(size)
+                            .cursor(cursor)
+                            .build());
+
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "产品列表查询成功");
-            response.put("data", Map.of(
-                    "products", List.of(),
-                    "total", 0,
-                    "page", page,
-                    "size", size
-            ));
+            response.put("data", result);
 
-            return ResponseEntity.ok(response);
+            return cacheable(catalogEtag(result.getVersion()), response);
 
         } catch (Exception e) {
             log.error("[ERROR]ProductController::getProducts: 产品列表查询失败", e);
@@ -133,9 +168,14 @@ public class ProductController {
      */
     @GetMapping("/tags")
     @Operation(summary = "获取产品标签", description = "获取所有产品标签")
-    public ResponseEntity<Map<String, Object>> getProductTags() {
+    public ResponseEntity<Map<String, Object>> getProductTags(WebRequest webRequest) {
         log.info("[INFO]ProductController::getProductTags: 获取产品标签");
 
+        String etag = catalogEtag(productCatalogService.getVersion());
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+
         try {
             // 这里应该调用ProductTagService来获取标签
             // 暂时返回模拟数据
@@ -147,7 +187,7 @@ public class ProductController {
                     Map.of("name", "稳健增长", "category", "策略")
             ));
 
-            return ResponseEntity.ok(response);
+            return cacheable(etag, response);
 
         } catch (Exception e) {
             log.error("[ERROR]ProductController::getProductTags: 获取产品标签失败", e);
@@ -183,30 +223,22 @@ public class ProductController {
      */
     @GetMapping("/statistics")
     @Operation(summary = "获取产品统计", description = "获取产品相关的统计信息")
-    public ResponseEntity<Map<String, Object>> getProductStatistics() {
+    public ResponseEntity<Map<String, Object>> getProductStatistics(WebRequest webRequest) {
         log.info("[INFO]ProductController::getProductStatistics: 获取产品统计");
 
+        String etag = catalogEtag(productCatalogService.getVersion());
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+
         try {
-            // 这里应该调用ProductService来获取统计数据
-            // 暂时返回模拟数据
+            ProductCatalogService.ProductStatistics statistics = productCatalogService.getStatistics();
+
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("data", Map.of(
-                    "totalProducts", 15,
-                    "byType", Map.of(
-                            "CASH", 3,
-                            "BOND", 3,
-                            "ETF", 3,
-                            "STOCK", 6
-                    ),
-                    "byRiskLevel", Map.of(
-                            "CONSERVATIVE", 5,
-                            "MODERATE", 6,
-                            "AGGRESSIVE", 4
-                    )
-            ));
+            response.put("data", statistics);
 
-            return ResponseEntity.ok(response);
+            return cacheable(catalogEtag(statistics.getVersion()), response);
 
         } catch (Exception e) {
             log.error("[ERROR]ProductController::getProductStatistics: 获取产品统计失败", e);
@@ -214,6 +246,199 @@ public class ProductController {
         }
     }
 
+    /**
+     * 录入一期产品收益（仅管理员）
+     */
+    @PostMapping("/returns")
+    @Operation(summary = "录入产品收益", description = "录入某一期各产品的区间收益率（百分比），用于估计产品间协方差；同一期再次录入视为修正")
+    public ResponseEntity<Map<String, Object>> recordReturns(
+            @RequestHeader("Authorization") String token,
+            @RequestBody ReturnsRequest request) {
+
+        requireAdmin(token);
+        if (request.getReturnDate() == null || request.getReturns() == null || request.getReturns().isEmpty()) {
+            return createErrorResponse("收益日期和产品收益不能为空");
+        }
+
+        log.info("[INFO]ProductController::recordReturns: 录入产品收益 - Date: {}, Products: {}",
+                request.getReturnDate(), request.getReturns().size());
+
+        try {
+            productCovarianceService.recordReturns(request.getReturnDate(), request.getReturns());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "产品收益录入成功");
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("[ERROR]ProductController::recordReturns: 产品收益录入失败", e);
+            return createErrorResponse("产品收益录入失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 录入产品评分（仅管理员）
+     */
+    @PostMapping("/{id}/ratings")
+    @Operation(summary = "录入产品评分", description = "录入一条产品评分，同时更新评分汇总")
+    public ResponseEntity<Map<String, Object>> createRating(
+            @RequestHeader("Authorization") String token,
+            @PathVariable Long id,
+            @RequestBody RatingRequest request) {
+
+        requireAdmin(token);
+        log.info("[INFO]ProductController::createRating: 录入产品评分 - ProductID: {}", id);
+        return saveRating(request.toRating(id, null), "产品评分录入");
+    }
+
+    /**
+     * 修改产品评分（仅管理员）
+     */
+    @PutMapping("/{id}/ratings/{ratingId}")
+    @Operation(summary = "修改产品评分", description = "修改已有评分，评分汇总按新旧值的差额更新")
+    public ResponseEntity<Map<String, Object>> updateRating(
+            @RequestHeader("Authorization") String token,
+            @PathVariable Long id,
+            @PathVariable Long ratingId,
+            @RequestBody RatingRequest request) {
+
+        requireAdmin(token);
+        log.info("[INFO]ProductController::updateRating: 修改产品评分 - ProductID: {}, RatingID: {}", id, ratingId);
+        return saveRating(request.toRating(id, ratingId), "产品评分修改");
+    }
+
+    /**
+     * 按评分历史重建产品评分汇总（仅管理员），用于调整衰减半衰期之后
+     */
+    @PostMapping("/{id}/ratings/rebuild")
+    @Operation(summary = "重建评分汇总", description = "按评分历史重建指定产品的评分汇总")
+    public ResponseEntity<Map<String, Object>> rebuildRatingSummary(
+            @RequestHeader("Authorization") String token,
+            @PathVariable Long id) {
+
+        requireAdmin(token);
+        log.info("[INFO]ProductController::rebuildRatingSummary: 重建评分汇总 - ProductID: {}", id);
+
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", productRatingService.rebuildSummary(id));
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("[ERROR]ProductController::rebuildRatingSummary: 重建评分汇总失败", e);
+            return createErrorResponse("重建评分汇总失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取产品评分：汇总与最新评分记录
+     */
+    @GetMapping("/{id}/ratings/latest")
+    @Operation(summary = "获取产品评分", description = "返回产品的评分汇总和最新一条评分记录")
+    public ResponseEntity<Map<String, Object>> getLatestRating(@PathVariable Long id) {
+        log.info("[INFO]ProductController::getLatestRating: 获取产品评分 - ProductID: {}", id);
+
+        try {
+            Map<String, Object> data = new HashMap<>();
+            data.put("summary", productRatingService.getSummary(id).orElse(null));
+            data.put("latest", productRatingService.getLatestRating(id).orElse(null));
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", data);
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("[ERROR]ProductController::getLatestRating: 获取产品评分失败", e);
+            return createErrorResponse("获取产品评分失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取最新综合评分最高的产品
+     */
+    @GetMapping("/ratings/top")
+    @Operation(summary = "高评分产品", description = "按最新综合评分降序返回产品评分汇总；传入 minRating 时返回不低于该分的全部产品")
+    public ResponseEntity<Map<String, Object>> getTopRated(
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) BigDecimal minRating) {
+
+        log.info("[INFO]ProductController::getTopRated: 获取高评分产品 - Limit: {}, MinRating: {}", limit, minRating);
+
+        try {
+            List<ProductRatingSummary> summaries = minRating != null
+                    ? productRatingService.getLatestHighRated(minRating)
+                    : productRatingService.getTopRated(limit);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", summaries);
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("[ERROR]ProductController::getTopRated: 获取高评分产品失败", e);
+            return createErrorResponse("获取高评分产品失败: " + e.getMessage());
+        }
+    }
+
+    // 私有辅助方法
+
+    /**
+     * 目录版本对应的弱ETag；响应可能被压缩，字节不同但语义相同
+     */
+    private String catalogEtag(String version) {
+        return version != null ? "W/\"catalog-" + version + "\"" : null;
+    }
+
+    /**
+     * 目录数据的缓存策略：私有缓存，过期后凭ETag重新验证
+     */
+    private CacheControl catalogCacheControl() {
+        return CacheControl.maxAge(catalogMaxAgeSeconds, TimeUnit.SECONDS).cachePrivate().mustRevalidate();
+    }
+
+    private ResponseEntity<Map<String, Object>> cacheable(String etag, Map<String, Object> body) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().cacheControl(catalogCacheControl());
+        if (etag != null) {
+            builder.eTag(etag);
+        }
+        return builder.body(body);
+    }
+
+    private ResponseEntity<Map<String, Object>> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .cacheControl(catalogCacheControl())
+                .build();
+    }
+
+    private ResponseEntity<Map<String, Object>> saveRating(ProductRating rating, String action) {
+        if (rating.getRatingDate() == null) {
+            return createErrorResponse("评分日期不能为空");
+        }
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", action + "成功");
+            response.put("data", productRatingService.recordRating(rating));
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("[ERROR]ProductController::saveRating: {}失败", action, e);
+            return createErrorResponse(action + "失败: " + e.getMessage());
+        }
+    }
+
+    private void requireAdmin(String token) {
+        String actualToken = token.startsWith("Bearer ") ? token.substring(7) : token;
+        if (!authService.hasPermission(actualToken, "ADMIN")) {
+            throw new AccessDeniedException("仅管理员可执行该操作");
+        }
+    }
+
     /**
      * 创建错误响应
      */
@@ -250,4 +475,63 @@ public class ProductController {
         public Map<String, String> getPreferences() { return preferences; }
         public void setPreferences(Map<String, String> preferences) { this.preferences = preferences; }
     }
+
+    /**
+     * 产品收益录入请求
+     */
+    public static class ReturnsRequest {
+        private LocalDate returnDate;
+        private Map<Long, BigDecimal> returns;
+
+        // Getters and Setters
+        public LocalDate getReturnDate() { return returnDate; }
+        public void setReturnDate(LocalDate returnDate) { this.returnDate = returnDate; }
+
+        public Map<Long, BigDecimal> getReturns() { return returns; }
+        public void setReturns(Map<Long, BigDecimal> returns) { this.returns = returns; }
+    }
+
+    /**
+     * 产品评分请求
+     */
+    public static class RatingRequest {
+        private LocalDate ratingDate;
+        private BigDecimal overallRating;
+        private BigDecimal riskAdjustedRating;
+        private BigDecimal performanceRating;
+        private BigDecimal liquidityRating;
+        private String ratingAgency;
+
+        ProductRating toRating(Long productId, Long ratingId) {
+            return ProductRating.builder()
+                    .id(ratingId)
+                    .productId(productId)
+                    .ratingDate(ratingDate)
+                    .overallRating(overallRating)
+                    .riskAdjustedRating(riskAdjustedRating)
+                    .performanceRating(performanceRating)
+                    .liquidityRating(liquidityRating)
+                    .ratingAgency(ratingAgency)
+                    .build();
+        }
+
+        // Getters and Setters
+        public LocalDate getRatingDate() { return ratingDate; }
+        public void setRatingDate(LocalDate ratingDate) { this.ratingDate = ratingDate; }
+
+        public BigDecimal getOverallRating() { return overallRating; }
+        public void setOverallRating(BigDecimal overallRating) { this.overallRating = overallRating; }
+
+        public BigDecimal getRiskAdjustedRating() { return riskAdjustedRating; }
+        public void setRiskAdjustedRating(BigDecimal riskAdjustedRating) { this.riskAdjustedRating = riskAdjustedRating; }
+
+        public BigDecimal getPerformanceRating() { return performanceRating; }
+        public void setPerformanceRating(BigDecimal performanceRating) { this.performanceRating = performanceRating; }
+
+        public BigDecimal getLiquidityRating() { return liquidityRating; }
+        public void setLiquidityRating(BigDecimal liquidityRating) { this.liquidityRating = liquidityRating; }
+
+        public String getRatingAgency() { return ratingAgency; }
+        public void setRatingAgency(String ratingAgency) { this.ratingAgency = ratingAgency; }
+    }
 }
@@ -0,0 +1,13 @@
+package com.xingye.bankrisk.datasource;
+
+import java.lang.annotation.*;
+
+/**
+ * 标注的方法（含其中的只读事务）始终读主库
+ * 用于不能容忍从库延迟的读取，如看板计数校准；未启用从库时无影响
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReadFromPrimary {
+}
@@ -0,0 +1,29 @@
+package com.xingye.bankrisk.datasource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 处理 {@link ReadFromPrimary}：在方法执行期间将当前线程固定到主库
+ * 优先级高于事务切面，事务内的首条语句取连接时已能看到该标记
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class ReadFromPrimaryAspect {
+
+    @Around("@annotation(com.xingye.bankrisk.datasource.ReadFromPrimary) " +
+            "|| @within(com.xingye.bankrisk.datasource.ReadFromPrimary)")
+    public Object pinToPrimary(ProceedingJoinPoint joinPoint) throws Throwable {
+        ReplicaRouter.pinPrimary();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReplicaRouter.unpinPrimary();
+        }
+    }
+}
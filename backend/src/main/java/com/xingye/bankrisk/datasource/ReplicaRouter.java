@@ -0,0 +1,231 @@
+package com.xingye.bankrisk.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 主从路由决策
+ * 只读事务读从库，写事务和事务外访问走主库；从库延迟超限或不可用时回退主库；
+ * 用户写事务提交后的粘滞窗口内，该用户的只读事务仍读主库（读己之写）
+ */
+@Slf4j
+public class ReplicaRouter implements Closeable {
+
+    public enum Target { PRIMARY, REPLICA }
+
+    /**
+     * 路由原因，用于指标标签
+     */
+    enum Reason { WRITE, NO_TRANSACTION, PINNED, STICKY, REPLICA_UNAVAILABLE, READ_ONLY }
+
+    // 由 @ReadFromPrimary 设置，允许嵌套
+    private static final ThreadLocal<Integer> PRIMARY_PINS = new ThreadLocal<>();
+
+    private final HikariDataSource primary;
+    private final HikariDataSource replica;
+    private final long maxLagMillis;
+    private final long stickyWindowMillis;
+    private final long lagCheckIntervalMillis;
+    private final String lagQuery;
+
+    private final Map<Reason, Counter> routingCounters = new EnumMap<>(Reason.class);
+    // 用户名 -> 粘滞截止时间（毫秒）
+    private final ConcurrentHashMap<String, Long> stickyUntil = new ConcurrentHashMap<>();
+
+    private volatile boolean replicaAvailable = false;
+    private volatile long replicaLagMillis = -1;
+
+    public ReplicaRouter(HikariDataSource primary, HikariDataSource replica, long maxLagMillis,
+                         long stickyWindowMillis, long lagCheckIntervalMillis, String lagQuery,
+                         MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLagMillis = maxLagMillis;
+        this.stickyWindowMillis = stickyWindowMillis;
+        this.lagCheckIntervalMillis = lagCheckIntervalMillis;
+        this.lagQuery = lagQuery;
+
+        for (Reason reason : Reason.values()) {
+            routingCounters.put(reason, Counter.builder("datasource.routing")
+                    .description("按目标库和原因统计的连接路由次数")
+                    .tags("target", reason == Reason.READ_ONLY ? "replica" : "primary",
+                            "reason", reason.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("datasource.replica.lag", this, router -> router.replicaLagMillis / 1000.0)
+                .description("最近一次检测到的从库复制延迟（秒），-1 表示不可用")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("datasource.replica.available", this, router -> router.replicaAvailable ? 1 : 0)
+                .description("从库当前是否参与只读路由")
+                .register(meterRegistry);
+    }
+
+    public HikariDataSource getPrimary() {
+        return primary;
+    }
+
+    public HikariDataSource getReplica() {
+        return replica;
+    }
+
+    /**
+     * 为当前取连接的请求选择目标库
+     */
+    public Target route() {
+        Reason reason = decide();
+        routingCounters.get(reason).increment();
+        if (reason == Reason.WRITE) {
+            registerStickyOnCommit();
+        }
+        return reason == Reason.READ_ONLY ? Target.REPLICA : Target.PRIMARY;
+    }
+
+    /**
+     * 当前用户是否处于写后粘滞窗口内
+     */
+    public boolean isCurrentUserSticky() {
+        String user = currentUser();
+        if (user == null) {
+            return false;
+        }
+        Long until = stickyUntil.get(user);
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    /**
+     * 检测从库复制延迟，超过阈值或检测失败时从只读路由中摘除
+     */
+    @Scheduled(fixedDelayString = "${datasource.replica.lag-check-interval-ms:1000}")
+    public void checkReplicaLag() {
+        long lag;
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement()) {
+            lag = lagQuery == null || lagQuery.isBlank() ? 0 : queryLag(statement);
+        } catch (SQLException e) {
+            log.warn("[WARN]ReplicaRouter::checkReplicaLag: 从库延迟检测失败 - Error: {}", e.getMessage());
+            lag = -1;
+        }
+
+        boolean available = lag >= 0 && lag <= maxLagMillis;
+        if (available != replicaAvailable) {
+            if (available) {
+                log.info("[INFO]ReplicaRouter::checkReplicaLag: 从库恢复只读路由 - LagMs: {}", lag);
+            } else {
+                log.warn("[WARN]ReplicaRouter::checkReplicaLag: 从库摘除，只读事务回退主库 - LagMs: {}, MaxLagMs: {}",
+                        lag, maxLagMillis);
+            }
+        }
+        replicaLagMillis = lag;
+        replicaAvailable = available;
+
+        long now = System.currentTimeMillis();
+        stickyUntil.values().removeIf(until -> until <= now);
+    }
+
+    @Override
+    public void close() {
+        replica.close();
+        primary.close();
+    }
+
+    static void pinPrimary() {
+        Integer pins = PRIMARY_PINS.get();
+        PRIMARY_PINS.set(pins == null ? 1 : pins + 1);
+    }
+
+    static void unpinPrimary() {
+        Integer pins = PRIMARY_PINS.get();
+        if (pins == null || pins <= 1) {
+            PRIMARY_PINS.remove();
+        } else {
+            PRIMARY_PINS.set(pins - 1);
+        }
+    }
+
+    // 私有辅助方法
+
+    private Reason decide() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return Reason.NO_TRANSACTION;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Reason.WRITE;
+        }
+        if (PRIMARY_PINS.get() != null) {
+            return Reason.PINNED;
+        }
+        if (isCurrentUserSticky()) {
+            return Reason.STICKY;
+        }
+        return replicaAvailable ? Reason.READ_ONLY : Reason.REPLICA_UNAVAILABLE;
+    }
+
+    /**
+     * 写事务提交后开始粘滞窗口；窗口不短于当前延迟加一个检测周期，延迟升高时自动放宽
+     */
+    private void registerStickyOnCommit() {
+        String user = currentUser();
+        if (user == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                long window = Math.max(stickyWindowMillis, Math.max(replicaLagMillis, 0) + lagCheckIntervalMillis);
+                stickyUntil.merge(user, System.currentTimeMillis() + window, Math::max);
+            }
+        });
+    }
+
+    private long queryLag(Statement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            if (!resultSet.next()) {
+                // 未配置复制
+                return -1;
+            }
+            Object seconds = column(resultSet, "Seconds_Behind_Source", "Seconds_Behind_Master");
+            // 复制线程停止时为 NULL
+            return seconds == null ? -1 : ((Number) seconds).longValue() * 1000;
+        }
+    }
+
+    private Object column(ResultSet resultSet, String... labels) throws SQLException {
+        for (String label : labels) {
+            try {
+                return resultSet.getObject(label);
+            } catch (SQLException e) {
+                // 不同MySQL版本列名不同，尝试下一个
+            }
+        }
+        // 自定义检测语句：取第一列
+        return resultSet.getObject(1);
+    }
+
+    private String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken
+                || !authentication.isAuthenticated()) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
@@ -0,0 +1,29 @@
+package com.xingye.bankrisk.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * 主从路由数据源，路由决策由 {@link ReplicaRouter} 给出
+ * 需包在 LazyConnectionDataSourceProxy 内使用：事务开始时只读标记尚未绑定到线程，
+ * 延迟到首条语句再取物理连接，路由才能看到当前事务是否只读
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ReplicaRouter router;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaRouter router) {
+        this.router = router;
+        setTargetDataSources(Map.of(ReplicaRouter.Target.PRIMARY, primary, ReplicaRouter.Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return router.route();
+    }
+}
@@ -0,0 +1,9 @@
+package com.xingye.bankrisk.dto;
+
+/**
+ * 登录结果
+ *
+ * @param expiresIn 令牌有效期（毫秒）
+ */
+public record LoginResult(String token, UserView user, long expiresIn) {
+}
@@ -0,0 +1,32 @@
+package com.xingye.bankrisk.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.xingye.bankrisk.entity.User;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 用户信息响应
+ * 只包含对外返回的字段，不携带密码哈希等内部字段
+ */
+public record UserView(Long id,
+                       String account,
+                       String name,
+                       String telephone,
+                       String nuid,
+                       String email,
+                       String occupation,
+                       BigDecimal investAmount,
+                       User.UserStatus status,
+                       User.RiskLevel riskLevel,
+                       Long latestQuestionnaireId,
+                       @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime evaluationTime,
+                       @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime createdAt) {
+
+    public static UserView from(User user) {
+        return new UserView(user.getId(), user.getAccount(), user.getName(), user.getTelephone(), user.getNuid(),
+                user.getEmail(), user.getOccupation(), user.getInvestAmount(), user.getStatus(), user.getRiskLevel(),
+                user.getLatestQuestionnaireId(), user.getEvaluationTime(), user.getCreatedAt());
+    }
+}
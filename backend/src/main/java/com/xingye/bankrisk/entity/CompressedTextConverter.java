@@ -0,0 +1,133 @@
+package com.xingye.bankrisk.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 大文本字段的压缩存储
+ * 存储格式为 [0xFF, 编码, 载荷]：较长文本使用带预置字典的 Deflate 压缩，短文本或压缩无收益时原样存储 UTF-8。
+ * UTF-8 文本不会以 0xFF 开头，没有头部的旧数据按未编码的 UTF-8 读取，可在重编码完成前直接使用
+ */
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+
+    private static final byte MAGIC = (byte) 0xFF;
+
+    /** 原样存储的 UTF-8 */
+    static final byte CODEC_PLAIN = 0;
+    /** Deflate，预置字典 v1；字典内容一经发布不可修改，调整字典须新增编码号并保留旧字典用于解码 */
+    static final byte CODEC_DEFLATE_DICT_V1 = 1;
+
+    private static final int MIN_COMPRESS_BYTES = 128;
+
+    /**
+     * 审核意见中的高频片段，越常见的放在越靠后（Deflate 对距离近的匹配编码更短）
+     */
+    private static final byte[] DICTIONARY_V1 = String.join("",
+            "材料不完整，请补充。", "收入证明", "资产证明", "身份信息", "风险揭示书",
+            "投资经验不足", "风险承受能力", "投资期限", "流动性需求", "集中度过高",
+            "建议降低权益类资产比例", "建议增加固定收益类产品", "与客户风险等级不匹配",
+            "保守型", "稳健型", "积极型", "组合配置", "预期收益", "最大回撤", "波动率",
+            "已与客户电话确认", "客户已签署", "符合适当性要求", "提交上级审核",
+            "审核不通过，原因：", "同意，提交下一环节。", "审核通过。", "同意。")
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Override
+    public byte[] convertToDatabaseColumn(String attribute) {
+        return attribute != null ? encode(attribute) : null;
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] dbData) {
+        return dbData != null ? decode(dbData) : null;
+    }
+
+    /**
+     * 是否已是当前存储格式；重编码任务据此跳过已处理的数据
+     */
+    public static boolean isEncoded(byte[] data) {
+        return data != null && data.length >= 2 && data[0] == MAGIC;
+    }
+
+    public static byte[] encode(String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length >= MIN_COMPRESS_BYTES) {
+            byte[] compressed = deflate(utf8);
+            if (compressed.length < utf8.length) {
+                return withHeader(CODEC_DEFLATE_DICT_V1, compressed);
+            }
+        }
+        return withHeader(CODEC_PLAIN, utf8);
+    }
+
+    public static String decode(byte[] data) {
+        if (!isEncoded(data)) {
+            // 旧数据：列类型迁移前写入的 UTF-8 文本
+            return new String(data, StandardCharsets.UTF_8);
+        }
+        return switch (data[1]) {
+            case CODEC_PLAIN -> new String(data, 2, data.length - 2, StandardCharsets.UTF_8);
+            // nowrap 模式的 Inflater 需要在输入末尾多一个填充字节
+            case CODEC_DEFLATE_DICT_V1 -> new String(inflate(Arrays.copyOfRange(data, 2, data.length + 1)),
+                    StandardCharsets.UTF_8);
+            default -> throw new IllegalStateException("未知的文本编码: " + data[1]);
+        };
+    }
+
+    // 私有辅助方法
+
+    private static byte[] withHeader(byte codec, byte[] payload) {
+        byte[] data = new byte[payload.length + 2];
+        data[0] = MAGIC;
+        data[1] = codec;
+        System.arraycopy(payload, 0, data, 2, payload.length);
+        return data;
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setDictionary(DICTIONARY_V1);
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input) {
+        // 原始 Deflate 流不含字典标记，预置字典须在解压前设置
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setDictionary(DICTIONARY_V1);
+            inflater.setInput(input);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length * 3);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("压缩文本已截断或损坏");
+                }
+                output.write(buffer, 0, length);
+            }
+            return output.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("压缩文本解码失败: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -6,9 +6,13 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import com.fasterxml.jackson.annotation.JsonFormat;
-import com.fasterxml.jackson.databind.JsonNode;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 /**
  * 投资组合推荐实体类
@@ -45,22 +49,25 @@ public class PortfolioRecommendation {
     private Long workOrderId;
 
     /**
-     * 产品ID列表（JSON格式）
+     * 产品ID列表
      */
-    @Column(name = "product_ids", nullable = false, columnDefinition = "TEXT")
-    private String productIds;
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "product_ids", nullable = false, columnDefinition = "JSON")
+    private List<Long> productIds;
 
     /**
-     * 分配比例列表（JSON格式）
+     * 分配比例列表（百分比，与 productIds 一一对应）
      */
-    @Column(name = "alloc_pcts", nullable = false, columnDefinition = "TEXT")
-    private String allocPcts;
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "alloc_pcts", nullable = false, columnDefinition = "JSON")
+    private List<BigDecimal> allocPcts;
 
     /**
-     * AI大模型生成或优化建议（JSON格式）
+     * AI大模型生成或优化建议；expected_return、risk_level 等字段由数据库生成列索引
      */
-    @Column(name = "llm_suggestion", columnDefinition = "TEXT")
-    private String llmSuggestion;
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "llm_suggestion", columnDefinition = "JSON")
+    private Map<String, Object> llmSuggestion;
 
     /**
      * 创建时间
@@ -0,0 +1,104 @@
+package com.xingye.bankrisk.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 产品评分汇总实体类
+ * 对应数据库中的 product_rating_summary 表，写入评分时在同一事务内增量维护，评分读取只访问本表
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "product_rating_summary")
+public class ProductRatingSummary {
+
+    /**
+     * 产品ID
+     */
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    /**
+     * 最新评分记录ID
+     */
+    @Column(name = "latest_rating_id")
+    private Long latestRatingId;
+
+    /**
+     * 最新评分日期
+     */
+    @Column(name = "latest_rating_date")
+    private LocalDate latestRatingDate;
+
+    /**
+     * 最新综合评分
+     */
+    @Column(name = "latest_overall_rating", precision = 3, scale = 1)
+    private BigDecimal latestOverallRating;
+
+    /**
+     * 评分次数（综合评分非空）
+     */
+    @Column(name = "rating_count", nullable = false)
+    private Long ratingCount;
+
+    /**
+     * 综合评分累计值
+     */
+    @JsonIgnore
+    @Column(name = "rating_sum", nullable = false, precision = 14, scale = 1)
+    private BigDecimal ratingSum;
+
+    /**
+     * 历史平均综合评分
+     */
+    @Column(name = "average_rating", precision = 5, scale = 2)
+    private BigDecimal averageRating;
+
+    /**
+     * 按评分日期指数衰减的加权分子、权重与参考日期
+     */
+    @JsonIgnore
+    @Column(name = "decayed_sum", nullable = false)
+    private Double decayedSum;
+
+    @JsonIgnore
+    @Column(name = "decayed_weight", nullable = false)
+    private Double decayedWeight;
+
+    @JsonIgnore
+    @Column(name = "decay_reference_date")
+    private LocalDate decayReferenceDate;
+
+    /**
+     * 指数衰减平均综合评分，近期评分权重更高
+     */
+    @Column(name = "decayed_rating", precision = 5, scale = 2)
+    private BigDecimal decayedRating;
+
+    /**
+     * 更新时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
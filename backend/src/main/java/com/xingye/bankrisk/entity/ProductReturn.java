@@ -0,0 +1,61 @@
+package com.xingye.bankrisk.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 产品区间收益实体类
+ * 对应数据库中的 product_returns 表，用于估计产品间协方差
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "product_returns")
+public class ProductReturn {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 产品ID
+     */
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    /**
+     * 收益区间截止日期
+     */
+    @Column(name = "return_date", nullable = false)
+    private LocalDate returnDate;
+
+    /**
+     * 区间收益率（百分比）
+     */
+    @Column(name = "return_pct", nullable = false, precision = 8, scale = 4)
+    private BigDecimal returnPct;
+
+    /**
+     * 创建时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @Column(name = "created_at", columnDefinition = "DATETIME DEFAULT CURRENT_TIMESTAMP")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+}
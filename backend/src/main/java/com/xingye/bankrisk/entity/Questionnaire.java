@@ -6,10 +6,12 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import com.fasterxml.jackson.annotation.JsonFormat;
-import com.fasterxml.jackson.databind.JsonNode;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Map;
 
 /**
  * 问卷实体类
@@ -96,16 +98,18 @@ public class Questionnaire {
     private User.RiskLevel status;
 
     /**
-     * 问卷答案（JSON格式）
+     * 问卷答案（题目 -> 答案）
      */
-    @Column(name = "answers", columnDefinition = "TEXT")
-    private String answers;
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "answers", columnDefinition = "JSON")
+    private Map<String, String> answers;
 
     /**
-     * 评分明细（JSON格式）
+     * 评分明细（total_score、risk_level、score_details）
      */
-    @Column(name = "score_breakdown", columnDefinition = "TEXT")
-    private String scoreBreakdown;
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "score_breakdown", columnDefinition = "JSON")
+    private Map<String, Object> scoreBreakdown;
 
     /**
      * 创建时间
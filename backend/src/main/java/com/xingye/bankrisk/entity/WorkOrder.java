@@ -11,7 +11,7 @@ import java.time.LocalDateTime;
 
 /**
  * 工单实体类（审核流程）
- * 对应数据库中的 work_orders 表
+ * 对应数据库中的 work_orders 表，只保存当前状态；各环节的审核人、意见和时间记录在 work_order_events（见 WorkOrderEvent）
  */
 @Data
 @NoArgsConstructor
@@ -37,6 +37,13 @@ public class WorkOrder {
     @Column(name = "reviewer_id")
     private Long reviewerId;
 
+    /**
+     * 认领租约到期时间，到期未续期由 ClaimLeaseService 释放
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @Column(name = "claim_expires_at")
+    private LocalDateTime claimExpiresAt;
+
     /**
      * 工单状态
      */
@@ -84,83 +91,6 @@ public class WorkOrder {
     @Column(name = "user_choice")
     private Long userChoice;
 
-    // 四级审核意见字段
-    /**
-     * 初级审核员ID
-     */
-    @Column(name = "junior_reviewer_id")
-    private Long juniorReviewerId;
-
-    /**
-     * 初级审核意见
-     */
-    @Column(name = "junior_comment", columnDefinition = "TEXT")
-    private String juniorComment;
-
-    /**
-     * 初级审核提交时间
-     */
-    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
-    @Column(name = "junior_commit_time")
-    private LocalDateTime juniorCommitTime;
-
-    /**
-     * 中级审核员ID
-     */
-    @Column(name = "mid_reviewer_id")
-    private Long midReviewerId;
-
-    /**
-     * 中级审核意见
-     */
-    @Column(name = "mid_comment", columnDefinition = "TEXT")
-    private String midComment;
-
-    /**
-     * 中级审核提交时间
-     */
-    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
-    @Column(name = "mid_commit_time")
-    private LocalDateTime midCommitTime;
-
-    /**
-     * 高级审核员ID
-     */
-    @Column(name = "senior_reviewer_id")
-    private Long seniorReviewerId;
-
-    /**
-     * 高级审核意见
-     */
-    @Column(name = "senior_comment", columnDefinition = "TEXT")
-    private String seniorComment;
-
-    /**
-     * 高级审核提交时间
-     */
-    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
-    @Column(name = "senior_commit_time")
-    private LocalDateTime seniorCommitTime;
-
-    /**
-     * 委员会审核员ID
-     */
-    @Column(name = "committee_reviewer_id")
-    private Long committeeReviewerId;
-
-    /**
-     * 委员会审核意见
-     */
-    @Column(name = "committee_comment", columnDefinition = "TEXT")
-    private String committeeComment;
-
-    /**
-     * 委员会审核提交时间
-     */
-    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
-    @Column(name = "committee_commit_time")
-    private LocalDateTime committeeCommitTime;
-
     /**
      * 创建时间
      */
@@ -219,6 +149,13 @@ public class WorkOrder {
      * 获取当前审核阶段
      */
     public WorkflowStage getCurrentStage() {
+        return stageOf(status);
+    }
+
+    /**
+     * 待审状态对应的审核阶段，已结束的状态返回 null
+     */
+    public static WorkflowStage stageOf(WorkOrderStatus status) {
         return switch (status) {
             case PENDING_JUNIOR -> WorkflowStage.JUNIOR;
             case PENDING_MID -> WorkflowStage.MID;
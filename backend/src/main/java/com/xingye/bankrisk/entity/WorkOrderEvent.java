@@ -0,0 +1,100 @@
+package com.xingye.bankrisk.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * 工单事件实体类
+ * 对应数据库中的 work_order_events 表：只追加的审核历史，每次创建、认领、审核都写入一行，
+ * 按 ID 顺序回放即可还原各环节的审核记录。写入由 WorkOrderEventLog 随业务事务批量插入，不通过 JPA 保存
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "work_order_events")
+public class WorkOrderEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 工单ID（不建外键：工单归档后事件保留）
+     */
+    @Column(name = "work_order_id", nullable = false)
+    private Long workOrderId;
+
+    /**
+     * 事件类型
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 16)
+    private EventType eventType;
+
+    /**
+     * 事件发生时的审核环节，工单已结束时为空
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "stage", length = 32)
+    private WorkOrder.WorkflowStage stage;
+
+    /**
+     * 事件前状态，创建事件为空
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "from_status", length = 32)
+    private WorkOrder.WorkOrderStatus fromStatus;
+
+    /**
+     * 事件后状态
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "to_status", nullable = false, length = 32)
+    private WorkOrder.WorkOrderStatus toStatus;
+
+    /**
+     * 操作人ID
+     */
+    @Column(name = "actor_id")
+    private Long actorId;
+
+    /**
+     * 事件后的当前处理人ID
+     */
+    @Column(name = "reviewer_id")
+    private Long reviewerId;
+
+    /**
+     * 审核意见
+     */
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "comment", columnDefinition = "MEDIUMBLOB")
+    private String comment;
+
+    /**
+     * 发生时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+
+    /**
+     * 事件类型枚举
+     */
+    public enum EventType {
+        CREATE,    // 创建工单
+        CLAIM,     // 审核员认领
+        APPROVE,   // 本环节通过
+        REJECT,    // 本环节拒绝
+        ESCALATE,  // 升级处理（不经审核转入后续环节）
+        REASSIGN   // 系统分配、移交或收回处理人（操作人为空）
+    }
+}
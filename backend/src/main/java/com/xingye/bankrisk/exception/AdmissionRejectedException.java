@@ -0,0 +1,19 @@
+package com.xingye.bankrisk.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * 准入拒绝异常
+ * 限流（429）或资源饱和（503）时快速拒绝请求，响应携带 Retry-After
+ */
+@Getter
+public class AdmissionRejectedException extends BusinessException {
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, String code, HttpStatus httpStatus, long retryAfterSeconds) {
+        super(message, code, httpStatus);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+}
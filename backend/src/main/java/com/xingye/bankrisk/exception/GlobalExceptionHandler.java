@@ -1,6 +1,7 @@
 package com.xingye.bankrisk.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -38,6 +39,24 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(e.getHttpStatus()).body(response);
     }
 
+    /**
+     * 处理准入拒绝异常（限流、资源饱和），不打印堆栈
+     */
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<Map<String, Object>> handleAdmissionRejectedException(AdmissionRejectedException e) {
+        log.warn("[WARN]AdmissionRejectedException: {} - Code: {}", e.getMessage(), e.getCode());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", e.getMessage());
+        response.put("code", e.getCode());
+        response.put("timestamp", LocalDateTime.now());
+
+        return ResponseEntity.status(e.getHttpStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(response);
+    }
+
     /**
      * 处理认证异常
      */
@@ -0,0 +1,147 @@
+package com.xingye.bankrisk.json;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.xingye.bankrisk.entity.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 产品JSON片段缓存
+ * 产品序列化结果按 ID 缓存为 UTF-8 字节，产品列表、推荐结果、组合明细中的产品直接拷贝字节写入输出流，
+ * 不再逐字段序列化。条目以 updatedAt 校验（产品修改时更新），目录快照重建时由 ProductCatalogService 推送新版本并整体清空
+ */
+@Component
+public class ProductJsonCache {
+
+    private final int maxEntries;
+    private final Counter hits;
+    private final Counter misses;
+
+    private final ConcurrentHashMap<Long, Fragment> fragments = new ConcurrentHashMap<>();
+    private volatile String catalogVersion;
+
+    public ProductJsonCache(@Value("${product.catalog.json-cache-max-entries:10000}") int maxEntries,
+                            MeterRegistry meterRegistry) {
+        this.maxEntries = maxEntries;
+        this.hits = Counter.builder("json.fragment.cache")
+                .description("产品JSON片段缓存命中情况")
+                .tag("outcome", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("json.fragment.cache")
+                .description("产品JSON片段缓存命中情况")
+                .tag("outcome", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 注册到 ObjectMapper 的模块：为 Product 的默认序列化器套上缓存
+     */
+    public SimpleModule module() {
+        SimpleModule module = new SimpleModule("ProductJsonCache");
+        module.setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription description,
+                                                      JsonSerializer<?> serializer) {
+                return description.getBeanClass() == Product.class
+                        ? new CachingSerializer((JsonSerializer<Product>) serializer)
+                        : serializer;
+            }
+        });
+        return module;
+    }
+
+    /**
+     * 目录快照版本变化时清空全部片段
+     */
+    public void onCatalogVersion(String version) {
+        if (!Objects.equals(version, catalogVersion)) {
+            fragments.clear();
+            catalogVersion = version;
+        }
+    }
+
+    // 私有辅助方法
+
+    private Fragment lookup(Product product) {
+        Fragment fragment = fragments.get(product.getId());
+        return fragment != null && fragment.updatedAt.equals(product.getUpdatedAt()) ? fragment : null;
+    }
+
+    private void store(Product product, SerializedString json) {
+        if (fragments.size() < maxEntries || fragments.containsKey(product.getId())) {
+            fragments.put(product.getId(), new Fragment(product.getUpdatedAt(), json));
+        }
+    }
+
+    private record Fragment(LocalDateTime updatedAt, SerializedString json) {
+    }
+
+    /**
+     * 命中时写入缓存字节；未命中时用默认序列化器生成片段并缓存
+     */
+    private final class CachingSerializer extends StdSerializer<Product> implements ResolvableSerializer {
+
+        private final JsonSerializer<Product> delegate;
+
+        private CachingSerializer(JsonSerializer<Product> delegate) {
+            super(Product.class);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void resolve(SerializerProvider provider) throws JsonMappingException {
+            if (delegate instanceof ResolvableSerializer resolvable) {
+                resolvable.resolve(provider);
+            }
+        }
+
+        @Override
+        public void serialize(Product product, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            if (product.getId() == null || product.getUpdatedAt() == null || generator.getCodec() == null) {
+                // 未持久化的产品没有可靠的缓存键；脱离 ObjectMapper 的生成器无法创建片段生成器
+                delegate.serialize(product, generator, provider);
+                return;
+            }
+
+            Fragment fragment = lookup(product);
+            if (fragment != null) {
+                hits.increment();
+                generator.writeRawValue(fragment.json);
+                return;
+            }
+
+            misses.increment();
+            ByteArrayBuilder buffer = new ByteArrayBuilder();
+            try (JsonGenerator fragmentGenerator = generator.getCodec().getFactory()
+                    .createGenerator(buffer, JsonEncoding.UTF8)) {
+                delegate.serialize(product, fragmentGenerator, provider);
+            }
+            SerializedString json = new SerializedString(new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+            // 预先计算UTF-8字节，之后每次写出都是字节拷贝
+            json.asUnquotedUTF8();
+            store(product, json);
+            generator.writeRawValue(json);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.xingye.bankrisk.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按日志器采样的 TurboFilter
+ * 指定日志器在阈值级别及以下的日志每 rate 条只保留 1 条；ERROR 永不采样。
+ * 通过 Actuator loggers 端点把日志器调到 DEBUG 及以下时停止采样，便于按需获取完整诊断信息。
+ * TurboFilter 在级别判断和事件创建之前执行，被丢弃的日志不会产生参数格式化开销
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private Level level = Level.INFO;
+    private long rate = 100;
+
+    /**
+     * 逗号分隔的日志器名称
+     */
+    public void setLoggers(String loggers) {
+        counters.clear();
+        for (String name : loggers.split(",")) {
+            if (!name.isBlank()) {
+                counters.put(name.trim(), new AtomicLong());
+            }
+        }
+    }
+
+    public void setLevel(String level) {
+        this.level = Level.toLevel(level, Level.INFO);
+    }
+
+    public void setRate(long rate) {
+        this.rate = rate;
+    }
+
+    @Override
+    public void start() {
+        if (rate < 1) {
+            addError("采样率必须为正整数: " + rate);
+            return;
+        }
+        if (level.isGreaterOrEqual(Level.ERROR)) {
+            addWarn("ERROR 级别日志不参与采样，阈值调整为 WARN");
+            level = Level.WARN;
+        }
+        super.start();
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level eventLevel, String format, Object[] params, Throwable t) {
+        if (!isStarted() || rate == 1 || eventLevel == null || eventLevel.levelInt > level.levelInt) {
+            return FilterReply.NEUTRAL;
+        }
+        AtomicLong counter = counters.get(logger.getName());
+        if (counter == null) {
+            return FilterReply.NEUTRAL;
+        }
+        // 低于日志器级别的事件交给常规级别判断丢弃，不计入采样
+        Level effectiveLevel = logger.getEffectiveLevel();
+        if (effectiveLevel.levelInt <= Level.DEBUG_INT || eventLevel.levelInt < effectiveLevel.levelInt) {
+            return FilterReply.NEUTRAL;
+        }
+        return counter.getAndIncrement() % rate == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+}
@@ -0,0 +1,13 @@
+package com.xingye.bankrisk.metrics;
+
+import java.lang.annotation.*;
+
+/**
+ * 标注只读写内存状态、不访问数据库的服务方法，SQL统计切面不再包装该方法
+ * 用于事务类中被频繁调用、不属于无参 get/is 访问方法的内存操作（如目录检索、事件监听），无参访问方法已由切点排除
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface NoQueryStats {
+}
@@ -0,0 +1,146 @@
+package com.xingye.bankrisk.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 统计 SQL 执行的数据源代理
+ * 连接、语句和结果集均以 JDK 动态代理包装：execute* 计语句数、耗时和影响行数，ResultSet.next() 计读取行数。
+ * 继承 DelegatingDataSource，Actuator 仍可解包得到底层连接池
+ */
+public class QueryCountingDataSource extends DelegatingDataSource {
+
+    private static final ClassLoader CLASS_LOADER = QueryCountingDataSource.class.getClassLoader();
+
+    public QueryCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(super.getConnection()));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(super.getConnection(username, password)));
+    }
+
+    // 私有辅助方法
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(CLASS_LOADER, new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * equals/hashCode 按代理对象自身判断：Hibernate 以语句和结果集作为散列表键跟踪资源
+     */
+    private static Object invoke(Object proxy, Object target, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static ResultSet wrapResultSet(Object resultSet) {
+        return resultSet == null ? null : proxy(ResultSet.class, new ResultSetHandler((ResultSet) resultSet));
+    }
+
+    private static Class<? extends Statement> statementType(Object statement) {
+        if (statement instanceof CallableStatement) {
+            return CallableStatement.class;
+        }
+        if (statement instanceof PreparedStatement) {
+            return PreparedStatement.class;
+        }
+        return Statement.class;
+    }
+
+    private static long affectedRows(Object result) {
+        if (result instanceof Integer count) {
+            return Math.max(0, count);
+        }
+        if (result instanceof Long count) {
+            return Math.max(0, count);
+        }
+        long total = 0;
+        if (result instanceof int[] counts) {
+            for (int count : counts) {
+                total += Math.max(0, count);
+            }
+        } else if (result instanceof long[] counts) {
+            for (long count : counts) {
+                total += Math.max(0, count);
+            }
+        }
+        return total;
+    }
+
+    private record ConnectionHandler(Connection target) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryCountingDataSource.invoke(proxy, target, method, args);
+            String name = method.getName();
+            if (result instanceof Statement statement
+                    && (name.equals("createStatement") || name.equals("prepareStatement") || name.equals("prepareCall"))) {
+                Class<? extends Statement> type = statementType(statement);
+                return proxy(type, new StatementHandler(statement));
+            }
+            return result;
+        }
+    }
+
+    private record StatementHandler(Statement target) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                long startTime = System.nanoTime();
+                Object result = QueryCountingDataSource.invoke(proxy, target, method, args);
+                QueryStatsRecorder.statementExecuted(System.nanoTime() - startTime, affectedRows(result));
+                return result instanceof ResultSet ? wrapResultSet(result) : result;
+            }
+            Object result = QueryCountingDataSource.invoke(proxy, target, method, args);
+            if (result instanceof ResultSet && (name.equals("getResultSet") || name.equals("getGeneratedKeys"))) {
+                return wrapResultSet(result);
+            }
+            return result;
+        }
+    }
+
+    private record ResultSetHandler(ResultSet target) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryCountingDataSource.invoke(proxy, target, method, args);
+            if (Boolean.TRUE.equals(result) && method.getName().equals("next")) {
+                QueryStatsRecorder.rowRead();
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.xingye.bankrisk.metrics;
+
+import java.util.Locale;
+
+/**
+ * SQL 执行统计：语句数、行数（读取行数与影响行数之和）和执行耗时
+ * 仅在所属线程内累加，非线程安全
+ */
+public final class QueryStats {
+
+    private long statements;
+    private long rows;
+    private long nanos;
+
+    void statementExecuted(long elapsedNanos, long affectedRows) {
+        statements++;
+        nanos += elapsedNanos;
+        rows += affectedRows;
+    }
+
+    void rowRead() {
+        rows++;
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * 调试响应头格式：statements=12; rows=340; time=8.31ms
+     */
+    public String toHeaderValue() {
+        return String.format(Locale.ROOT, "statements=%d; rows=%d; time=%.2fms", statements, rows, nanos / 1_000_000.0);
+    }
+
+    @Override
+    public String toString() {
+        return toHeaderValue();
+    }
+}
@@ -0,0 +1,81 @@
+package com.xingye.bankrisk.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按服务方法统计SQL执行
+ * 只包装可能访问数据库的服务方法：带事务注解（类或方法上）或定时执行的公共方法；无参的 get/is 访问方法
+ * （多为内存快照的读取）和标注 {@link NoQueryStats} 的方法除外。未包装方法的语句仍计入所在请求的统计。
+ * 优先级高于事务切面，提交时的刷新语句也计入该方法；嵌套调用的语句同时计入内外层方法
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class QueryStatsAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${query-stats.enabled:true}")
+    private boolean enabled;
+
+    @Value("${query-stats.method-budget:20}")
+    private int methodBudget;
+
+    @Around("execution(public * com.xingye.bankrisk.service..*(..))"
+            + " && (@within(org.springframework.transaction.annotation.Transactional)"
+            + " || @annotation(org.springframework.transaction.annotation.Transactional)"
+            + " || @annotation(org.springframework.scheduling.annotation.Scheduled))"
+            + " && !execution(* com.xingye.bankrisk.service..*.get*())"
+            + " && !execution(* com.xingye.bankrisk.service..*.is*())"
+            + " && !@annotation(com.xingye.bankrisk.metrics.NoQueryStats)")
+    public Object recordServiceMethod(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!enabled) {
+            return joinPoint.proceed();
+        }
+        QueryStatsRecorder.Scope scope = QueryStatsRecorder.open();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            scope.close();
+            QueryStats stats = scope.stats();
+            if (stats.getStatements() > 0) {
+                record(joinPoint.getSignature().getDeclaringType().getSimpleName(),
+                        joinPoint.getSignature().getName(), stats);
+            }
+        }
+    }
+
+    // 私有辅助方法
+
+    private void record(String className, String methodName, QueryStats stats) {
+        DistributionSummary.builder("jdbc.method.statements")
+                .description("每次服务方法调用执行的SQL语句数")
+                .tags("class", className, "method", methodName)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(stats.getStatements());
+
+        if (stats.getStatements() > methodBudget) {
+            Counter.builder("jdbc.budget.exceeded")
+                    .description("超出SQL语句预算的次数")
+                    .tags("scope", "method", "name", className + "." + methodName)
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("[WARN]QueryStatsAspect::record: 服务方法SQL语句数超出预算 - {}.{}, Budget: {}, Stats: {}",
+                    className, methodName, methodBudget, stats);
+        }
+    }
+}
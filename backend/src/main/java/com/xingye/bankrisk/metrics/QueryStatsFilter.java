@@ -0,0 +1,99 @@
+package com.xingye.bankrisk.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按HTTP请求统计SQL执行
+ * 位于安全过滤器之前，认证过程中的用户查询同样计入；超出语句预算的请求输出告警
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@RequiredArgsConstructor
+public class QueryStatsFilter extends OncePerRequestFilter {
+
+    /**
+     * 请求级统计在请求属性中的键
+     */
+    public static final String STATS_ATTRIBUTE = QueryStatsFilter.class.getName() + ".STATS";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${query-stats.enabled:true}")
+    private boolean enabled;
+
+    @Value("${query-stats.request-budget:30}")
+    private int requestBudget;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        QueryStatsRecorder.Scope scope = QueryStatsRecorder.open();
+        request.setAttribute(STATS_ATTRIBUTE, scope.stats());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            scope.close();
+            record(request, scope.stats());
+        }
+    }
+
+    // 私有辅助方法
+
+    private void record(HttpServletRequest request, QueryStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        Tags tags = Tags.of("method", request.getMethod(), "uri", uri);
+
+        DistributionSummary.builder("jdbc.request.statements")
+                .description("每个请求执行的SQL语句数")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(stats.getStatements());
+        DistributionSummary.builder("jdbc.request.rows")
+                .description("每个请求读取和影响的行数")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(stats.getRows());
+        Timer.builder("jdbc.request.time")
+                .description("每个请求的SQL执行耗时")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(stats.getNanos(), TimeUnit.NANOSECONDS);
+
+        if (stats.getStatements() > requestBudget) {
+            Counter.builder("jdbc.budget.exceeded")
+                    .description("超出SQL语句预算的次数")
+                    .tags("scope", "request", "name", request.getMethod() + " " + uri)
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("[WARN]QueryStatsFilter::record: 请求SQL语句数超出预算 - {} {}, Budget: {}, Stats: {}",
+                    request.getMethod(), uri, requestBudget, stats);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.xingye.bankrisk.metrics;
+
+import java.util.ArrayDeque;
+
+/**
+ * 线程内的 SQL 统计作用域
+ * 作用域可嵌套（请求 → 服务方法 → 内层服务方法），每条语句计入当前线程所有打开的作用域
+ */
+public final class QueryStatsRecorder {
+
+    private static final ThreadLocal<ArrayDeque<QueryStats>> SCOPES = new ThreadLocal<>();
+
+    private QueryStatsRecorder() {
+    }
+
+    /**
+     * 打开一个统计作用域，须在同一线程内关闭
+     */
+    public static Scope open() {
+        ArrayDeque<QueryStats> scopes = SCOPES.get();
+        if (scopes == null) {
+            scopes = new ArrayDeque<>();
+            SCOPES.set(scopes);
+        }
+        QueryStats stats = new QueryStats();
+        scopes.push(stats);
+        return new Scope(stats);
+    }
+
+    static void statementExecuted(long elapsedNanos, long affectedRows) {
+        ArrayDeque<QueryStats> scopes = SCOPES.get();
+        if (scopes != null) {
+            for (QueryStats stats : scopes) {
+                stats.statementExecuted(elapsedNanos, affectedRows);
+            }
+        }
+    }
+
+    static void rowRead() {
+        ArrayDeque<QueryStats> scopes = SCOPES.get();
+        if (scopes != null) {
+            for (QueryStats stats : scopes) {
+                stats.rowRead();
+            }
+        }
+    }
+
+    /**
+     * 统计作用域
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final QueryStats stats;
+
+        private Scope(QueryStats stats) {
+            this.stats = stats;
+        }
+
+        public QueryStats stats() {
+            return stats;
+        }
+
+        @Override
+        public void close() {
+            ArrayDeque<QueryStats> scopes = SCOPES.get();
+            if (scopes != null) {
+                scopes.removeFirstOccurrence(stats);
+                if (scopes.isEmpty()) {
+                    SCOPES.remove();
+                }
+            }
+        }
+    }
+}
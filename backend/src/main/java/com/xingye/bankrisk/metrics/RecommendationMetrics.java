@@ -0,0 +1,156 @@
+package com.xingye.bankrisk.metrics;
+
+import com.xingye.bankrisk.entity.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 产品推荐流水线指标
+ * 各阶段耗时、候选产品数、各过滤规则淘汰数和数据库往返次数，
+ * 策略在第一阶段之后才能确定，因此单次推荐的数据先暂存，结束时统一按风险等级和策略打标签上报
+ */
+@Component
+@RequiredArgsConstructor
+public class RecommendationMetrics {
+
+    private static final Duration MIN_EXPECTED = Duration.ofMillis(1);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(10);
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 推荐流水线阶段
+     */
+    public enum Stage {
+        DETERMINE_STRATEGY("determine_strategy"),
+        CANDIDATES("candidates"),
+        SCORE_AND_RANK("score_and_rank"),
+        PORTFOLIO("portfolio"),
+        EXPLANATION("explanation");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * 开始记录一次推荐
+     */
+    public Recording start(User.RiskLevel riskLevel) {
+        return new Recording(riskLevel);
+    }
+
+    /**
+     * 单次推荐的指标记录，非线程安全，仅在推荐调用线程内使用
+     */
+    public final class Recording {
+
+        private final long startTime = System.nanoTime();
+        private final User.RiskLevel riskLevel;
+        private final Map<Stage, Long> stageNanos = new EnumMap<>(Stage.class);
+        private final Map<String, Integer> filtered = new LinkedHashMap<>();
+        private String strategy = "unknown";
+        private int candidates;
+        private int dbRoundTrips;
+
+        private Recording(User.RiskLevel riskLevel) {
+            this.riskLevel = riskLevel;
+        }
+
+        /**
+         * 执行并计时一个阶段
+         */
+        public <T> T time(Stage stage, Supplier<T> action) {
+            long stageStart = System.nanoTime();
+            try {
+                return action.get();
+            } finally {
+                stageNanos.merge(stage, System.nanoTime() - stageStart, Long::sum);
+            }
+        }
+
+        public void strategy(String strategy) {
+            this.strategy = strategy;
+        }
+
+        public void candidates(int count) {
+            this.candidates = count;
+        }
+
+        /**
+         * 记录一个被指定规则过滤掉的产品
+         */
+        public void filtered(String rule) {
+            filtered.merge(rule, 1, Integer::sum);
+        }
+
+        public void dbRoundTrip() {
+            dbRoundTrips++;
+        }
+
+        /**
+         * 结束记录并上报
+         *
+         * @param outcome success 或 error
+         */
+        public void complete(String outcome) {
+            Tags tags = Tags.of("risk_level", riskLevel != null ? riskLevel.name() : "UNKNOWN",
+                    "strategy", strategy);
+
+            Timer.builder("recommendation.duration")
+                    .description("产品推荐总耗时")
+                    .tags(tags)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(MIN_EXPECTED)
+                    .maximumExpectedValue(MAX_EXPECTED)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+
+            stageNanos.forEach((stage, nanos) -> Timer.builder("recommendation.stage.duration")
+                    .description("产品推荐各阶段耗时")
+                    .tags(tags)
+                    .tag("stage", stage.tag)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(MIN_EXPECTED)
+                    .maximumExpectedValue(MAX_EXPECTED)
+                    .register(meterRegistry)
+                    .record(nanos, TimeUnit.NANOSECONDS));
+
+            DistributionSummary.builder("recommendation.candidates")
+                    .description("每次推荐的候选产品数")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(candidates);
+
+            DistributionSummary.builder("recommendation.db.round.trips")
+                    .description("每次推荐的数据库往返次数")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(dbRoundTrips);
+
+            filtered.forEach((rule, count) -> Counter.builder("recommendation.filtered")
+                    .description("被过滤规则淘汰的产品数")
+                    .tags(tags)
+                    .tag("rule", rule)
+                    .register(meterRegistry)
+                    .increment(count));
+        }
+    }
+}
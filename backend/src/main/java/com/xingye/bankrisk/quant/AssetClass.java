@@ -0,0 +1,44 @@
+package com.xingye.bankrisk.quant;
+
+import com.xingye.bankrisk.entity.Product;
+
+/**
+ * 大类资产划分
+ * 用于先验相关性与组合约束
+ */
+public enum AssetClass {
+    CASH,           // 现金类
+    FIXED_INCOME,   // 固定收益类
+    EQUITY,         // 权益类
+    ALTERNATIVE;    // 另类资产
+
+    /**
+     * 各大类之间的先验相关系数，对角线为同类不同产品之间的相关系数
+     */
+    private static final double[][] CORRELATION = {
+            // CASH  FIXED  EQUITY  ALT
+            {0.90, 0.10, 0.00, 0.00},
+            {0.10, 0.60, 0.10, 0.15},
+            {0.00, 0.10, 0.75, 0.40},
+            {0.00, 0.15, 0.40, 0.35}
+    };
+
+    public static AssetClass of(Product.ProductType productType) {
+        if (productType == null) {
+            return ALTERNATIVE;
+        }
+        return switch (productType) {
+            case CASH -> CASH;
+            case BOND, CREDIT -> FIXED_INCOME;
+            case ETF, STOCK -> EQUITY;
+            case ALT, REITS, COMMODITY, OTHER -> ALTERNATIVE;
+        };
+    }
+
+    /**
+     * 两个不同产品之间的先验相关系数
+     */
+    public double correlationWith(AssetClass other) {
+        return CORRELATION[ordinal()][other.ordinal()];
+    }
+}
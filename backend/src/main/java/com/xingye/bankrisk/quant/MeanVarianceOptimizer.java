@@ -0,0 +1,404 @@
+package com.xingye.bankrisk.quant;
+
+import java.util.Arrays;
+
+/**
+ * 均值-方差组合优化器
+ * 在多头、单品上下限、分组上下限及权重和为1的约束下，
+ * 以 FISTA 加速投影梯度法求解 max μᵀw - (λ/2)·wᵀΣw
+ */
+public final class MeanVarianceOptimizer {
+
+    private static final int BISECTION_STEPS = 40;
+    private static final int POWER_ITERATIONS = 30;
+
+    private final int maxIterations;
+    private final double tolerance;
+
+    public MeanVarianceOptimizer(int maxIterations, double tolerance) {
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * 求解优化问题
+     *
+     * @param riskAversion 风险厌恶系数 λ
+     * @param warmStart    初始权重，可为 null（此时从等权出发）
+     */
+    public Result solve(Problem problem, double riskAversion, double[] warmStart) {
+        int n = problem.size();
+        double step = 1.0 / Math.max(riskAversion * problem.spectralBound, 1e-9);
+
+        double[] w = new double[n];
+        if (warmStart != null && warmStart.length == n) {
+            for (int i = 0; i < n; i++) {
+                w[i] = Double.isFinite(warmStart[i]) ? warmStart[i] : 0;
+            }
+        } else {
+            Arrays.fill(w, 1.0 / n);
+        }
+        project(problem, w);
+
+        double[] y = w.clone();
+        double[] next = new double[n];
+        double[] gradient = new double[n];
+        double t = 1;
+        int iteration = 0;
+        boolean converged = false;
+
+        while (iteration < maxIterations) {
+            iteration++;
+            gradient(problem, riskAversion, y, gradient);
+            for (int i = 0; i < n; i++) {
+                next[i] = y[i] - step * gradient[i];
+            }
+            project(problem, next);
+
+            double change = 0;
+            double restart = 0;
+            for (int i = 0; i < n; i++) {
+                change = Math.max(change, Math.abs(next[i] - w[i]));
+                restart += (y[i] - next[i]) * (next[i] - w[i]);
+            }
+
+            // 目标值不再单调时重置动量（自适应重启）
+            double tNext = restart > 0 ? 1 : (1 + Math.sqrt(1 + 4 * t * t)) / 2;
+            double momentum = restart > 0 ? 0 : (t - 1) / tNext;
+            for (int i = 0; i < n; i++) {
+                y[i] = next[i] + momentum * (next[i] - w[i]);
+            }
+
+            double[] previous = w;
+            w = next;
+            next = previous;
+            t = tNext;
+
+            if (change < tolerance) {
+                converged = true;
+                break;
+            }
+        }
+
+        return new Result(w, iteration, converged, problem.variance(w), problem.expectedReturn(w));
+    }
+
+    // 私有辅助方法
+
+    private static void gradient(Problem problem, double riskAversion, double[] w, double[] out) {
+        int n = problem.size();
+        double[] sigma = problem.covariance;
+        for (int i = 0; i < n; i++) {
+            double row = 0;
+            int offset = i * n;
+            for (int j = 0; j < n; j++) {
+                row += sigma[offset + j] * w[j];
+            }
+            out[i] = riskAversion * row - problem.expectedReturns[i];
+        }
+    }
+
+    /**
+     * 欧氏投影到 {l ≤ w ≤ u, Gl ≤ Σ_g w ≤ Gu, Σw = 1}
+     * 最优解形如 w_i = clamp(v_i - θ_g, l_i, u_i)，其中 θ_g = clamp(τ, θ_g⁻, θ_g⁺)，
+     * 先对每组二分出触及分组上下限的 θ，再对全局 τ 二分使权重和为1
+     */
+    static void project(Problem problem, double[] v) {
+        int groups = problem.groupCount();
+        double[] thetaLow = new double[groups];
+        double[] thetaHigh = new double[groups];
+        for (int g = 0; g < groups; g++) {
+            int[] members = problem.members[g];
+            thetaLow[g] = problem.memberUpperSum[g] <= problem.groupUpper[g]
+                    ? Double.NEGATIVE_INFINITY
+                    : solveGroupTheta(problem, v, members, problem.groupUpper[g]);
+            thetaHigh[g] = problem.memberLowerSum[g] >= problem.groupLower[g]
+                    ? Double.POSITIVE_INFINITY
+                    : solveGroupTheta(problem, v, members, problem.groupLower[g]);
+        }
+
+        double low = Double.POSITIVE_INFINITY;
+        double high = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < v.length; i++) {
+            low = Math.min(low, v[i] - problem.upper[i]);
+            high = Math.max(high, v[i] - problem.lower[i]);
+        }
+        double lowTotal = totalWeight(problem, v, thetaLow, thetaHigh, low);
+        double highTotal = totalWeight(problem, v, thetaLow, thetaHigh, high);
+        for (int k = 0; k < BISECTION_STEPS; k++) {
+            double tau = (low + high) / 2;
+            double total = totalWeight(problem, v, thetaLow, thetaHigh, tau);
+            if (total > 1) {
+                low = tau;
+                lowTotal = total;
+            } else {
+                high = tau;
+                highTotal = total;
+            }
+        }
+
+        // 区间足够窄时权重和关于 τ 分段线性，线性插值得到精确解
+        double tau = lowTotal > highTotal ? low + (lowTotal - 1) / (lowTotal - highTotal) * (high - low) : high;
+        for (int i = 0; i < v.length; i++) {
+            v[i] = clamp(v[i] - groupTheta(problem, i, thetaLow, thetaHigh, tau), problem.lower[i], problem.upper[i]);
+        }
+    }
+
+    private static double solveGroupTheta(Problem problem, double[] v, int[] members, double target) {
+        double low = Double.POSITIVE_INFINITY;
+        double high = Double.NEGATIVE_INFINITY;
+        for (int i : members) {
+            low = Math.min(low, v[i] - problem.upper[i]);
+            high = Math.max(high, v[i] - problem.lower[i]);
+        }
+        double lowSum = groupSum(problem, v, members, low);
+        double highSum = groupSum(problem, v, members, high);
+        for (int k = 0; k < BISECTION_STEPS; k++) {
+            double theta = (low + high) / 2;
+            double sum = groupSum(problem, v, members, theta);
+            if (sum > target) {
+                low = theta;
+                lowSum = sum;
+            } else {
+                high = theta;
+                highSum = sum;
+            }
+        }
+        return lowSum > highSum ? low + (lowSum - target) / (lowSum - highSum) * (high - low) : high;
+    }
+
+    private static double groupSum(Problem problem, double[] v, int[] members, double theta) {
+        double sum = 0;
+        for (int i : members) {
+            sum += clamp(v[i] - theta, problem.lower[i], problem.upper[i]);
+        }
+        return sum;
+    }
+
+    private static double totalWeight(Problem problem, double[] v, double[] thetaLow, double[] thetaHigh, double tau) {
+        double sum = 0;
+        for (int i = 0; i < v.length; i++) {
+            sum += clamp(v[i] - groupTheta(problem, i, thetaLow, thetaHigh, tau), problem.lower[i], problem.upper[i]);
+        }
+        return sum;
+    }
+
+    private static double groupTheta(Problem problem, int i, double[] thetaLow, double[] thetaHigh, double tau) {
+        int g = problem.groups[i];
+        return g < 0 ? tau : clamp(tau, thetaLow[g], thetaHigh[g]);
+    }
+
+    private static double clamp(double value, double low, double high) {
+        return value < low ? low : Math.min(value, high);
+    }
+
+    /**
+     * 优化问题定义，协方差为稠密行主序矩阵
+     */
+    public static final class Problem {
+
+        private final double[] expectedReturns;
+        private final double[] covariance;
+        private final double[] lower;
+        private final double[] upper;
+        private final int[] groups;
+        private final double[] groupLower;
+        private final double[] groupUpper;
+
+        private final int[][] members;
+        private final double[] memberLowerSum;
+        private final double[] memberUpperSum;
+        private final double spectralBound;
+
+        /**
+         * @param groups 每个资产所属分组下标，-1 表示不受分组约束
+         */
+        public Problem(double[] expectedReturns, double[] covariance, double[] lower, double[] upper,
+                       int[] groups, double[] groupLower, double[] groupUpper) {
+            int n = expectedReturns.length;
+            if (covariance.length != n * n || lower.length != n || upper.length != n || groups.length != n
+                    || groupLower.length != groupUpper.length) {
+                throw new IllegalArgumentException("优化问题维度不匹配");
+            }
+            this.expectedReturns = expectedReturns;
+            this.covariance = covariance;
+            this.lower = lower;
+            this.upper = upper;
+            this.groups = groups;
+            this.groupLower = groupLower;
+            this.groupUpper = groupUpper;
+
+            int groupCount = groupLower.length;
+            int[] sizes = new int[groupCount];
+            for (int g : groups) {
+                if (g >= 0) {
+                    sizes[g]++;
+                }
+            }
+            this.members = new int[groupCount][];
+            for (int g = 0; g < groupCount; g++) {
+                members[g] = new int[sizes[g]];
+                sizes[g] = 0;
+            }
+            this.memberLowerSum = new double[groupCount];
+            this.memberUpperSum = new double[groupCount];
+            for (int i = 0; i < n; i++) {
+                int g = groups[i];
+                if (g >= 0) {
+                    members[g][sizes[g]++] = i;
+                    memberLowerSum[g] += lower[i];
+                    memberUpperSum[g] += upper[i];
+                }
+            }
+
+            this.spectralBound = largestEigenvalue(covariance, n);
+
+            if (!isFeasible()) {
+                throw new IllegalArgumentException("优化约束不可行");
+            }
+        }
+
+        /**
+         * 以新的单品上下限构造问题，其余数据共享
+         */
+        public Problem withBounds(double[] newLower, double[] newUpper) {
+            return new Problem(expectedReturns, covariance, newLower, newUpper, groups, groupLower, groupUpper);
+        }
+
+        /**
+         * 判断给定单品上下限在本问题的分组约束下是否可行
+         */
+        public boolean isFeasible(double[] candidateLower, double[] candidateUpper) {
+            return feasible(candidateLower, candidateUpper, groups, groupLower, groupUpper);
+        }
+
+        public int size() {
+            return expectedReturns.length;
+        }
+
+        public int groupCount() {
+            return groupLower.length;
+        }
+
+        public double[] lower() {
+            return lower.clone();
+        }
+
+        public double[] upper() {
+            return upper.clone();
+        }
+
+        public double variance(double[] w) {
+            int n = w.length;
+            double variance = 0;
+            for (int i = 0; i < n; i++) {
+                double row = 0;
+                int offset = i * n;
+                for (int j = 0; j < n; j++) {
+                    row += covariance[offset + j] * w[j];
+                }
+                variance += w[i] * row;
+            }
+            return Math.max(0, variance);
+        }
+
+        public double expectedReturn(double[] w) {
+            double sum = 0;
+            for (int i = 0; i < w.length; i++) {
+                sum += expectedReturns[i] * w[i];
+            }
+            return sum;
+        }
+
+        /**
+         * 幂迭代估计最大特征值（梯度 Lipschitz 常数），上限为 Gershgorin 界
+         */
+        private static double largestEigenvalue(double[] covariance, int n) {
+            double gershgorin = 0;
+            for (int i = 0; i < n; i++) {
+                double sum = 0;
+                for (int j = 0; j < n; j++) {
+                    sum += Math.abs(covariance[i * n + j]);
+                }
+                gershgorin = Math.max(gershgorin, sum);
+            }
+            if (n == 0 || gershgorin == 0) {
+                return gershgorin;
+            }
+
+            double[] x = new double[n];
+            double[] y = new double[n];
+            Arrays.fill(x, 1.0 / Math.sqrt(n));
+            double estimate = 0;
+            for (int k = 0; k < POWER_ITERATIONS; k++) {
+                double norm = 0;
+                for (int i = 0; i < n; i++) {
+                    double row = 0;
+                    for (int j = 0; j < n; j++) {
+                        row += covariance[i * n + j] * x[j];
+                    }
+                    y[i] = row;
+                    norm += row * row;
+                }
+                norm = Math.sqrt(norm);
+                if (norm == 0) {
+                    return gershgorin;
+                }
+                estimate = norm;
+                for (int i = 0; i < n; i++) {
+                    x[i] = y[i] / norm;
+                }
+            }
+            // 幂迭代从下方逼近，留出余量保证步长稳定
+            return Math.min(gershgorin, estimate * 1.05);
+        }
+
+        private boolean isFeasible() {
+            return feasible(lower, upper, groups, groupLower, groupUpper);
+        }
+
+        /**
+         * 可行性判断：单品下限不超过上限，各组区间非空，且各组可达区间之和覆盖1
+         */
+        public static boolean feasible(double[] lower, double[] upper, int[] groups,
+                                       double[] groupLower, double[] groupUpper) {
+            int groupCount = groupLower.length;
+            double[] lowerSum = new double[groupCount];
+            double[] upperSum = new double[groupCount];
+            double minTotal = 0;
+            double maxTotal = 0;
+            for (int i = 0; i < lower.length; i++) {
+                if (lower[i] > upper[i] || lower[i] < 0) {
+                    return false;
+                }
+                if (groups[i] >= 0) {
+                    lowerSum[groups[i]] += lower[i];
+                    upperSum[groups[i]] += upper[i];
+                } else {
+                    minTotal += lower[i];
+                    maxTotal += upper[i];
+                }
+            }
+            for (int g = 0; g < groupCount; g++) {
+                double reachableLow = Math.max(lowerSum[g], groupLower[g]);
+                double reachableHigh = Math.min(upperSum[g], groupUpper[g]);
+                if (reachableLow > reachableHigh + 1e-12) {
+                    return false;
+                }
+                minTotal += reachableLow;
+                maxTotal += reachableHigh;
+            }
+            return minTotal <= 1 + 1e-12 && maxTotal >= 1 - 1e-12;
+        }
+    }
+
+    /**
+     * 优化结果
+     */
+    public record Result(double[] weights, int iterations, boolean converged, double variance, double expectedReturn) {
+
+        public double volatility() {
+            return Math.sqrt(variance);
+        }
+    }
+}
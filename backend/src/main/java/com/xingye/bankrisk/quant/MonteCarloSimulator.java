@@ -0,0 +1,228 @@
+package com.xingye.bankrisk.quant;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 组合情景模拟器
+ * 各资产服从相关几何布朗运动，买入持有至期末，每条路径只需一次相关正态抽样：
+ * W_T = Σ w_i·exp((μ_i - σ_i²/2)·T + √T·(Lz)_i)，其中 LLᵀ = Σ
+ */
+public final class MonteCarloSimulator {
+
+    /**
+     * 输出的分位点
+     */
+    public static final double[] PERCENTILES = {0.01, 0.05, 0.10, 0.25, 0.50, 0.75, 0.90, 0.95, 0.99};
+
+    private static final int LEAF_PATHS = 8192;
+    private static final int MAX_JITTER_ROUNDS = 8;
+
+    private final ForkJoinPool pool;
+
+    public MonteCarloSimulator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 运行模拟
+     *
+     * @param weights         组合权重（和为1）
+     * @param expectedReturns 年化预期收益率（小数）
+     * @param covariance      年化协方差（小数，k×k 行主序）
+     * @param horizonYears    投资期限（年）
+     * @param paths           路径数
+     * @param confidence      预期损失的置信水平，如 0.95
+     */
+    public Result simulate(double[] weights, double[] expectedReturns, double[] covariance,
+                           double horizonYears, int paths, double confidence, long seed) {
+        int k = weights.length;
+        if (expectedReturns.length != k || covariance.length != k * k) {
+            throw new IllegalArgumentException("模拟输入维度不匹配");
+        }
+        if (paths <= 0 || horizonYears <= 0) {
+            throw new IllegalArgumentException("路径数与期限必须为正");
+        }
+
+        double[] cholesky = cholesky(covariance, k);
+        double[] drift = new double[k];
+        for (int i = 0; i < k; i++) {
+            drift[i] = (expectedReturns[i] - covariance[i * k + i] / 2) * horizonYears;
+        }
+        double scale = Math.sqrt(horizonYears);
+
+        long startTime = System.nanoTime();
+        double[] outcomes = new double[paths];
+        Accumulator total = pool.invoke(new PathTask(weights, drift, cholesky, scale, outcomes,
+                0, paths, new SplittableRandom(seed)));
+        Arrays.parallelSort(outcomes);
+
+        double[] percentileValues = new double[PERCENTILES.length];
+        for (int p = 0; p < PERCENTILES.length; p++) {
+            percentileValues[p] = quantile(outcomes, PERCENTILES[p]);
+        }
+
+        int tail = Math.max(1, (int) Math.floor(paths * (1 - confidence)));
+        double tailSum = 0;
+        for (int i = 0; i < tail; i++) {
+            tailSum += outcomes[i];
+        }
+
+        double mean = total.sum / paths;
+        double variance = Math.max(0, total.sumOfSquares / paths - mean * mean);
+        return new Result(paths, horizonYears, confidence, mean, Math.sqrt(variance),
+                PERCENTILES.clone(), percentileValues, (double) total.losses / paths,
+                -quantile(outcomes, 1 - confidence), -tailSum / tail,
+                (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    // 私有辅助方法
+
+    /**
+     * Cholesky 分解（下三角行主序）；矩阵仅半正定时逐步加对角扰动
+     */
+    static double[] cholesky(double[] covariance, int k) {
+        double trace = 0;
+        for (int i = 0; i < k; i++) {
+            trace += covariance[i * k + i];
+        }
+        double jitter = 0;
+        for (int round = 0; round <= MAX_JITTER_ROUNDS; round++) {
+            double[] lower = tryCholesky(covariance, k, jitter);
+            if (lower != null) {
+                return lower;
+            }
+            jitter = jitter == 0 ? Math.max(1e-12, trace / Math.max(1, k) * 1e-10) : jitter * 100;
+        }
+        throw new IllegalArgumentException("协方差矩阵无法分解");
+    }
+
+    private static double[] tryCholesky(double[] covariance, int k, double jitter) {
+        double[] lower = new double[k * k];
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = covariance[i * k + j] + (i == j ? jitter : 0);
+                for (int m = 0; m < j; m++) {
+                    sum -= lower[i * k + m] * lower[j * k + m];
+                }
+                if (i == j) {
+                    if (sum < 0) {
+                        return null;
+                    }
+                    lower[i * k + i] = Math.sqrt(sum);
+                } else {
+                    lower[i * k + j] = lower[j * k + j] > 0 ? sum / lower[j * k + j] : 0;
+                }
+            }
+        }
+        return lower;
+    }
+
+    private static double quantile(double[] sorted, double level) {
+        double position = level * (sorted.length - 1);
+        int index = (int) Math.floor(position);
+        if (index >= sorted.length - 1) {
+            return sorted[sorted.length - 1];
+        }
+        double fraction = position - index;
+        return sorted[index] + fraction * (sorted[index + 1] - sorted[index]);
+    }
+
+    /**
+     * 按路径区间二分的模拟任务，拆分时同时拆分随机数生成器，结果写入共享数组的不相交区间
+     */
+    private static final class PathTask extends RecursiveTask<Accumulator> {
+
+        private final double[] weights;
+        private final double[] drift;
+        private final double[] cholesky;
+        private final double scale;
+        private final double[] outcomes;
+        private final int from;
+        private final int to;
+        private final SplittableRandom random;
+
+        PathTask(double[] weights, double[] drift, double[] cholesky, double scale, double[] outcomes,
+                 int from, int to, SplittableRandom random) {
+            this.weights = weights;
+            this.drift = drift;
+            this.cholesky = cholesky;
+            this.scale = scale;
+            this.outcomes = outcomes;
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            if (to - from > LEAF_PATHS) {
+                int middle = (from + to) >>> 1;
+                PathTask left = new PathTask(weights, drift, cholesky, scale, outcomes, from, middle, random.split());
+                PathTask right = new PathTask(weights, drift, cholesky, scale, outcomes, middle, to, random);
+                left.fork();
+                Accumulator result = right.compute();
+                result.merge(left.join());
+                return result;
+            }
+
+            int k = weights.length;
+            double[] normals = new double[k];
+            Accumulator accumulator = new Accumulator();
+            for (int path = from; path < to; path++) {
+                for (int i = 0; i < k; i++) {
+                    normals[i] = random.nextGaussian();
+                }
+                double wealth = 0;
+                for (int i = 0; i < k; i++) {
+                    double shock = 0;
+                    int offset = i * k;
+                    for (int j = 0; j <= i; j++) {
+                        shock += cholesky[offset + j] * normals[j];
+                    }
+                    wealth += weights[i] * Math.exp(drift[i] + scale * shock);
+                }
+                double portfolioReturn = wealth - 1;
+                outcomes[path] = portfolioReturn;
+                accumulator.add(portfolioReturn);
+            }
+            return accumulator;
+        }
+    }
+
+    /**
+     * 路径统计的原始类型累加器
+     */
+    private static final class Accumulator {
+        private double sum;
+        private double sumOfSquares;
+        private long losses;
+
+        void add(double value) {
+            sum += value;
+            sumOfSquares += value * value;
+            if (value < 0) {
+                losses++;
+            }
+        }
+
+        void merge(Accumulator other) {
+            sum += other.sum;
+            sumOfSquares += other.sumOfSquares;
+            losses += other.losses;
+        }
+    }
+
+    /**
+     * 模拟结果，收益均为期末累计收益率（小数）
+     *
+     * @param valueAtRisk        置信水平下的在险价值（损失为正）
+     * @param expectedShortfall  置信水平下的预期损失（尾部平均损失，损失为正）
+     */
+    public record Result(int paths, double horizonYears, double confidence, double mean, double standardDeviation,
+                         double[] percentileLevels, double[] percentileValues, double lossProbability,
+                         double valueAtRisk, double expectedShortfall, long elapsedMillis) {
+    }
+}
@@ -0,0 +1,78 @@
+package com.xingye.bankrisk.quant;
+
+/**
+ * 在线协方差估计器（Welford 算法的多元形式，成对完整观测）
+ * 每对产品只用两者都有收益的期估计均值和协方差，缺失值（NaN）不填补：以均值填补会把协方差压向零。
+ * 每新增一期收益向量只需 O(n²) 更新，无需保留历史序列；非线程安全，由调用方加锁
+ */
+public final class OnlineCovarianceEstimator {
+
+    private final int dimension;
+
+    // 以下按上三角打包存储，(i, j) 对应 i、j 都有观测的期
+    private final int[] pairCounts;
+    private final double[] rowMeans;
+    private final double[] columnMeans;
+    private final double[] comoment;
+    private long count;
+
+    public OnlineCovarianceEstimator(int dimension) {
+        int length = PackedCovarianceMatrix.packedLength(dimension);
+        this.dimension = dimension;
+        this.pairCounts = new int[length];
+        this.rowMeans = new double[length];
+        this.columnMeans = new double[length];
+        this.comoment = new double[length];
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * 已加入的期数
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * 加入一期观测；缺失值传入 NaN，该期不计入含该产品的任何一对
+     */
+    public void update(double[] observation) {
+        if (observation.length != dimension) {
+            throw new IllegalArgumentException("观测维度不匹配: " + observation.length);
+        }
+        count++;
+        int k = 0;
+        for (int i = 0; i < dimension; i++) {
+            double x = observation[i];
+            if (Double.isNaN(x)) {
+                k += dimension - i;
+                continue;
+            }
+            for (int j = i; j < dimension; j++, k++) {
+                double y = observation[j];
+                if (Double.isNaN(y)) {
+                    continue;
+                }
+                int n = ++pairCounts[k];
+                double dx = x - rowMeans[k];
+                rowMeans[k] += dx / n;
+                columnMeans[k] += (y - columnMeans[k]) / n;
+                comoment[k] += dx * (y - columnMeans[k]);
+            }
+        }
+    }
+
+    /**
+     * 当前样本协方差（无偏），共同观测不足两期的元素为 NaN，由调用方以先验替代
+     */
+    public PackedCovarianceMatrix covariance() {
+        double[] result = new double[comoment.length];
+        for (int k = 0; k < comoment.length; k++) {
+            result[k] = pairCounts[k] > 1 ? comoment[k] / (pairCounts[k] - 1) : Double.NaN;
+        }
+        return new PackedCovarianceMatrix(dimension, result);
+    }
+}
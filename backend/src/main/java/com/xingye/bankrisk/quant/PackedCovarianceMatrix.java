@@ -0,0 +1,193 @@
+package com.xingye.bankrisk.quant;
+
+import java.util.Arrays;
+
+/**
+ * 紧凑存储的对称协方差矩阵
+ * 仅按行保存上三角（含对角线），长度为 n(n+1)/2
+ */
+public final class PackedCovarianceMatrix {
+
+    private final int dimension;
+    private final double[] packed;
+
+    public PackedCovarianceMatrix(int dimension) {
+        this(dimension, new double[packedLength(dimension)]);
+    }
+
+    PackedCovarianceMatrix(int dimension, double[] packed) {
+        if (packed.length != packedLength(dimension)) {
+            throw new IllegalArgumentException("协方差矩阵长度不匹配: " + packed.length);
+        }
+        this.dimension = dimension;
+        this.packed = packed;
+    }
+
+    /**
+     * 计算n维矩阵上三角所需的数组长度
+     */
+    public static int packedLength(int dimension) {
+        return dimension * (dimension + 1) / 2;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public double get(int i, int j) {
+        return packed[index(i, j)];
+    }
+
+    public void set(int i, int j, double value) {
+        packed[index(i, j)] = value;
+    }
+
+    public double variance(int i) {
+        return packed[index(i, i)];
+    }
+
+    /**
+     * 计算 wᵀΣw，权重与矩阵维度一一对应
+     */
+    public double quadraticForm(double[] weights) {
+        if (weights.length != dimension) {
+            throw new IllegalArgumentException("权重维度不匹配: " + weights.length);
+        }
+        double sum = 0;
+        int k = 0;
+        for (int i = 0; i < dimension; i++) {
+            double wi = weights[i];
+            sum += wi * wi * packed[k++];
+            double cross = 0;
+            for (int j = i + 1; j < dimension; j++) {
+                cross += weights[j] * packed[k++];
+            }
+            sum += 2 * wi * cross;
+        }
+        return sum;
+    }
+
+    /**
+     * 计算子集上的 wᵀΣw，indices[a] 为权重 weights[a] 对应的矩阵下标
+     */
+    public double quadraticForm(int[] indices, double[] weights) {
+        if (indices.length != weights.length) {
+            throw new IllegalArgumentException("下标与权重数量不匹配");
+        }
+        double sum = 0;
+        for (int a = 0; a < indices.length; a++) {
+            double wa = weights[a];
+            if (wa == 0) {
+                continue;
+            }
+            sum += wa * wa * variance(indices[a]);
+            double cross = 0;
+            for (int b = a + 1; b < indices.length; b++) {
+                cross += weights[b] * get(indices[a], indices[b]);
+            }
+            sum += 2 * wa * cross;
+        }
+        return sum;
+    }
+
+    /**
+     * 抽取子矩阵为稠密行主序数组，供迭代求解器做矩阵向量乘
+     */
+    public double[] extractDense(int[] indices) {
+        int k = indices.length;
+        double[] dense = new double[k * k];
+        for (int a = 0; a < k; a++) {
+            dense[a * k + a] = variance(indices[a]);
+            for (int b = a + 1; b < k; b++) {
+                double value = get(indices[a], indices[b]);
+                dense[a * k + b] = value;
+                dense[b * k + a] = value;
+            }
+        }
+        return dense;
+    }
+
+    /**
+     * 按 (1-δ)·this + δ·target 收缩，返回新矩阵
+     */
+    public PackedCovarianceMatrix shrinkToward(PackedCovarianceMatrix target, double intensity) {
+        if (target.dimension != dimension) {
+            throw new IllegalArgumentException("收缩目标维度不匹配");
+        }
+        double delta = Math.max(0, Math.min(1, intensity));
+        double[] result = new double[packed.length];
+        for (int k = 0; k < packed.length; k++) {
+            result[k] = (1 - delta) * packed[k] + delta * target.packed[k];
+        }
+        return new PackedCovarianceMatrix(dimension, result);
+    }
+
+    /**
+     * 所有元素乘以常数（用于区间协方差年化）
+     */
+    public PackedCovarianceMatrix scale(double factor) {
+        double[] result = new double[packed.length];
+        for (int k = 0; k < packed.length; k++) {
+            result[k] = packed[k] * factor;
+        }
+        return new PackedCovarianceMatrix(dimension, result);
+    }
+
+    /**
+     * 以 Cholesky 分解判断是否半正定：主元低于 -tolerance·最大方差时不是；接近零的主元视为秩亏，跳过该列
+     */
+    public boolean isPositiveSemidefinite(double tolerance) {
+        int n = dimension;
+        double scale = 0;
+        for (int i = 0; i < n; i++) {
+            scale = Math.max(scale, variance(i));
+        }
+        double threshold = tolerance * Math.max(scale, Double.MIN_NORMAL);
+        double[] lower = new double[n * n];
+        for (int j = 0; j < n; j++) {
+            double pivot = variance(j);
+            for (int k = 0; k < j; k++) {
+                pivot -= lower[j * n + k] * lower[j * n + k];
+            }
+            if (pivot < -threshold) {
+                return false;
+            }
+            if (pivot <= threshold) {
+                // 该列与前面的列线性相关，其余行在此列上也必须近似为零
+                for (int i = j + 1; i < n; i++) {
+                    double residual = get(i, j);
+                    for (int k = 0; k < j; k++) {
+                        residual -= lower[i * n + k] * lower[j * n + k];
+                    }
+                    if (Math.abs(residual) > Math.sqrt(threshold * Math.max(scale, Double.MIN_NORMAL))) {
+                        return false;
+                    }
+                }
+                continue;
+            }
+            double diagonal = Math.sqrt(pivot);
+            lower[j * n + j] = diagonal;
+            for (int i = j + 1; i < n; i++) {
+                double value = get(i, j);
+                for (int k = 0; k < j; k++) {
+                    value -= lower[i * n + k] * lower[j * n + k];
+                }
+                lower[i * n + j] = value / diagonal;
+            }
+        }
+        return true;
+    }
+
+    public PackedCovarianceMatrix copy() {
+        return new PackedCovarianceMatrix(dimension, Arrays.copyOf(packed, packed.length));
+    }
+
+    private int index(int i, int j) {
+        if (i > j) {
+            int tmp = i;
+            i = j;
+            j = tmp;
+        }
+        return i * dimension - (i * (i - 1)) / 2 + (j - i);
+    }
+}
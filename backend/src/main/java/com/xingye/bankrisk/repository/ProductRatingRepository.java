@@ -12,6 +12,7 @@ import java.util.Optional;
 
 /**
  * 产品评分数据访问层
+ * 最新评分、平均评分等聚合读取统一使用 ProductRatingSummaryRepository
  */
 @Repository
 public interface ProductRatingRepository extends JpaRepository<ProductRating, Long> {
@@ -27,10 +28,9 @@ public interface ProductRatingRepository extends JpaRepository<ProductRating, Lo
     Optional<ProductRating> findByProductIdAndRatingDate(Long productId, LocalDate ratingDate);
 
     /**
-     * 获取产品的最新评分
+     * 查找产品的最新一条有综合评分的记录（日期最大者，同日取ID较大者）
      */
-    @Query("SELECT pr FROM ProductRating pr WHERE pr.productId = :productId ORDER BY pr.ratingDate DESC LIMIT 1")
-    Optional<ProductRating> findLatestRatingByProductId(@Param("productId") Long productId);
+    Optional<ProductRating> findFirstByProductIdAndOverallRatingIsNotNullOrderByRatingDateDescIdDesc(Long productId);
 
     /**
      * 根据评级机构查找评分
@@ -44,14 +44,6 @@ public interface ProductRatingRepository extends JpaRepository<ProductRating, Lo
     List<ProductRating> findByOverallRatingRange(@Param("minRating") java.math.BigDecimal minRating,
                                                 @Param("maxRating") java.math.BigDecimal maxRating);
 
-    /**
-     * 获取评分最高的N个产品
-     */
-    @Query("SELECT pr FROM ProductRating pr WHERE pr.ratingDate = " +
-           "(SELECT MAX(pr2.ratingDate) FROM ProductRating pr2 WHERE pr2.productId = pr.productId) " +
-           "ORDER BY pr.overallRating DESC")
-    List<ProductRating> findTopRatedProducts();
-
     /**
      * 获取指定日期范围内的评分
      */
@@ -64,17 +56,4 @@ public interface ProductRatingRepository extends JpaRepository<ProductRating, Lo
      */
     @Query("SELECT pr.ratingAgency, COUNT(pr) FROM ProductRating pr GROUP BY pr.ratingAgency")
     List<Object[]> countRatingsByAgency();
-
-    /**
-     * 获取产品的平均评分
-     */
-    @Query("SELECT AVG(pr.overallRating) FROM ProductRating pr WHERE pr.productId = :productId")
-    Optional<java.math.BigDecimal> findAverageRatingByProductId(@Param("productId") Long productId);
-
-    /**
-     * 查找高于指定评分的最新评分
-     */
-    @Query("SELECT pr FROM ProductRating pr WHERE pr.overallRating >= :minRating " +
-           "AND pr.ratingDate = (SELECT MAX(pr2.ratingDate) FROM ProductRating pr2 WHERE pr2.productId = pr.productId)")
-    List<ProductRating> findLatestHighRatedProducts(@Param("minRating") java.math.BigDecimal minRating);
 }
@@ -0,0 +1,50 @@
+package com.xingye.bankrisk.repository;
+
+import com.xingye.bankrisk.entity.ProductRatingSummary;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 产品评分汇总数据访问层
+ */
+@Repository
+public interface ProductRatingSummaryRepository extends JpaRepository<ProductRatingSummary, Long> {
+
+    /**
+     * 汇总行不存在时插入空汇总，保证并发写入时后续加锁读取总能命中
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO product_rating_summary " +
+                   "(product_id, rating_count, rating_sum, decayed_sum, decayed_weight, updated_at) " +
+                   "VALUES (:productId, 0, 0, 0, 0, NOW())", nativeQuery = true)
+    int insertIfAbsent(@Param("productId") Long productId);
+
+    /**
+     * 加写锁读取汇总行
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ProductRatingSummary s WHERE s.productId = :productId")
+    Optional<ProductRatingSummary> findForUpdate(@Param("productId") Long productId);
+
+    /**
+     * 按最新综合评分降序查找产品汇总
+     */
+    @Query("SELECT s FROM ProductRatingSummary s WHERE s.latestOverallRating IS NOT NULL " +
+           "ORDER BY s.latestOverallRating DESC")
+    List<ProductRatingSummary> findTopRated(Pageable pageable);
+
+    /**
+     * 查找最新综合评分不低于指定值的产品汇总
+     */
+    List<ProductRatingSummary> findByLatestOverallRatingGreaterThanEqualOrderByLatestOverallRatingDesc(BigDecimal minRating);
+}
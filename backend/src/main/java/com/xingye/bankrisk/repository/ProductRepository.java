@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -31,6 +32,23 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
      */
     List<Product> findByIsActiveTrue();
 
+    /**
+     * 产品目录指纹（产品数、最近更新时间），用于判断目录是否变化
+     */
+    @Query("SELECT COUNT(p), MAX(p.updatedAt) FROM Product p")
+    List<Object[]> findCatalogFingerprint();
+
+    /**
+     * 激活产品的目录指纹（产品数、最近更新时间）：停用产品的变更不影响依赖激活产品的缓存
+     */
+    @Query("SELECT COUNT(p), MAX(p.updatedAt) FROM Product p WHERE p.isActive = true")
+    List<Object[]> findActiveCatalogFingerprint();
+
+    /**
+     * 查找指定风险等级范围内的激活产品
+     */
+    List<Product> findByIsActiveTrueAndRiskLevelIn(Collection<User.RiskLevel> riskLevels);
+
     /**
      * 根据产品类型和风险等级查找产品
      */
@@ -181,20 +199,4 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p FROM Product p WHERE p.riskLevel = :riskLevel AND p.isActive = true ORDER BY " +
            "(p.sharpeRatio * 0.4 + (10 - p.expectedVolatility) * 0.3 + p.expectedReturn * 0.3) DESC")
     List<Product> findBestProductsByRiskLevel(@Param("riskLevel") User.RiskLevel riskLevel);
-
-    /**
-     * 查找产品（支持多条件筛选）
-     */
-    @Query("SELECT p FROM Product p WHERE p.isActive = true " +
-           "AND (:productTypes IS NULL OR p.productType IN :productTypes) " +
-           "AND (:riskLevels IS NULL OR p.riskLevel IN :riskLevels) " +
-           "AND (:minReturn IS NULL OR p.expectedReturn >= :minReturn) " +
-           "AND (:maxReturn IS NULL OR p.expectedReturn <= :maxReturn) " +
-           "AND (:sectors IS NULL OR p.sector IN :sectors) " +
-           "ORDER BY p.expectedReturn DESC")
-    List<Product> findProductsWithFilters(@Param("productTypes") List<Product.ProductType> productTypes,
-                                         @Param("riskLevels") List<User.RiskLevel> riskLevels,
-                                         @Param("minReturn") java.math.BigDecimal minReturn,
-                                         @Param("maxReturn") java.math.BigDecimal maxReturn,
-                                         @Param("sectors") List<String> sectors);
 }
@@ -0,0 +1,25 @@
+package com.xingye.bankrisk.repository;
+
+import com.xingye.bankrisk.entity.ProductReturn;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 产品区间收益数据访问层
+ */
+@Repository
+public interface ProductReturnRepository extends JpaRepository<ProductReturn, Long> {
+
+    /**
+     * 查找指定日期之后的收益序列（按日期升序）
+     */
+    List<ProductReturn> findByReturnDateGreaterThanEqualOrderByReturnDateAsc(LocalDate startDate);
+
+    /**
+     * 查找指定日期的全部收益记录
+     */
+    List<ProductReturn> findByReturnDate(LocalDate returnDate);
+}
@@ -104,4 +104,16 @@ public interface QuestionnaireRepository extends JpaRepository<Questionnaire, Lo
      */
     @Query("SELECT COUNT(q) FROM Questionnaire q WHERE DATE(q.createdAt) = CURRENT_DATE")
     Long countTodayQuestionnaires();
+
+    // IncludingArchive 查询同时读取 questionnaires_archive 中已归档的历史问卷（见 ArchiveService）；
+    // 归档问卷只用于查询，不能修改后保存
+
+    /**
+     * 查找用户的全部问卷，包含归档
+     */
+    @Query(value = "SELECT * FROM questionnaires WHERE user_id = :userId " +
+                   "UNION ALL SELECT * FROM questionnaires_archive WHERE user_id = :userId " +
+                   "ORDER BY created_at DESC",
+           nativeQuery = true)
+    List<Questionnaire> findByUserIdIncludingArchive(@Param("userId") Long userId);
 }
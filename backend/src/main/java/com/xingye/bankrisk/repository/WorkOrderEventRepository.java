@@ -0,0 +1,19 @@
+package com.xingye.bankrisk.repository;
+
+import com.xingye.bankrisk.entity.WorkOrderEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * 工单事件数据访问层（只读；写入见 WorkOrderEventLog）
+ */
+@Repository
+public interface WorkOrderEventRepository extends JpaRepository<WorkOrderEvent, Long> {
+
+    /**
+     * 按发生顺序查找工单的全部事件
+     */
+    List<WorkOrderEvent> findByWorkOrderIdOrderByIdAsc(Long workOrderId);
+}
@@ -7,8 +7,11 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * 工单数据访问层
@@ -137,16 +140,73 @@ public interface WorkOrderRepository extends JpaRepository<WorkOrder, Long> {
            "w.status NOT IN ('APPROVED', 'REJECTED')")
     List<WorkOrder> findOverdueWorkOrders();
 
+    /**
+     * 统计指定时间范围内创建的工单数，使用范围条件以便走 created_at 索引
+     */
+    @Query("SELECT COUNT(w) FROM WorkOrder w WHERE w.createdAt >= :startTime AND w.createdAt < :endTime")
+    Long countCreatedBetween(@Param("startTime") LocalDateTime startTime,
+                             @Param("endTime") LocalDateTime endTime);
+
     /**
      * 统计今日创建的工单数
      */
-    @Query("SELECT COUNT(w) FROM WorkOrder w WHERE DATE(w.createdAt) = CURRENT_DATE")
-    Long countTodayWorkOrders();
+    default Long countTodayWorkOrders() {
+        LocalDate today = LocalDate.now();
+        return countCreatedBetween(today.atStartOfDay(), today.plusDays(1).atStartOfDay());
+    }
 
     /**
      * 统计本月创建的工单数
      */
-    @Query("SELECT COUNT(w) FROM WorkOrder w WHERE YEAR(w.createdAt) = YEAR(CURRENT_DATE) " +
-           "AND MONTH(w.createdAt) = MONTH(CURRENT_DATE)")
-    Long countMonthWorkOrders();
+    default Long countMonthWorkOrders() {
+        LocalDate firstDay = LocalDate.now().withDayOfMonth(1);
+        return countCreatedBetween(firstDay.atStartOfDay(), firstDay.plusMonths(1).atStartOfDay());
+    }
+
+    /**
+     * 查找待审工单的SLA截止时间（ID、状态、截止时间）
+     */
+    @Query("SELECT w.id, w.status, w.slaDeadline FROM WorkOrder w WHERE w.status IN :statuses")
+    List<Object[]> findOpenWorkOrderDeadlines(@Param("statuses") Collection<WorkOrder.WorkOrderStatus> statuses);
+
+    /**
+     * 查找待审工单的分配情况（ID、状态、优先级、处理人、SLA截止时间）
+     */
+    @Query("SELECT w.id, w.status, w.priority, w.reviewerId, w.slaDeadline FROM WorkOrder w WHERE w.status IN :statuses")
+    List<Object[]> findOpenWorkOrderAssignments(@Param("statuses") Collection<WorkOrder.WorkOrderStatus> statuses);
+
+    /**
+     * 查找指定时间之后创建的工单的创建时间
+     */
+    @Query("SELECT w.createdAt FROM WorkOrder w WHERE w.createdAt >= :since")
+    List<LocalDateTime> findCreatedTimesSince(@Param("since") LocalDateTime since);
+
+    /**
+     * 查找指定时间之后完成（已通过或已拒绝）的工单的完成时间
+     */
+    @Query("SELECT w.updatedAt FROM WorkOrder w WHERE w.status IN ('APPROVED', 'REJECTED') AND w.updatedAt >= :since")
+    List<LocalDateTime> findCompletedTimesSince(@Param("since") LocalDateTime since);
+
+    // IncludingArchive 查询同时读取 work_orders_archive 中已归档的工单（见 ArchiveService）；
+    // 归档工单只用于查询，不能修改后保存
+
+    /**
+     * 根据ID查找工单，包含归档；工单只会存在于其中一张表
+     */
+    @Query(value = "SELECT * FROM work_orders WHERE id = :id " +
+                   "UNION ALL SELECT * FROM work_orders_archive WHERE id = :id",
+           nativeQuery = true)
+    Optional<WorkOrder> findByIdIncludingArchive(@Param("id") Long id);
+
+    /**
+     * 统计各状态的归档工单数量（状态为字符串）
+     */
+    @Query(value = "SELECT status, COUNT(*) FROM work_orders_archive GROUP BY status", nativeQuery = true)
+    List<Object[]> countArchivedWorkOrdersByStatus();
+
+    /**
+     * 统计各优先级的归档工单数量（优先级为字符串）
+     */
+    @Query(value = "SELECT priority, COUNT(*) FROM work_orders_archive GROUP BY priority", nativeQuery = true)
+    List<Object[]> countArchivedWorkOrdersByPriority();
 }
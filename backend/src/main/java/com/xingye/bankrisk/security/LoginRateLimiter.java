@@ -0,0 +1,130 @@
+package com.xingye.bankrisk.security;
+
+import com.xingye.bankrisk.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 登录限流
+ * 按客户端IP和账号分别维护令牌桶，在查库和密码哈希之前拒绝超限的登录尝试（429）。
+ * 账号桶只按账号计数，分散到多个IP的猜测同样受限；令牌按速率回填，超限只是限速，不会永久锁定账号
+ */
+@Component
+public class LoginRateLimiter {
+
+    private final Limit accountLimit;
+    private final Limit ipLimit;
+    private final int maxTrackedKeys;
+
+    private final ConcurrentHashMap<String, Bucket> accountBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Bucket> ipBuckets = new ConcurrentHashMap<>();
+
+    private final Counter accountThrottled;
+    private final Counter ipThrottled;
+
+    public LoginRateLimiter(@Value("${auth.throttle.account.capacity:5}") int accountCapacity,
+                            @Value("${auth.throttle.account.refill-per-minute:5}") double accountRefillPerMinute,
+                            @Value("${auth.throttle.ip.capacity:50}") int ipCapacity,
+                            @Value("${auth.throttle.ip.refill-per-minute:60}") double ipRefillPerMinute,
+                            @Value("${auth.throttle.max-tracked-keys:100000}") int maxTrackedKeys,
+                            MeterRegistry meterRegistry) {
+        this.accountLimit = new Limit(accountCapacity, accountRefillPerMinute / TimeUnit.MINUTES.toNanos(1));
+        this.ipLimit = new Limit(ipCapacity, ipRefillPerMinute / TimeUnit.MINUTES.toNanos(1));
+        this.maxTrackedKeys = maxTrackedKeys;
+
+        this.accountThrottled = Counter.builder("auth.login.throttled")
+                .description("被限流拒绝的登录尝试")
+                .tag("scope", "account")
+                .register(meterRegistry);
+        this.ipThrottled = Counter.builder("auth.login.throttled")
+                .description("被限流拒绝的登录尝试")
+                .tag("scope", "ip")
+                .register(meterRegistry);
+        Gauge.builder("auth.login.throttle.keys", this, limiter -> limiter.accountBuckets.size() + limiter.ipBuckets.size())
+                .description("当前跟踪的限流令牌桶数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 消耗一次登录尝试；IP 与账号任一超限时拒绝
+     * 先检查IP，撞库式的多账号尝试不会消耗被攻击账号的令牌
+     */
+    public void acquire(String account, String clientIp) {
+        if (clientIp != null) {
+            acquire(ipBuckets, ipLimit, clientIp, ipThrottled, "IP");
+        }
+        if (account != null) {
+            acquire(accountBuckets, accountLimit, account, accountThrottled, "账号");
+        }
+    }
+
+    /**
+     * 清理已回满的令牌桶（与新建桶等价），控制内存占用
+     */
+    @Scheduled(fixedDelayString = "${auth.throttle.cleanup-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        accountBuckets.values().removeIf(bucket -> bucket.isFull(accountLimit, now));
+        ipBuckets.values().removeIf(bucket -> bucket.isFull(ipLimit, now));
+    }
+
+    // 私有辅助方法
+
+    private void acquire(ConcurrentHashMap<String, Bucket> buckets, Limit limit, String key,
+                         Counter throttled, String scope) {
+        if (buckets.size() >= maxTrackedKeys && !buckets.containsKey(key)) {
+            // 跟踪的键过多时先清理回满的桶；仍然过多说明遭受大范围攻击，新键按超限处理
+            evictIdleBuckets();
+            if (buckets.size() >= maxTrackedKeys) {
+                throttled.increment();
+                throw throttled(scope, 60);
+            }
+        }
+
+        long now = System.nanoTime();
+        Bucket bucket = buckets.compute(key, (k, current) ->
+                (current == null ? Bucket.full(limit, now) : current).take(limit, now));
+        if (!bucket.granted()) {
+            throttled.increment();
+            long waitNanos = (long) Math.ceil((1 - bucket.tokens()) / limit.refillPerNano());
+            throw throttled(scope, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+        }
+    }
+
+    private AdmissionRejectedException throttled(String scope, long retryAfterSeconds) {
+        return new AdmissionRejectedException(scope + "登录尝试过于频繁，请稍后重试", "AUTH_THROTTLED",
+                HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds);
+    }
+
+    private record Limit(int capacity, double refillPerNano) {
+    }
+
+    /**
+     * 令牌桶状态，不可变；在 ConcurrentHashMap.compute 中原子替换
+     */
+    private record Bucket(double tokens, long updatedAt, boolean granted) {
+
+        static Bucket full(Limit limit, long now) {
+            return new Bucket(limit.capacity(), now, false);
+        }
+
+        Bucket take(Limit limit, long now) {
+            double refilled = Math.min(limit.capacity(), tokens + (now - updatedAt) * limit.refillPerNano());
+            return refilled >= 1
+                    ? new Bucket(refilled - 1, now, true)
+                    : new Bucket(refilled, now, false);
+        }
+
+        boolean isFull(Limit limit, long now) {
+            return tokens + (now - updatedAt) * limit.refillPerNano() >= limit.capacity();
+        }
+    }
+}
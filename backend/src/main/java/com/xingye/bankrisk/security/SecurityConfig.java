@@ -1,7 +1,10 @@
 package com.xingye.bankrisk.security;
 
 import com.xingye.bankrisk.service.AuthService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -36,10 +39,16 @@ public class SecurityConfig {
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(authz -> authz
+                // 异步分派（SSE推送）沿用原请求的认证结果，不再重复鉴权
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+
                 // 公开接口
                 .requestMatchers("/auth/login", "/auth/register", "/auth/validate").permitAll()
                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
                 .requestMatchers("/user/login", "/user/register").permitAll()
+                .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+                // 其余管理端点（含运行时调整日志级别的 loggers）仅限管理员
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
 
                 // 需要认证的接口
                 .requestMatchers("/auth/**").authenticated()
@@ -63,16 +72,24 @@ public class SecurityConfig {
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
         configuration.setAllowCredentials(true);
-        configuration.setExposedHeaders(Arrays.asList("Authorization"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "Idempotent-Replayed", "Retry-After"));
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
         return source;
     }
 
+    /**
+     * 密码编码器：BCrypt 在有界专用线程池中执行
+     * 静态声明：AuthService 依赖该 Bean，而本配置类依赖的 JwtAuthenticationFilter 又依赖 AuthService，
+     * 实例方法会形成循环依赖
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public static PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+                                                  @Value("${auth.hashing.threads:0}") int threads,
+                                                  @Value("${auth.hashing.queue-capacity:64}") int queueCapacity,
+                                                  @Value("${auth.hashing.timeout-ms:3000}") long timeoutMillis) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), threads, queueCapacity, timeoutMillis, meterRegistry);
     }
 
     @Bean
@@ -0,0 +1,204 @@
+package com.xingye.bankrisk.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 冷数据归档服务
+ * 已完成超过保留期的工单、非最新且超过保留期的问卷，分批从热表移入按月分区的归档表（work_orders_archive、
+ * questionnaires_archive），热表规模只与保留期内的数据量有关。每批在一个事务内复制并删除，中途失败不会丢失或重复。
+ * 候选行用不加锁的一致性读选出，再按主键加锁并复核条件，热表上只锁本批要移动的行。
+ * 归档表的月分区在移入前按需从 pmax 拆分；过期的月份可直接 DROP 或 EXCHANGE 分区导出
+ */
+@Slf4j
+@Service
+public class ArchiveService {
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    /**
+     * 归档表初始的历史分区边界，与建表脚本一致；之前的数据都落在 p_history
+     */
+    private static final YearMonth FIRST_MONTHLY_PARTITION = YearMonth.of(2024, 1);
+
+    private static final String WORK_ORDER_PREDICATE =
+            "status IN ('APPROVED', 'REJECTED') AND updated_at < :cutoff AND created_at < :cutoff";
+
+    // 仍被 users.latest_questionnaire_id 引用的问卷不归档；扫描走 idx_questionnaire_archive
+    private static final String QUESTIONNAIRE_PREDICATE =
+            "is_latest = FALSE AND created_at < :cutoff "
+                    + "AND NOT EXISTS (SELECT 1 FROM users u WHERE u.latest_questionnaire_id = questionnaires.id)";
+
+    private static final String COUNT_WORK_ORDERS =
+            "SELECT status, priority, COUNT(*) FROM work_orders WHERE id IN (:ids) GROUP BY status, priority";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditDashboardService auditDashboardService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${archive.retain-months:12}")
+    private int retainMonths;
+
+    @Value("${archive.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${archive.max-batches-per-run:100}")
+    private int maxBatchesPerRun;
+
+    public ArchiveService(JdbcTemplate jdbcTemplate,
+                          NamedParameterJdbcTemplate namedJdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          AuditDashboardService auditDashboardService,
+                          MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.auditDashboardService = auditDashboardService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 归档超过保留期的工单和问卷
+     */
+    @Scheduled(fixedDelayString = "${archive.interval-ms:3600000}",
+            initialDelayString = "${archive.initial-delay-ms:300000}")
+    public void archiveExpired() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            LocalDateTime cutoff = LocalDate.now().minusMonths(retainMonths).withDayOfMonth(1).atStartOfDay();
+            YearMonth lastMonth = YearMonth.from(cutoff).minusMonths(1);
+
+            ensureMonthlyPartitions("work_orders_archive", lastMonth);
+            long workOrders = moveAll("work_orders", WORK_ORDER_PREDICATE, cutoff);
+
+            ensureMonthlyPartitions("questionnaires_archive", lastMonth);
+            long questionnaires = moveAll("questionnaires", QUESTIONNAIRE_PREDICATE, cutoff);
+
+            if (workOrders > 0 || questionnaires > 0) {
+                log.info("[INFO]ArchiveService::archiveExpired: 冷数据归档完成 - Cutoff: {}, WorkOrders: {}, Questionnaires: {}",
+                        cutoff, workOrders, questionnaires);
+            }
+        } catch (RuntimeException e) {
+            log.error("[ERROR]ArchiveService::archiveExpired: 冷数据归档失败，下次重试", e);
+        }
+    }
+
+    // 私有辅助方法
+
+    /**
+     * 分批移动，单次运行的批数有上限，避免首次上线时长时间占用主库
+     */
+    private long moveAll(String table, String predicate, LocalDateTime cutoff) {
+        Counter moved = Counter.builder("archive.moved.rows")
+                .description("移入归档表的行数")
+                .tag("table", table)
+                .register(meterRegistry);
+
+        long total = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            MovedBatch result = transactionTemplate.execute(status -> moveBatch(table, predicate, cutoff));
+            if (result == null) {
+                break;
+            }
+            if (!result.workOrderCounts().isEmpty()) {
+                // 已提交：看板的归档计数随之增加，无需重新统计归档表
+                auditDashboardService.onWorkOrdersArchived(result.workOrderCounts());
+            }
+            moved.increment(result.moved());
+            total += result.moved();
+            if (result.candidates() < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private MovedBatch moveBatch(String table, String predicate, LocalDateTime cutoff) {
+        // 不加锁选出候选行：锁定读会对扫描过的热表行及间隙加 next-key 锁，阻塞业务写入
+        List<Long> candidates = namedJdbcTemplate.queryForList(
+                "SELECT id FROM " + table + " WHERE " + predicate + " ORDER BY id LIMIT :limit",
+                new MapSqlParameterSource().addValue("cutoff", cutoff).addValue("limit", batchSize),
+                Long.class);
+        if (candidates.isEmpty()) {
+            return new MovedBatch(0, 0, List.of());
+        }
+
+        // 按主键锁定并复核条件，只锁本批的行；其间被修改而不再满足条件的行留在热表
+        MapSqlParameterSource lockParams = new MapSqlParameterSource().addValue("cutoff", cutoff).addValue("ids", candidates);
+        List<Long> ids = namedJdbcTemplate.queryForList(
+                "SELECT id FROM " + table + " WHERE id IN (:ids) AND " + predicate + " FOR UPDATE",
+                lockParams, Long.class);
+        if (ids.isEmpty()) {
+            return new MovedBatch(candidates.size(), 0, List.of());
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+        List<Object[]> workOrderCounts = "work_orders".equals(table)
+                ? namedJdbcTemplate.query(COUNT_WORK_ORDERS, params,
+                        (resultSet, rowNum) -> new Object[]{resultSet.getString(1), resultSet.getString(2), resultSet.getLong(3)})
+                : List.of();
+        namedJdbcTemplate.update("INSERT INTO " + table + "_archive SELECT * FROM " + table + " WHERE id IN (:ids)", params);
+        int moved = namedJdbcTemplate.update("DELETE FROM " + table + " WHERE id IN (:ids)", params);
+        return new MovedBatch(candidates.size(), moved, workOrderCounts);
+    }
+
+    /**
+     * 确保归档表存在截至 lastMonth 的月分区：从 pmax 中拆出缺少的月份
+     */
+    private void ensureMonthlyPartitions(String table, YearMonth lastMonth) {
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME LIKE 'p2%'",
+                String.class, table);
+        YearMonth next = FIRST_MONTHLY_PARTITION;
+        for (String name : names) {
+            YearMonth month = YearMonth.parse(name.substring(1), DateTimeFormatter.ofPattern("yyyyMM"));
+            if (!month.isBefore(next)) {
+                next = month.plusMonths(1);
+            }
+        }
+        if (next.isAfter(lastMonth)) {
+            return;
+        }
+
+        List<String> partitions = new ArrayList<>();
+        for (YearMonth month = next; !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            partitions.add("PARTITION " + month.format(PARTITION_NAME)
+                    + " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1) + "')");
+        }
+        partitions.add("PARTITION pmax VALUES LESS THAN (MAXVALUE)");
+        jdbcTemplate.execute("ALTER TABLE " + table + " REORGANIZE PARTITION pmax INTO ("
+                + String.join(", ", partitions) + ")");
+        log.info("[INFO]ArchiveService::ensureMonthlyPartitions: 新增归档月分区 - Table: {}, From: {}, To: {}",
+                table, next, lastMonth);
+    }
+
+    /**
+     * 单批结果；workOrderCounts 为移走的工单按 (状态, 优先级) 的计数
+     */
+    private record MovedBatch(int candidates, int moved, List<Object[]> workOrderCounts) {
+    }
+}
@@ -0,0 +1,497 @@
+package com.xingye.bankrisk.service;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.xingye.bankrisk.datasource.ReadFromPrimary;
+import com.xingye.bankrisk.entity.WorkOrder;
+import com.xingye.bankrisk.metrics.NoQueryStats;
+import com.xingye.bankrisk.repository.WorkOrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 审核看板统计服务
+ * 各状态/优先级工单数、各环节SLA超时数和按小时/天的创建、完成数均在内存中增量维护：
+ * 工单变更事件在事务提交后更新计数，定时从数据库全量校准；看板轮询不再访问数据库。
+ * 校准读库期间的变更事件先缓存，换入快照后重放快照未包含的部分；小时/天序列只在启动后首次校准时从数据库加载，之后只做增量
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class AuditDashboardService {
+
+    private static final List<WorkOrder.WorkOrderStatus> PENDING_STATUSES = List.of(
+            WorkOrder.WorkOrderStatus.PENDING_JUNIOR,
+            WorkOrder.WorkOrderStatus.PENDING_MID,
+            WorkOrder.WorkOrderStatus.PENDING_SENIOR,
+            WorkOrder.WorkOrderStatus.PENDING_COMMITTEE);
+
+    private static final int CREATED = 0;
+    private static final int COMPLETED = 1;
+
+    private final WorkOrderRepository workOrderRepository;
+
+    @Value("${workflow.dashboard.hourly-buckets:48}")
+    private int hourlyBuckets;
+
+    @Value("${workflow.dashboard.daily-buckets:62}")
+    private int dailyBuckets;
+
+    /**
+     * 保护看板计数、归档计数和校准重放缓存：事件监听、校准、归档回调与看板查询在不同线程上访问
+     */
+    private final ReentrantLock stateLock = new ReentrantLock();
+
+    // 由 stateLock 保护
+    private DashboardState state = new DashboardState();
+    // 校准读库期间到达的变更，换入快照后重放；不在校准时为 null
+    private List<WorkOrderTransitionEvent> replayLog;
+
+    // 已归档工单的计数，启动后首次校准时读取一次，之后由 ArchiveService 每批提交后累加；由 stateLock 保护
+    private final long[] archivedStatusCounts = new long[WorkOrder.WorkOrderStatus.values().length];
+    private final long[] archivedPriorityCounts = new long[WorkOrder.Priority.values().length];
+    private boolean archivedLoaded;
+    private long archiveSequence;
+
+    // 计数版本：实例启动标识 + 变更次数，用作统计接口的ETag；重启后旧版本全部失效
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private volatile long revision;
+
+    /**
+     * 从数据库全量校准看板计数
+     * 读主库：校准结果会覆盖已提交的增量更新，不能基于有延迟的从库
+     */
+    @ReadFromPrimary
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${workflow.dashboard.reconcile-interval-ms:300000}",
+            initialDelayString = "${workflow.dashboard.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        long sequence;
+        boolean loadArchived;
+        boolean loadSeries;
+        stateLock.lock();
+        try {
+            sequence = archiveSequence;
+            loadArchived = !archivedLoaded;
+            loadSeries = state.reconciledAt == null;
+            replayLog = new ArrayList<>();
+        } finally {
+            stateLock.unlock();
+        }
+
+        try {
+            reconcile(sequence, loadArchived, loadSeries);
+        } finally {
+            stateLock.lock();
+            try {
+                replayLog = null;
+            } finally {
+                stateLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 工单变更后增量更新计数
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @NoQueryStats
+    public void onWorkOrderTransition(WorkOrderTransitionEvent event) {
+        stateLock.lock();
+        try {
+            if (replayLog != null) {
+                replayLog.add(event);
+            }
+            state.apply(event, true);
+            revision++;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * 一批工单移入归档表并提交后累加归档计数；看板总数不变
+     *
+     * @param counts 每行为 (状态, 优先级, 数量)，状态和优先级为字符串
+     */
+    @NoQueryStats
+    public void onWorkOrdersArchived(List<Object[]> counts) {
+        stateLock.lock();
+        try {
+            if (archivedLoaded) {
+                for (Object[] row : counts) {
+                    long count = ((Number) row[2]).longValue();
+                    if (row[0] != null) {
+                        archivedStatusCounts[WorkOrder.WorkOrderStatus.valueOf((String) row[0]).ordinal()] += count;
+                    }
+                    if (row[1] != null) {
+                        archivedPriorityCounts[WorkOrder.Priority.valueOf((String) row[1]).ordinal()] += count;
+                    }
+                }
+            }
+            archiveSequence++;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * 获取看板统计
+     */
+    public DashboardSnapshot getDashboard() {
+        LocalDateTime now = LocalDateTime.now();
+        stateLock.lock();
+        try {
+            state.prune(now);
+            return state.snapshot(now);
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * 当前计数版本，计数未变化时保持不变
+     */
+    public String getCountsVersion() {
+        return epoch + "-" + revision;
+    }
+
+    /**
+     * 各状态工单数，格式与 WorkOrderRepository.countWorkOrdersByStatus 一致（仅包含数量大于0的状态）
+     */
+    public List<Object[]> getStatusCounts() {
+        stateLock.lock();
+        try {
+            List<Object[]> counts = new ArrayList<>();
+            for (WorkOrder.WorkOrderStatus status : WorkOrder.WorkOrderStatus.values()) {
+                long count = state.statusCounts[status.ordinal()];
+                if (count > 0) {
+                    counts.add(new Object[]{status, count});
+                }
+            }
+            return counts;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * 截止时间落在 (from, to] 内的待审工单，即在该时间段内新变为SLA超时的工单
+     */
+    @NoQueryStats
+    public List<SlaBreach> findBreachesBetween(LocalDateTime from, LocalDateTime to) {
+        OpenWorkOrder lower = new OpenWorkOrder(Long.MAX_VALUE, null, from);
+        OpenWorkOrder upper = new OpenWorkOrder(Long.MAX_VALUE, null, to);
+        List<SlaBreach> breaches = new ArrayList<>();
+        stateLock.lock();
+        try {
+            for (WorkOrder.WorkOrderStatus status : PENDING_STATUSES) {
+                for (OpenWorkOrder open : state.deadlines.get(status).subSet(lower, false, upper, true)) {
+                    breaches.add(new SlaBreach(open.id(), open.status(), open.deadline()));
+                }
+            }
+        } finally {
+            stateLock.unlock();
+        }
+        return breaches;
+    }
+
+    // 私有辅助方法
+
+    /**
+     * 读库并换入新状态；调用前已开始缓存变更事件
+     */
+    private void reconcile(long sequence, boolean loadArchived, boolean loadSeries) {
+        LocalDateTime now = LocalDateTime.now();
+        DashboardState fresh = new DashboardState();
+
+        for (Object[] row : workOrderRepository.countWorkOrdersByStatus()) {
+            if (row[0] != null) {
+                fresh.statusCounts[((WorkOrder.WorkOrderStatus) row[0]).ordinal()] = ((Number) row[1]).longValue();
+            }
+        }
+        for (Object[] row : workOrderRepository.countWorkOrdersByPriority()) {
+            if (row[0] != null) {
+                fresh.priorityCounts[((WorkOrder.Priority) row[0]).ordinal()] = ((Number) row[1]).longValue();
+            }
+        }
+        // 归档表只在首次校准时统计一次，与热表计数同一事务快照
+        List<Object[]> archivedByStatus = loadArchived ? workOrderRepository.countArchivedWorkOrdersByStatus() : List.of();
+        List<Object[]> archivedByPriority = loadArchived ? workOrderRepository.countArchivedWorkOrdersByPriority() : List.of();
+        for (Object[] row : workOrderRepository.findOpenWorkOrderDeadlines(PENDING_STATUSES)) {
+            fresh.track((Long) row[0], (WorkOrder.WorkOrderStatus) row[1], (LocalDateTime) row[2]);
+        }
+
+        if (loadSeries) {
+            LocalDateTime since = now.toLocalDate().minusDays(dailyBuckets - 1L).atStartOfDay();
+            for (LocalDateTime createdAt : workOrderRepository.findCreatedTimesSince(since)) {
+                fresh.count(createdAt, CREATED);
+            }
+            for (LocalDateTime completedAt : workOrderRepository.findCompletedTimesSince(since)) {
+                fresh.count(completedAt, COMPLETED);
+            }
+        }
+        fresh.reconciledAt = now;
+
+        long drift;
+        int replayed;
+        stateLock.lock();
+        try {
+            if (archiveSequence != sequence) {
+                // 读取期间有归档批次提交，无法确定热表计数是否已不含这些行；放弃本轮，下个周期再校准
+                log.info("[INFO]AuditDashboardService::reconcile: 校准期间有工单归档，本轮跳过");
+                return;
+            }
+            if (loadArchived) {
+                for (Object[] row : archivedByStatus) {
+                    if (row[0] != null) {
+                        archivedStatusCounts[WorkOrder.WorkOrderStatus.valueOf((String) row[0]).ordinal()] = ((Number) row[1]).longValue();
+                    }
+                }
+                for (Object[] row : archivedByPriority) {
+                    if (row[0] != null) {
+                        archivedPriorityCounts[WorkOrder.Priority.valueOf((String) row[0]).ordinal()] = ((Number) row[1]).longValue();
+                    }
+                }
+                archivedLoaded = true;
+            }
+            // 归档只搬移已完成工单，不产生变更事件；计入归档部分，归档前后总数不变
+            for (int i = 0; i < archivedStatusCounts.length; i++) {
+                fresh.statusCounts[i] += archivedStatusCounts[i];
+            }
+            for (int i = 0; i < archivedPriorityCounts.length; i++) {
+                fresh.priorityCounts[i] += archivedPriorityCounts[i];
+            }
+
+            if (!loadSeries) {
+                // 序列只做增量：沿用当前状态的桶（已含读库期间的实时事件）
+                fresh.hourly.putAll(state.hourly);
+                fresh.daily.putAll(state.daily);
+            }
+            // 快照已包含的事件跳过：事件的前一状态（认领为当前状态）与工单在快照中的状态一致才说明快照早于该事件
+            replayed = 0;
+            for (WorkOrderTransitionEvent event : replayLog) {
+                WorkOrder.WorkOrderStatus expected = event.isStatusChanged() ? event.previousStatus() : event.status();
+                if (fresh.trackedStatus(event.workOrderId()) == expected) {
+                    fresh.apply(event, loadSeries);
+                    replayed++;
+                }
+            }
+
+            drift = 0;
+            for (int i = 0; i < fresh.statusCounts.length; i++) {
+                drift += Math.abs(fresh.statusCounts[i] - state.statusCounts[i]);
+            }
+            state = fresh;
+            state.prune(now);
+            revision++;
+        } finally {
+            stateLock.unlock();
+        }
+
+        if (drift > 0) {
+            log.warn("[WARN]AuditDashboardService::reconcile: 看板计数与数据库存在偏差，已校准 - Drift: {}", drift);
+        }
+        log.info("[INFO]AuditDashboardService::reconcile: 看板计数校准完成 - OpenWorkOrders: {}, Replayed: {}",
+                fresh.openWorkOrders.size(), replayed);
+    }
+
+    private static boolean isPending(WorkOrder.WorkOrderStatus status) {
+        return status != null && PENDING_STATUSES.contains(status);
+    }
+
+    private static boolean isCompleted(WorkOrder.WorkOrderStatus status) {
+        return status == WorkOrder.WorkOrderStatus.APPROVED || status == WorkOrder.WorkOrderStatus.REJECTED;
+    }
+
+    /**
+     * 待审工单的SLA截止时间，按截止时间、ID排序
+     */
+    private record OpenWorkOrder(Long id, WorkOrder.WorkOrderStatus status, LocalDateTime deadline)
+            implements Comparable<OpenWorkOrder> {
+
+        @Override
+        public int compareTo(OpenWorkOrder other) {
+            int result = deadline.compareTo(other.deadline);
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+    }
+
+    /**
+     * 看板的可变计数状态，仅在持有 stateLock 时访问
+     */
+    private final class DashboardState {
+
+        private final long[] statusCounts = new long[WorkOrder.WorkOrderStatus.values().length];
+        private final long[] priorityCounts = new long[WorkOrder.Priority.values().length];
+        private final Map<Long, OpenWorkOrder> openWorkOrders = new HashMap<>();
+        private final Map<WorkOrder.WorkOrderStatus, NavigableSet<OpenWorkOrder>> deadlines =
+                new EnumMap<>(WorkOrder.WorkOrderStatus.class);
+        private final NavigableMap<LocalDateTime, long[]> hourly = new TreeMap<>();
+        private final NavigableMap<LocalDate, long[]> daily = new TreeMap<>();
+        private LocalDateTime reconciledAt;
+
+        DashboardState() {
+            for (WorkOrder.WorkOrderStatus status : PENDING_STATUSES) {
+                deadlines.put(status, new TreeSet<>());
+            }
+        }
+
+        /**
+         * @param countSeries 是否计入小时/天序列；重放到沿用的序列上时为 false，实时处理时已计入
+         */
+        void apply(WorkOrderTransitionEvent event, boolean countSeries) {
+            if (event.isCreated()) {
+                statusCounts[event.status().ordinal()]++;
+                if (event.priority() != null) {
+                    priorityCounts[event.priority().ordinal()]++;
+                }
+                if (countSeries) {
+                    count(event.occurredAt(), CREATED);
+                }
+            } else if (event.isStatusChanged()) {
+                statusCounts[event.previousStatus().ordinal()]--;
+                statusCounts[event.status().ordinal()]++;
+                if (countSeries && isCompleted(event.status())) {
+                    count(event.occurredAt(), COMPLETED);
+                }
+            }
+            track(event.workOrderId(), event.status(), event.slaDeadline());
+        }
+
+        WorkOrder.WorkOrderStatus trackedStatus(Long id) {
+            OpenWorkOrder open = openWorkOrders.get(id);
+            return open != null ? open.status() : null;
+        }
+
+        void track(Long id, WorkOrder.WorkOrderStatus status, LocalDateTime deadline) {
+            OpenWorkOrder previous = openWorkOrders.remove(id);
+            if (previous != null) {
+                deadlines.get(previous.status()).remove(previous);
+            }
+            if (isPending(status)) {
+                OpenWorkOrder open = new OpenWorkOrder(id, status, deadline != null ? deadline : LocalDateTime.MAX);
+                openWorkOrders.put(id, open);
+                deadlines.get(status).add(open);
+            }
+        }
+
+        void count(LocalDateTime time, int kind) {
+            if (time == null) {
+                return;
+            }
+            hourly.computeIfAbsent(time.truncatedTo(ChronoUnit.HOURS), key -> new long[2])[kind]++;
+            daily.computeIfAbsent(time.toLocalDate(), key -> new long[2])[kind]++;
+        }
+
+        void prune(LocalDateTime now) {
+            hourly.headMap(now.truncatedTo(ChronoUnit.HOURS).minusHours(hourlyBuckets - 1L), false).clear();
+            daily.headMap(now.toLocalDate().minusDays(dailyBuckets - 1L), false).clear();
+        }
+
+        DashboardSnapshot snapshot(LocalDateTime now) {
+            Map<String, Long> byStatus = new LinkedHashMap<>();
+            for (WorkOrder.WorkOrderStatus status : WorkOrder.WorkOrderStatus.values()) {
+                byStatus.put(status.name(), statusCounts[status.ordinal()]);
+            }
+            Map<String, Long> byPriority = new LinkedHashMap<>();
+            for (WorkOrder.Priority priority : WorkOrder.Priority.values()) {
+                byPriority.put(priority.name(), priorityCounts[priority.ordinal()]);
+            }
+
+            // 截止时间早于当前时间的待审工单即为超时
+            OpenWorkOrder probe = new OpenWorkOrder(Long.MIN_VALUE, null, now);
+            Map<String, Long> breaches = new LinkedHashMap<>();
+            long totalBreaches = 0;
+            for (WorkOrder.WorkOrderStatus status : PENDING_STATUSES) {
+                long count = deadlines.get(status).headSet(probe, false).size();
+                breaches.put(status.name(), count);
+                totalBreaches += count;
+            }
+
+            LocalDateTime currentHour = now.truncatedTo(ChronoUnit.HOURS);
+            List<Bucket> hourlySeries = new ArrayList<>(24);
+            for (int i = 23; i >= 0; i--) {
+                LocalDateTime hour = currentHour.minusHours(i);
+                long[] counts = hourly.getOrDefault(hour, new long[2]);
+                hourlySeries.add(new Bucket(hour, counts[CREATED], counts[COMPLETED]));
+            }
+
+            LocalDate today = now.toLocalDate();
+            List<Bucket> dailySeries = new ArrayList<>(30);
+            for (int i = 29; i >= 0; i--) {
+                LocalDate day = today.minusDays(i);
+                long[] counts = daily.getOrDefault(day, new long[2]);
+                dailySeries.add(new Bucket(day.atStartOfDay(), counts[CREATED], counts[COMPLETED]));
+            }
+
+            long monthCreated = 0;
+            for (long[] counts : daily.tailMap(today.withDayOfMonth(1), true).values()) {
+                monthCreated += counts[CREATED];
+            }
+
+            return DashboardSnapshot.builder()
+                    .statusCounts(byStatus)
+                    .priorityCounts(byPriority)
+                    .openCount(openWorkOrders.size())
+                    .slaBreaches(breaches)
+                    .totalSlaBreaches(totalBreaches)
+                    .todayCreated(daily.getOrDefault(today, new long[2])[CREATED])
+                    .monthCreated(monthCreated)
+                    .hourly(hourlySeries)
+                    .daily(dailySeries)
+                    .reconciledAt(reconciledAt)
+                    .generatedAt(now)
+                    .build();
+        }
+    }
+
+    /**
+     * SLA超时的待审工单
+     */
+    public record SlaBreach(Long workOrderId, WorkOrder.WorkOrderStatus status, LocalDateTime slaDeadline) {
+    }
+
+    /**
+     * 时间桶，start 为桶起始时间
+     */
+    public record Bucket(@JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+                         long created, long completed) {
+    }
+
+    /**
+     * 看板统计结果
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class DashboardSnapshot {
+        private Map<String, Long> statusCounts;
+        private Map<String, Long> priorityCounts;
+        private int openCount;                      // 待审工单数
+        private Map<String, Long> slaBreaches;      // 各审核环节SLA超时工单数
+        private long totalSlaBreaches;
+        private long todayCreated;
+        private long monthCreated;
+        private List<Bucket> hourly;                // 最近24小时
+        private List<Bucket> daily;                 // 最近30天
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        private LocalDateTime reconciledAt;
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        private LocalDateTime generatedAt;
+    }
+}
@@ -0,0 +1,494 @@
+package com.xingye.bankrisk.service;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.xingye.bankrisk.entity.User;
+import com.xingye.bankrisk.entity.WorkOrder;
+import com.xingye.bankrisk.exception.AdmissionRejectedException;
+import com.xingye.bankrisk.metrics.NoQueryStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 审核队列推送服务
+ * 工单变更在事务提交后转换为各审核角色队列的增量事件（新工单、被认领、已流转、SLA超时），经 SSE 推送给在线审核员，
+ * 取代对 /audit/tasks 的轮询。
+ * 每个角色一个频道，频道内事件序号连续并保留最近一段用于断线续传（Last-Event-ID）；续传点已被淘汰或服务重启时
+ * 推送 RESYNC，由客户端重新拉取任务列表。每个连接有独立的有界发送队列，由少量发送线程排空，
+ * 慢连接溢出时丢弃积压并改发 RESYNC，不会阻塞发布方；单次写出超过 send-timeout-ms 的连接视为停滞并断开（客户端凭
+ * Last-Event-ID 重连续传），停滞的客户端最多占用共享发送线程一个超时时长；空闲连接只占用异步请求，不占用线程
+ */
+@Slf4j
+@Service
+public class AuditQueueStreamService implements DisposableBean {
+
+    /**
+     * 增量事件类型
+     */
+    public enum DeltaType {
+        NEW,            // 工单进入本角色待审队列
+        CLAIMED,        // 队列中的工单被认领
+        ADVANCED,       // 工单离开本角色队列（推进、通过或拒绝）
+        SLA_ESCALATED,  // 队列中的工单SLA超时
+        RESYNC          // 无法续传，客户端需重新拉取任务列表
+    }
+
+    private static final Map<WorkOrder.WorkOrderStatus, User.UserRole> STAGE_ROLES = Map.of(
+            WorkOrder.WorkOrderStatus.PENDING_JUNIOR, User.UserRole.AUDITOR_JUNIOR,
+            WorkOrder.WorkOrderStatus.PENDING_MID, User.UserRole.AUDITOR_MID,
+            WorkOrder.WorkOrderStatus.PENDING_SENIOR, User.UserRole.AUDITOR_SENIOR,
+            WorkOrder.WorkOrderStatus.PENDING_COMMITTEE, User.UserRole.INVEST_COMMITTEE);
+
+    private static final String ALL_CHANNEL = "ALL";
+    private static final long CLIENT_RETRY_MILLIS = 3000;
+
+    private final AuditDashboardService auditDashboardService;
+    private final MeterRegistry meterRegistry;
+
+    private final int replayBufferSize;
+    private final int connectionBufferSize;
+    private final int maxConnections;
+    private final long emitterTimeoutMillis;
+    private final long sendTimeoutMillis;
+
+    // 服务实例标识，写入事件ID；重启后旧ID无法续传
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor dispatcher;
+    // 实际执行阻塞写出；停滞的写出在超时后留在这里，直到容器的写超时使其失败
+    private final ExecutorService writer;
+    private final Counter overflowCounter;
+    private final Counter stalledCounter;
+
+    private volatile LocalDateTime lastSlaCheck = LocalDateTime.now();
+
+    public AuditQueueStreamService(AuditDashboardService auditDashboardService,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${workflow.stream.replay-buffer-size:1000}") int replayBufferSize,
+                                   @Value("${workflow.stream.connection-buffer-size:256}") int connectionBufferSize,
+                                   @Value("${workflow.stream.max-connections:5000}") int maxConnections,
+                                   @Value("${workflow.stream.timeout-ms:1800000}") long emitterTimeoutMillis,
+                                   @Value("${workflow.stream.dispatch-threads:4}") int dispatchThreads,
+                                   @Value("${workflow.stream.send-timeout-ms:2000}") long sendTimeoutMillis) {
+        this.auditDashboardService = auditDashboardService;
+        this.meterRegistry = meterRegistry;
+        this.replayBufferSize = replayBufferSize;
+        this.connectionBufferSize = connectionBufferSize;
+        this.maxConnections = maxConnections;
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+
+        this.dispatcher = new ThreadPoolExecutor(dispatchThreads, dispatchThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("audit-stream-"));
+        this.writer = Executors.newCachedThreadPool(daemonThreads("audit-stream-write-"));
+
+        channels.put(ALL_CHANNEL, new Channel());
+        for (User.UserRole role : STAGE_ROLES.values()) {
+            channels.put(role.name(), new Channel());
+        }
+
+        this.overflowCounter = Counter.builder("audit.stream.overflows")
+                .description("发送队列溢出、改发 RESYNC 的次数")
+                .register(meterRegistry);
+        this.stalledCounter = Counter.builder("audit.stream.stalled")
+                .description("写出超时被断开的推送连接数")
+                .register(meterRegistry);
+        Gauge.builder("audit.stream.connections", subscribers, Set::size)
+                .description("当前审核队列推送连接数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 订阅审核角色的队列增量
+     *
+     * @param role 审核员角色，ADMIN 订阅全部角色
+     * @param lastEventId 客户端最后收到的事件ID，为空表示新连接
+     */
+    public SseEmitter subscribe(User.UserRole role, String lastEventId) {
+        String channelName = role == User.UserRole.ADMIN ? ALL_CHANNEL : role.name();
+        Channel channel = channels.get(channelName);
+        if (channel == null) {
+            throw new RuntimeException("该角色没有审核队列: " + role);
+        }
+        if (subscribers.size() >= maxConnections) {
+            throw new AdmissionRejectedException("推送连接数已满，请稍后重试", "STREAM_FULL",
+                    HttpStatus.SERVICE_UNAVAILABLE, 30);
+        }
+
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, channelName);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(error -> unsubscribe(subscriber));
+
+        long resumeFrom = parseSequence(lastEventId);
+        channel.lock.lock();
+        try {
+            // 注册与补发在频道锁内完成，补发与后续实时事件之间不会遗漏或重复
+            if (resumeFrom < 0) {
+                subscriber.offer(StreamEvent.ready(channelName, channel.sequence));
+            } else if (resumeFrom > channel.sequence || resumeFrom < channel.evictedUpTo) {
+                subscriber.offer(StreamEvent.resync(channelName, channel.sequence));
+            } else {
+                for (StreamEvent event : channel.recent) {
+                    if (event.sequence() > resumeFrom) {
+                        subscriber.offer(event);
+                    }
+                }
+            }
+            channel.subscribers.add(subscriber);
+            subscribers.add(subscriber);
+        } finally {
+            channel.lock.unlock();
+        }
+
+        log.info("[INFO]AuditQueueStreamService::subscribe: 审核队列推送连接建立 - Channel: {}, Resume: {}, Connections: {}",
+                channelName, resumeFrom, subscribers.size());
+        return emitter;
+    }
+
+    /**
+     * 工单变更提交后生成队列增量
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @NoQueryStats
+    public void onWorkOrderTransition(WorkOrderTransitionEvent event) {
+        // 新建工单没有前一状态；Map.of 不接受 null 键
+        User.UserRole previousRole = event.previousStatus() == null ? null : STAGE_ROLES.get(event.previousStatus());
+        User.UserRole currentRole = STAGE_ROLES.get(event.status());
+
+        if (!event.isStatusChanged()) {
+            if (currentRole != null) {
+                publish(currentRole, DeltaType.CLAIMED, QueueDelta.of(DeltaType.CLAIMED, event));
+            }
+            return;
+        }
+        if (previousRole != null) {
+            publish(previousRole, DeltaType.ADVANCED, QueueDelta.of(DeltaType.ADVANCED, event));
+        }
+        if (currentRole != null) {
+            publish(currentRole, DeltaType.NEW, QueueDelta.of(DeltaType.NEW, event));
+        }
+    }
+
+    /**
+     * 检查新出现的SLA超时工单
+     */
+    @Scheduled(fixedDelayString = "${workflow.stream.sla-check-interval-ms:30000}")
+    public void publishSlaEscalations() {
+        LocalDateTime now = LocalDateTime.now();
+        for (AuditDashboardService.SlaBreach breach : auditDashboardService.findBreachesBetween(lastSlaCheck, now)) {
+            User.UserRole role = STAGE_ROLES.get(breach.status());
+            if (role != null) {
+                publish(role, DeltaType.SLA_ESCALATED, QueueDelta.builder()
+                        .type(DeltaType.SLA_ESCALATED)
+                        .workOrderId(breach.workOrderId())
+                        .status(breach.status())
+                        .slaDeadline(breach.slaDeadline())
+                        .occurredAt(now)
+                        .build());
+            }
+        }
+        lastSlaCheck = now;
+    }
+
+    /**
+     * 心跳：保持代理和负载均衡上的空闲连接，同时及时发现已断开的客户端
+     */
+    @Scheduled(fixedDelayString = "${workflow.stream.heartbeat-interval-ms:25000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeat();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        dispatcher.shutdownNow();
+        writer.shutdownNow();
+    }
+
+    // 私有辅助方法
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private void publish(User.UserRole role, DeltaType type, QueueDelta delta) {
+        publishTo(channels.get(role.name()), role.name(), delta);
+        publishTo(channels.get(ALL_CHANNEL), ALL_CHANNEL, delta);
+        Counter.builder("audit.stream.events")
+                .description("推送的审核队列增量事件数")
+                .tags("role", role.name(), "type", type.name())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void publishTo(Channel channel, String channelName, QueueDelta delta) {
+        channel.lock.lock();
+        try {
+            StreamEvent event = new StreamEvent(channelName, ++channel.sequence, delta.getType().name(), delta);
+            channel.recent.addLast(event);
+            if (channel.recent.size() > replayBufferSize) {
+                channel.evictedUpTo = channel.recent.removeFirst().sequence();
+            }
+            for (Subscriber subscriber : channel.subscribers) {
+                subscriber.offer(event);
+            }
+        } finally {
+            channel.lock.unlock();
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            Channel channel = channels.get(subscriber.channelName);
+            channel.lock.lock();
+            try {
+                channel.subscribers.remove(subscriber);
+            } finally {
+                channel.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 解析 epoch-序号 格式的事件ID；其他实例或重启前的ID返回序号上限，触发 RESYNC
+     */
+    private long parseSequence(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return -1;
+        }
+        int separator = lastEventId.lastIndexOf('-');
+        if (separator <= 0 || !lastEventId.substring(0, separator).equals(epoch)) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 角色频道：最近事件与订阅者，由 lock 保护
+     */
+    private static final class Channel {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<StreamEvent> recent = new ArrayDeque<>();
+        private final Set<Subscriber> subscribers = new HashSet<>();
+        private long sequence;
+        private long evictedUpTo;
+    }
+
+    /**
+     * 频道内的一条事件
+     */
+    private record StreamEvent(String channel, long sequence, String name, Object data) {
+
+        static StreamEvent ready(String channel, long sequence) {
+            return new StreamEvent(channel, sequence, "READY", Map.of("channel", channel));
+        }
+
+        static StreamEvent resync(String channel, long sequence) {
+            return new StreamEvent(channel, sequence, DeltaType.RESYNC.name(),
+                    QueueDelta.builder().type(DeltaType.RESYNC).occurredAt(LocalDateTime.now()).build());
+        }
+    }
+
+    /**
+     * 单个连接：有界发送队列，同一时刻最多一个发送任务在排空
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final String channelName;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<StreamEvent> pending = new ArrayDeque<>();
+        private boolean heartbeatPending;
+        private boolean draining;
+        private boolean closed;
+
+        private Subscriber(SseEmitter emitter, String channelName) {
+            this.emitter = emitter;
+            this.channelName = channelName;
+        }
+
+        void offer(StreamEvent event) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                if (pending.size() >= connectionBufferSize) {
+                    // 客户端消费过慢：丢弃积压，改为通知重新拉取
+                    pending.clear();
+                    pending.add(StreamEvent.resync(event.channel(), event.sequence()));
+                    overflowCounter.increment();
+                } else {
+                    pending.add(event);
+                }
+                scheduleDrain();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void heartbeat() {
+            lock.lock();
+            try {
+                if (closed || !pending.isEmpty()) {
+                    return;
+                }
+                heartbeatPending = true;
+                scheduleDrain();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void scheduleDrain() {
+            if (!draining) {
+                draining = true;
+                dispatcher.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                StreamEvent event;
+                boolean sendHeartbeat;
+                lock.lock();
+                try {
+                    event = pending.poll();
+                    sendHeartbeat = event == null && heartbeatPending;
+                    heartbeatPending = false;
+                    if (event == null && !sendHeartbeat) {
+                        draining = false;
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                try {
+                    if (event != null) {
+                        send(SseEmitter.event()
+                                .id(epoch + "-" + event.sequence())
+                                .name(event.name())
+                                .reconnectTime(CLIENT_RETRY_MILLIS)
+                                .data(event.data(), MediaType.APPLICATION_JSON));
+                    } else {
+                        send(SseEmitter.event().comment("heartbeat"));
+                    }
+                } catch (TimeoutException e) {
+                    stalledCounter.increment();
+                    log.warn("[WARN]AuditQueueStreamService::drain: 推送连接写出超时，断开连接 - Channel: {}, TimeoutMs: {}",
+                            channelName, sendTimeoutMillis);
+                    close();
+                    return;
+                } catch (IOException | IllegalStateException e) {
+                    close();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 在写出线程上发送，发送线程最多等待 sendTimeoutMillis
+         */
+        private void send(SseEmitter.SseEventBuilder builder) throws IOException, TimeoutException {
+            Future<?> write = writer.submit(() -> {
+                emitter.send(builder);
+                return null;
+            });
+            try {
+                write.get(sendTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                write.cancel(true);
+                throw e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                write.cancel(true);
+                throw new IOException("推送发送被中断", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IllegalStateException illegalState) {
+                    throw illegalState;
+                }
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            }
+        }
+
+        private void close() {
+            lock.lock();
+            try {
+                closed = true;
+                draining = false;
+                pending.clear();
+            } finally {
+                lock.unlock();
+            }
+            unsubscribe(this);
+            emitter.completeWithError(new IOException("推送连接已断开"));
+        }
+    }
+
+    /**
+     * 队列增量
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class QueueDelta {
+        private DeltaType type;
+        private Long workOrderId;
+        private WorkOrder.WorkOrderStatus previousStatus;
+        private WorkOrder.WorkOrderStatus status;
+        private WorkOrder.Priority priority;
+        private Long reviewerId;
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        private LocalDateTime slaDeadline;
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        private LocalDateTime occurredAt;
+
+        static QueueDelta of(DeltaType type, WorkOrderTransitionEvent event) {
+            return QueueDelta.builder()
+                    .type(type)
+                    .workOrderId(event.workOrderId())
+                    .previousStatus(event.previousStatus())
+                    .status(event.status())
+                    .priority(event.priority())
+                    .reviewerId(event.reviewerId())
+                    .slaDeadline(event.slaDeadline())
+                    .occurredAt(event.occurredAt())
+                    .build();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.xingye.bankrisk.service;
 
+import com.xingye.bankrisk.dto.LoginResult;
+import com.xingye.bankrisk.dto.UserView;
 import com.xingye.bankrisk.entity.User;
 import com.xingye.bankrisk.repository.UserRepository;
 import io.jsonwebtoken.*;
@@ -10,18 +12,16 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.crypto.SecretKey;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -35,7 +35,7 @@ import java.util.Optional;
 public class AuthService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final PasswordEncoder passwordEncoder;
 
     @Value("${jwt.secret:mySecretKey12345678901234567890123456789012345678901234567890}")
     private String jwtSecret;
@@ -84,8 +84,10 @@ public class AuthService {
 
     /**
      * 用户登录
+     * 不在事务中执行：查询用户只占用一次短读的连接，等待密码哈希期间不持有数据库连接
      */
-    public Map<String, Object> login(String account, String password) {
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public LoginResult login(String account, String password) {
         log.info("[INFO]AuthService::login: 用户登录尝试 - Account: {}", account);
 
         Optional<User> userOpt = userRepository.findByAccount(account);
@@ -105,13 +107,8 @@ public class AuthService {
         // 生成JWT token
         String token = generateToken(user);
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("token", token);
-        result.put("user", user);
-        result.put("expiresIn", jwtExpiration);
-
         log.info("[INFO]AuthService::login: 用户登录成功 - ID: {}", user.getId());
-        return result;
+        return new LoginResult(token, UserView.from(user), jwtExpiration);
     }
 
     /**
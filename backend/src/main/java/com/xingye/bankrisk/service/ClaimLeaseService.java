@@ -0,0 +1,195 @@
+package com.xingye.bankrisk.service;
+
+import com.xingye.bankrisk.entity.WorkOrder;
+import com.xingye.bankrisk.entity.WorkOrderEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 认领租约
+ * 认领（手动或自动分配）时工单获得一段租约，审核员通过心跳续期；租约到期未续期的工单由后台任务分批释放，
+ * 清空处理人后回到所在环节的待分配队列，避免审核员离开后工单长期无人处理直至超出SLA
+ */
+@Slf4j
+@Service
+public class ClaimLeaseService {
+
+    private static final String PENDING_STATUSES = "('PENDING_JUNIOR', 'PENDING_MID', 'PENDING_SENIOR', 'PENDING_COMMITTEE')";
+
+    // 只续期剩余不足半个租约的工单：频繁心跳时多数调用只读索引、不写行
+    private static final String EXTEND_SQL =
+            "UPDATE work_orders SET claim_expires_at = ?, updated_at = updated_at "
+                    + "WHERE reviewer_id = ? AND status IN " + PENDING_STATUSES + " AND claim_expires_at < ?";
+
+    // 按 (claim_expires_at, id) 翻页：释放失败的行不会被重复扫描
+    private static final String SELECT_EXPIRED =
+            "SELECT id, status, priority, reviewer_id, sla_deadline, claim_expires_at FROM work_orders "
+                    + "WHERE claim_expires_at < ? AND status IN " + PENDING_STATUSES + " "
+                    + "AND (claim_expires_at > ? OR (claim_expires_at = ? AND id > ?)) "
+                    + "ORDER BY claim_expires_at, id LIMIT ?";
+
+    // 以读到的到期时间为条件：期间续期或被他人处理的工单不释放
+    private static final String RELEASE_SQL =
+            "UPDATE work_orders SET reviewer_id = NULL, claim_expires_at = NULL "
+                    + "WHERE id = ? AND reviewer_id = ? AND claim_expires_at = ?";
+
+    private static final LocalDateTime CURSOR_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WorkOrderEventLog workOrderEventLog;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Counter releasedCounter;
+
+    @Value("${workflow.claims.lease-ms:1800000}")
+    private long leaseMillis;
+
+    @Value("${workflow.claims.reap-batch-size:500}")
+    private int reapBatchSize;
+
+    public ClaimLeaseService(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             WorkOrderEventLog workOrderEventLog,
+                             ApplicationEventPublisher eventPublisher,
+                             MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.workOrderEventLog = workOrderEventLog;
+        this.eventPublisher = eventPublisher;
+        this.releasedCounter = Counter.builder("workflow.claims.expired")
+                .description("租约到期被自动释放的认领数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 从指定时刻开始的租约到期时间
+     */
+    public LocalDateTime leaseExpiry(LocalDateTime now) {
+        return now.plus(Duration.ofMillis(leaseMillis));
+    }
+
+    /**
+     * 工单的认领是否已失效（无租约的旧数据视为有效）
+     */
+    public boolean isExpired(WorkOrder workOrder, LocalDateTime now) {
+        return workOrder.getClaimExpiresAt() != null && workOrder.getClaimExpiresAt().isBefore(now);
+    }
+
+    /**
+     * 心跳：续期审核员名下全部待审工单的租约
+     *
+     * @return 本次实际续期的工单数
+     */
+    public int heartbeat(Long reviewerId) {
+        LocalDateTime now = LocalDateTime.now();
+        return jdbcTemplate.update(EXTEND_SQL,
+                Timestamp.valueOf(leaseExpiry(now)), reviewerId,
+                Timestamp.valueOf(now.plus(Duration.ofMillis(leaseMillis / 2))));
+    }
+
+    /**
+     * 分批释放租约已到期的认领
+     */
+    @Scheduled(fixedDelayString = "${workflow.claims.reap-interval-ms:60000}",
+            initialDelayString = "${workflow.claims.reap-interval-ms:60000}")
+    public void releaseExpiredClaims() {
+        try {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            Timestamp afterExpiry = Timestamp.valueOf(CURSOR_START);
+            long afterId = 0;
+            int released = 0;
+
+            while (true) {
+                List<ExpiredClaim> page = jdbcTemplate.query(SELECT_EXPIRED,
+                        (resultSet, rowNum) -> new ExpiredClaim(
+                                resultSet.getLong("id"),
+                                WorkOrder.WorkOrderStatus.valueOf(resultSet.getString("status")),
+                                resultSet.getString("priority") != null
+                                        ? WorkOrder.Priority.valueOf(resultSet.getString("priority"))
+                                        : WorkOrder.Priority.MEDIUM,
+                                resultSet.getLong("reviewer_id"),
+                                resultSet.getTimestamp("sla_deadline"),
+                                resultSet.getTimestamp("claim_expires_at")),
+                        now, afterExpiry, afterExpiry, afterId, reapBatchSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                released += release(page);
+
+                ExpiredClaim last = page.get(page.size() - 1);
+                afterExpiry = last.claimExpiresAt();
+                afterId = last.workOrderId();
+                if (page.size() < reapBatchSize) {
+                    break;
+                }
+            }
+
+            if (released > 0) {
+                log.info("[INFO]ClaimLeaseService::releaseExpiredClaims: 已释放到期认领 - Released: {}", released);
+            }
+        } catch (RuntimeException e) {
+            log.error("[ERROR]ClaimLeaseService::releaseExpiredClaims: 释放到期认领失败", e);
+        }
+    }
+
+    // 私有辅助方法
+
+    private int release(List<ExpiredClaim> claims) {
+        Integer released = transactionTemplate.execute(status -> {
+            int[][] counts = jdbcTemplate.batchUpdate(RELEASE_SQL, claims, claims.size(), (statement, claim) -> {
+                statement.setLong(1, claim.workOrderId());
+                statement.setLong(2, claim.reviewerId());
+                statement.setTimestamp(3, claim.claimExpiresAt());
+            });
+
+            LocalDateTime now = LocalDateTime.now();
+            List<ExpiredClaim> succeeded = new ArrayList<>();
+            int index = 0;
+            for (int[] batch : counts) {
+                for (int count : batch) {
+                    ExpiredClaim claim = claims.get(index++);
+                    if (count != 0) {
+                        succeeded.add(claim);
+                    }
+                }
+            }
+            for (ExpiredClaim claim : succeeded) {
+                workOrderEventLog.append(WorkOrderEvent.builder()
+                        .workOrderId(claim.workOrderId())
+                        .eventType(WorkOrderEvent.EventType.REASSIGN)
+                        .stage(WorkOrder.stageOf(claim.status()))
+                        .fromStatus(claim.status())
+                        .toStatus(claim.status())
+                        .comment("认领租约到期未续期，自动释放（原处理人: " + claim.reviewerId() + "）")
+                        .occurredAt(now)
+                        .build());
+                // 处理人为空的变更事件使工单回到待分配队列（见 ReviewerAssignmentService）
+                eventPublisher.publishEvent(new WorkOrderTransitionEvent(claim.workOrderId(), claim.status(),
+                        claim.status(), claim.priority(), null,
+                        claim.slaDeadline() != null ? claim.slaDeadline().toLocalDateTime() : null, now));
+            }
+            return succeeded.size();
+        });
+        int count = released != null ? released : 0;
+        releasedCounter.increment(count);
+        return count;
+    }
+
+    private record ExpiredClaim(long workOrderId, WorkOrder.WorkOrderStatus status, WorkOrder.Priority priority,
+                                long reviewerId, Timestamp slaDeadline, Timestamp claimExpiresAt) {
+    }
+}
@@ -0,0 +1,241 @@
+package com.xingye.bankrisk.service;
+
+import com.xingye.bankrisk.entity.Product;
+import com.xingye.bankrisk.entity.User;
+import com.xingye.bankrisk.metrics.NoQueryStats;
+import com.xingye.bankrisk.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 有效前沿缓存服务类
+ * 按风险等级预计算有效前沿，在线推荐沿前沿按目标波动率插值，避免逐请求求解优化问题
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class EfficientFrontierService {
+
+    private static final double WEIGHT_EPSILON = 1e-6;
+
+    private final ProductRepository productRepository;
+    private final ProductCovarianceService productCovarianceService;
+    private final PortfolioOptimizationService portfolioOptimizationService;
+
+    @Value("${risk.frontier.points:24}")
+    private int gridPoints;
+
+    @Value("${risk.frontier.min-risk-aversion:0.002}")
+    private double minRiskAversion;
+
+    @Value("${risk.frontier.max-risk-aversion:5.0}")
+    private double maxRiskAversion;
+
+    /**
+     * 当前缓存，按目录版本整体替换
+     */
+    private volatile FrontierCache cache = FrontierCache.EMPTY;
+
+    /**
+     * 目录或协方差输入变化时重建前沿
+     * 不在事务中运行：版本检查和产品加载各自在仓库的短事务内完成，求解期间不占用数据库连接
+     */
+    @Scheduled(fixedDelayString = "${risk.frontier.check-interval-ms:60000}",
+            initialDelayString = "${risk.frontier.initial-delay-ms:15000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void refreshIfStale() {
+        String version = currentVersion();
+        if (!version.equals(cache.version())) {
+            rebuild(version);
+        }
+    }
+
+    /**
+     * 按目标波动率在前沿上插值得到组合
+     *
+     * @param maxVolatility 额外的波动率上限（如评分区间对应的上限），可为空
+     */
+    @NoQueryStats
+    public Optional<PortfolioOptimizationService.OptimizationResult> lookup(User.RiskLevel riskLevel, Double maxVolatility) {
+        long startTime = System.nanoTime();
+        Frontier frontier = cache.frontiers().get(riskLevel);
+        if (frontier == null) {
+            return Optional.empty();
+        }
+
+        double cap = portfolioOptimizationService.getVolatilityCap(riskLevel);
+        double target = Math.min(frontier.defaultVolatility(), cap);
+        if (maxVolatility != null) {
+            target = Math.min(target, maxVolatility);
+        }
+        double[] weights = frontier.interpolate(target);
+
+        List<Product> selected = new ArrayList<>();
+        List<Double> selectedWeights = new ArrayList<>();
+        double expectedReturn = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] > WEIGHT_EPSILON) {
+                Product product = frontier.candidates().get(i);
+                selected.add(product);
+                selectedWeights.add(weights[i]);
+                expectedReturn += weights[i] * product.getExpectedReturn().doubleValue();
+            }
+        }
+        double volatility = productCovarianceService.portfolioVolatility(selected,
+                selectedWeights.stream().mapToDouble(Double::doubleValue).toArray());
+
+        return Optional.of(PortfolioOptimizationService.OptimizationResult.builder()
+                .products(selected)
+                .weights(selectedWeights)
+                .expectedReturn(expectedReturn)
+                .expectedVolatility(volatility)
+                .volatilityCap(cap)
+                .volatilityCapSatisfied(volatility <= cap + 1e-9)
+                .riskAversion(frontier.riskAversionAt(target))
+                .iterations(0)
+                .converged(true)
+                .elapsedMicros((System.nanoTime() - startTime) / 1000)
+                .build());
+    }
+
+    /**
+     * 获取当前缓存的目录版本
+     */
+    public String getCachedVersion() {
+        return cache.version();
+    }
+
+    // 私有辅助方法
+
+    private String currentVersion() {
+        List<Object[]> rows = productRepository.findActiveCatalogFingerprint();
+        Object[] fingerprint = rows.isEmpty() ? new Object[]{0, null} : rows.get(0);
+        return fingerprint[0] + "@" + fingerprint[1] + "#" + productCovarianceService.getSnapshot().version();
+    }
+
+    private void rebuild(String version) {
+        long startTime = System.currentTimeMillis();
+        List<Product> products = productRepository.findByIsActiveTrue();
+        Map<User.RiskLevel, Frontier> frontiers = new EnumMap<>(User.RiskLevel.class);
+
+        for (User.RiskLevel riskLevel : User.RiskLevel.values()) {
+            List<Product> candidates = products.stream()
+                    .filter(p -> p.getRiskLevel() != null && p.getRiskLevel().ordinal() <= riskLevel.ordinal())
+                    .toList();
+            if (candidates.isEmpty()) {
+                continue;
+            }
+            try {
+                double riskAversion = portfolioOptimizationService.getRiskAversion(riskLevel);
+                PortfolioOptimizationService.TracedFrontier traced = portfolioOptimizationService.traceFrontier(
+                        candidates, PortfolioGenerationService.PORTFOLIO_CONFIGS.get(riskLevel), riskAversionGrid(riskAversion));
+                frontiers.put(riskLevel, Frontier.of(traced, riskAversion));
+            } catch (Exception e) {
+                log.error("[ERROR]EfficientFrontierService::rebuild: 有效前沿计算失败 - RiskLevel: {}", riskLevel, e);
+            }
+        }
+
+        cache = new FrontierCache(version, frontiers, LocalDateTime.now());
+        log.info("[INFO]EfficientFrontierService::rebuild: 有效前沿重建完成 - Version: {}, RiskLevels: {}, ElapsedMs: {}",
+                version, frontiers.keySet(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 风险厌恶系数网格：几何等比、从大到小（波动率从低到高），并包含该风险等级的默认系数
+     */
+    private double[] riskAversionGrid(double riskAversion) {
+        TreeSet<Double> grid = new TreeSet<>(Comparator.reverseOrder());
+        double ratio = Math.pow(minRiskAversion / maxRiskAversion, 1.0 / Math.max(1, gridPoints - 1));
+        for (int k = 0; k < gridPoints; k++) {
+            grid.add(maxRiskAversion * Math.pow(ratio, k));
+        }
+        grid.add(riskAversion);
+        return grid.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    /**
+     * 单个风险等级的有效前沿，点按波动率升序
+     */
+    private record Frontier(List<Product> candidates, double[] volatilities, double[] riskAversions,
+                            double[][] weights, double defaultVolatility) {
+
+        static Frontier of(PortfolioOptimizationService.TracedFrontier traced, double defaultRiskAversion) {
+            List<PortfolioOptimizationService.FrontierPoint> points = new ArrayList<>();
+            double defaultVolatility = Double.NaN;
+            for (PortfolioOptimizationService.FrontierPoint point : traced.points()) {
+                if (point.riskAversion() == defaultRiskAversion) {
+                    defaultVolatility = point.volatility();
+                }
+                // 数值误差可能使相邻点波动率不单调，仅保留严格递增的点
+                if (points.isEmpty() || point.volatility() > points.get(points.size() - 1).volatility() + 1e-9) {
+                    points.add(point);
+                }
+            }
+
+            int size = points.size();
+            double[] volatilities = new double[size];
+            double[] riskAversions = new double[size];
+            double[][] weights = new double[size][];
+            for (int k = 0; k < size; k++) {
+                volatilities[k] = points.get(k).volatility();
+                riskAversions[k] = points.get(k).riskAversion();
+                weights[k] = points.get(k).weights();
+            }
+            return new Frontier(traced.candidates(), volatilities, riskAversions, weights,
+                    Double.isNaN(defaultVolatility) ? volatilities[size - 1] : defaultVolatility);
+        }
+
+        /**
+         * 相邻前沿点的凸组合仍满足全部线性约束，且波动率不超过线性插值
+         */
+        double[] interpolate(double target) {
+            int k = position(target);
+            if (k < 0) {
+                return weights[0].clone();
+            }
+            if (k >= volatilities.length - 1) {
+                return weights[volatilities.length - 1].clone();
+            }
+            double t = (target - volatilities[k]) / (volatilities[k + 1] - volatilities[k]);
+            double[] result = new double[weights[k].length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (1 - t) * weights[k][i] + t * weights[k + 1][i];
+            }
+            return result;
+        }
+
+        double riskAversionAt(double target) {
+            int k = position(target);
+            if (k < 0) {
+                return riskAversions[0];
+            }
+            if (k >= volatilities.length - 1) {
+                return riskAversions[volatilities.length - 1];
+            }
+            double t = (target - volatilities[k]) / (volatilities[k + 1] - volatilities[k]);
+            return Math.exp((1 - t) * Math.log(riskAversions[k]) + t * Math.log(riskAversions[k + 1]));
+        }
+
+        /**
+         * 返回满足 volatilities[k] <= target 的最大下标，低于最小波动率时返回 -1
+         */
+        private int position(double target) {
+            int k = Arrays.binarySearch(volatilities, target);
+            return k >= 0 ? k : -k - 2;
+        }
+    }
+
+    private record FrontierCache(String version, Map<User.RiskLevel, Frontier> frontiers, LocalDateTime builtAt) {
+
+        static final FrontierCache EMPTY = new FrontierCache("", Map.of(), null);
+    }
+}
@@ -0,0 +1,315 @@
+package com.xingye.bankrisk.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 幂等提交服务
+ * 按 操作 + 用户 + Idempotency-Key 去重：已完成的成功响应直接重放，并发的重复请求合并到同一次执行（single-flight）；
+ * 同一个键携带不同请求体时拒绝。结果默认保存在有界内存中，idempotency.store=redis 时保存到Redis以便多实例共享。
+ * 本服务不开启事务：被包装的写操作必须在自身事务中提交，不能加入外层只读事务
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IdempotencyService {
+
+    public static final String KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 128;
+    private static final String REDIS_PREFIX = "idempotency:";
+    private static final String REDIS_PENDING_PREFIX = "idempotency:pending:";
+
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${idempotency.store:memory}")
+    private String store;
+
+    @Value("${idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${idempotency.ttl-ms:86400000}")
+    private long ttlMillis;
+
+    @Value("${idempotency.wait-timeout-ms:30000}")
+    private long waitTimeoutMillis;
+
+    // 进行中的执行，同一实例内的重复请求等待其结果
+    private final ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    // 已完成响应，按访问顺序淘汰；访问顺序模式下读取也会调整链表，读写都需持有 storeLock
+    private final ReentrantLock storeLock = new ReentrantLock();
+    private final LinkedHashMap<String, StoredResponse> completed = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * 以幂等方式执行提交
+     *
+     * @param operation 操作名，区分不同接口的键空间
+     * @param idempotencyKey 客户端提供的幂等键，为空时直接执行
+     * @param request 请求体，用于校验同一个键是否被用于不同请求
+     * @param action 实际的提交逻辑
+     */
+    public ResponseEntity<Map<String, Object>> execute(String operation, String idempotencyKey, Object request,
+                                                       Supplier<ResponseEntity<Map<String, Object>>> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            return errorResponse(HttpStatus.BAD_REQUEST, "幂等键长度不能超过" + MAX_KEY_LENGTH);
+        }
+
+        String scope = operation + ":" + currentUser() + ":" + idempotencyKey;
+        String fingerprint = fingerprint(request);
+
+        Flight flight = new Flight(fingerprint);
+        Flight existing = inFlight.putIfAbsent(scope, flight);
+        if (existing != null) {
+            return awaitFlight(operation, scope, existing, fingerprint);
+        }
+
+        try {
+            StoredResponse stored = lookup(scope);
+            if (stored != null) {
+                flight.future.complete(stored);
+                return replay(operation, stored, fingerprint);
+            }
+            if (isRedisStore() && !acquireRedisPending(scope, fingerprint)) {
+                // 其他实例正在处理同一个键
+                count(operation, "conflict");
+                StoredResponse conflict = StoredResponse.of(conflictResponse(), fingerprint);
+                flight.future.complete(conflict);
+                return conflictResponse();
+            }
+
+            ResponseEntity<Map<String, Object>> response;
+            StoredResponse result;
+            try {
+                response = action.get();
+                result = StoredResponse.of(response, fingerprint);
+                if (response.getStatusCode().is2xxSuccessful()) {
+                    save(scope, result);
+                }
+            } finally {
+                // 结果保存之后才释放占位：其他实例要么看到占位，要么查到已保存的结果
+                if (isRedisStore()) {
+                    releaseRedisPending(scope);
+                }
+            }
+            flight.future.complete(result);
+            count(operation, "executed");
+            return response;
+        } catch (RuntimeException e) {
+            flight.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(scope, flight);
+        }
+    }
+
+    // 私有辅助方法
+
+    private ResponseEntity<Map<String, Object>> awaitFlight(String operation, String scope, Flight flight,
+                                                            String fingerprint) {
+        if (!flight.fingerprint.equals(fingerprint)) {
+            count(operation, "mismatch");
+            return errorResponse(HttpStatus.UNPROCESSABLE_ENTITY, "幂等键已用于不同的请求");
+        }
+        try {
+            StoredResponse result = flight.future.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+            count(operation, "coalesced");
+            log.info("[INFO]IdempotencyService::awaitFlight: 重复请求已合并 - Scope: {}", scope);
+            return withReplayHeader(result);
+        } catch (TimeoutException e) {
+            count(operation, "conflict");
+            return conflictResponse();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return conflictResponse();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new RuntimeException(e.getCause());
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> replay(String operation, StoredResponse stored, String fingerprint) {
+        if (!stored.fingerprint.equals(fingerprint)) {
+            count(operation, "mismatch");
+            return errorResponse(HttpStatus.UNPROCESSABLE_ENTITY, "幂等键已用于不同的请求");
+        }
+        count(operation, "replayed");
+        return withReplayHeader(stored);
+    }
+
+    private ResponseEntity<Map<String, Object>> withReplayHeader(StoredResponse stored) {
+        return ResponseEntity.status(stored.status)
+                .header(REPLAYED_HEADER, "true")
+                .body(stored.body);
+    }
+
+    private StoredResponse lookup(String scope) {
+        if (isRedisStore()) {
+            String json = redisTemplateProvider.getObject().opsForValue().get(REDIS_PREFIX + scope);
+            if (json == null) {
+                return null;
+            }
+            try {
+                return objectMapper.readValue(json, StoredResponse.class);
+            } catch (JsonProcessingException e) {
+                log.warn("[WARN]IdempotencyService::lookup: 幂等记录解析失败，忽略 - Scope: {}", scope);
+                return null;
+            }
+        }
+
+        storeLock.lock();
+        try {
+            StoredResponse stored = completed.get(scope);
+            if (stored != null && stored.expiresAt < System.currentTimeMillis()) {
+                completed.remove(scope);
+                return null;
+            }
+            return stored;
+        } finally {
+            storeLock.unlock();
+        }
+    }
+
+    private void save(String scope, StoredResponse result) {
+        if (isRedisStore()) {
+            try {
+                redisTemplateProvider.getObject().opsForValue()
+                        .set(REDIS_PREFIX + scope, objectMapper.writeValueAsString(result), Duration.ofMillis(ttlMillis));
+            } catch (JsonProcessingException e) {
+                log.warn("[WARN]IdempotencyService::save: 响应无法序列化，不保存幂等记录 - Scope: {}", scope);
+            }
+            return;
+        }
+
+        result.expiresAt = System.currentTimeMillis() + ttlMillis;
+        storeLock.lock();
+        try {
+            completed.put(scope, result);
+        } finally {
+            storeLock.unlock();
+        }
+    }
+
+    private boolean acquireRedisPending(String scope, String fingerprint) {
+        Boolean acquired = redisTemplateProvider.getObject().opsForValue()
+                .setIfAbsent(REDIS_PENDING_PREFIX + scope, fingerprint, Duration.ofMillis(waitTimeoutMillis));
+        return Boolean.TRUE.equals(acquired);
+    }
+
+    private void releaseRedisPending(String scope) {
+        redisTemplateProvider.getObject().delete(REDIS_PENDING_PREFIX + scope);
+    }
+
+    private boolean isRedisStore() {
+        return "redis".equalsIgnoreCase(store);
+    }
+
+    /**
+     * 请求体指纹：按键排序序列化后取SHA-256，客户端重试时字段顺序变化不影响匹配
+     */
+    private String fingerprint(Object request) {
+        try {
+            byte[] json = objectMapper.writer()
+                    .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                    .writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("请求指纹计算失败: " + e.getMessage());
+        }
+    }
+
+    private String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : "anonymous";
+    }
+
+    private void count(String operation, String outcome) {
+        Counter.builder("idempotency.requests")
+                .description("携带幂等键的提交请求数")
+                .tags("operation", operation, "outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private ResponseEntity<Map<String, Object>> conflictResponse() {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header("Retry-After", "1")
+                .body(errorBody("相同幂等键的请求正在处理中，请稍后重试"));
+    }
+
+    private ResponseEntity<Map<String, Object>> errorResponse(HttpStatus status, String message) {
+        return ResponseEntity.status(status).body(errorBody(message));
+    }
+
+    private Map<String, Object> errorBody(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", message);
+        response.put("code", "IDEMPOTENCY_ERROR");
+        return response;
+    }
+
+    /**
+     * 进行中的执行
+     */
+    private static class Flight {
+        private final String fingerprint;
+        private final CompletableFuture<StoredResponse> future = new CompletableFuture<>();
+
+        private Flight(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * 已完成的响应
+     */
+    @lombok.Data
+    @lombok.NoArgsConstructor
+    public static class StoredResponse {
+        private String fingerprint;
+        private int status;
+        private Map<String, Object> body;
+        @com.fasterxml.jackson.annotation.JsonIgnore
+        private long expiresAt;
+
+        static StoredResponse of(ResponseEntity<Map<String, Object>> response, String fingerprint) {
+            StoredResponse stored = new StoredResponse();
+            stored.fingerprint = fingerprint;
+            stored.status = response.getStatusCode().value();
+            stored.body = response.getBody();
+            return stored;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.xingye.bankrisk.service;
+
+import com.xingye.bankrisk.entity.CompressedTextConverter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 审核意见后台重编码
+ * 从工单宽表回填到 work_order_events 的意见保持原字节，仍为无头部的 UTF-8 文本（读取不受影响）。本任务按主键分批扫描，把旧格式改写为压缩编码。
+ * 事件表只追加，这里是唯一的例外：只改写旧格式的 comment 存储编码，解码后的文本不变，每行至多改写一次，其他字段不动；
+ * 更新以原值为条件。扫描一轮没有需要改写的数据后停止
+ */
+@Slf4j
+@Service
+public class PayloadReencodingService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Counter reencodedCounter;
+
+    @Value("${storage.reencode.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.reencode.batch-size:500}")
+    private int batchSize;
+
+    // 只由定时任务访问（fixedDelay 任务不会重叠执行，见 SchedulingConfig）
+    private long lastId;
+    private long reencodedInPass;
+    private boolean completed;
+
+    public PayloadReencodingService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.reencodedCounter = Counter.builder("storage.reencoded.values")
+                .description("后台重编码为压缩格式的字段数")
+                .tag("table", "work_order_events")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 处理下一批工单事件
+     */
+    @Scheduled(fixedDelayString = "${storage.reencode.interval-ms:5000}",
+            initialDelayString = "${storage.reencode.initial-delay-ms:60000}")
+    public void reencodeNextBatch() {
+        if (!enabled || completed) {
+            return;
+        }
+        try {
+            List<Row> rows = jdbcTemplate.query(
+                    "SELECT id, comment FROM work_order_events WHERE id > ? ORDER BY id LIMIT ?",
+                    (resultSet, rowNum) -> new Row(resultSet.getLong("id"), resultSet.getBytes("comment")),
+                    lastId, batchSize);
+
+            int reencoded = 0;
+            for (Row row : rows) {
+                reencoded += reencode(row);
+            }
+            reencodedInPass += reencoded;
+            reencodedCounter.increment(reencoded);
+
+            if (rows.size() < batchSize) {
+                finishPass();
+            } else {
+                lastId = rows.get(rows.size() - 1).id();
+            }
+        } catch (RuntimeException e) {
+            log.warn("[WARN]PayloadReencodingService::reencodeNextBatch: 重编码批次失败，稍后重试 - LastID: {}, Error: {}",
+                    lastId, e.getMessage());
+        }
+    }
+
+    // 私有辅助方法
+
+    private int reencode(Row row) {
+        byte[] legacy = row.comment();
+        if (legacy == null || CompressedTextConverter.isEncoded(legacy)) {
+            return 0;
+        }
+        String text = CompressedTextConverter.decode(legacy);
+        byte[] encoded = CompressedTextConverter.encode(text);
+        if (!text.equals(CompressedTextConverter.decode(encoded))) {
+            log.warn("[WARN]PayloadReencodingService::reencode: 重编码结果与原文不一致，跳过 - EventID: {}", row.id());
+            return 0;
+        }
+        // 以原值为条件：已被改写的行不覆盖
+        return jdbcTemplate.update("UPDATE work_order_events SET comment = ? WHERE id = ? AND comment = ?",
+                encoded, row.id(), legacy);
+    }
+
+    private void finishPass() {
+        log.info("[INFO]PayloadReencodingService::finishPass: 审核意见重编码扫描完成 - Reencoded: {}", reencodedInPass);
+        // 本轮有改写时再扫一轮，确认期间没有以旧格式写入的数据
+        completed = reencodedInPass == 0;
+        reencodedInPass = 0;
+        lastId = 0;
+    }
+
+    private record Row(long id, byte[] comment) {
+    }
+}
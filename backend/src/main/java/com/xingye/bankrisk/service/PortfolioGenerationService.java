@@ -2,6 +2,7 @@ package com.xingye.bankrisk.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xingye.bankrisk.concurrent.SingleFlight;
 import com.xingye.bankrisk.entity.PortfolioRecommendation;
 import com.xingye.bankrisk.entity.Product;
 import com.xingye.bankrisk.entity.Questionnaire;
@@ -28,7 +29,7 @@ import java.util.*;
 public class PortfolioGenerationService {
 
     // 不同风险等级的投资组合配置 [现金%, 债券%, 股票%]
-    private static final Map<User.RiskLevel, int[]> PORTFOLIO_CONFIGS = Map.of(
+    static final Map<User.RiskLevel, int[]> PORTFOLIO_CONFIGS = Map.of(
         User.RiskLevel.CONSERVATIVE, new int[]{60, 30, 10},  // 保守型: 60%现金, 30%债券, 10%股票
         User.RiskLevel.MODERATE, new int[]{30, 40, 30},       // 稳健型: 30%现金, 40%债券, 30%股票
         User.RiskLevel.AGGRESSIVE, new int[]{10, 20, 70}      // 激进型: 10%现金, 20%债券, 70%股票
@@ -37,6 +38,8 @@ public class PortfolioGenerationService {
     private final ProductRepository productRepository;
     private final PortfolioRecommendationRepository portfolioRecommendationRepository;
     private final ProductRecommendationService productRecommendationService;
+    private final PortfolioOptimizationService portfolioOptimizationService;
+    private final EfficientFrontierService efficientFrontierService;
     private final ObjectMapper objectMapper;
 
     /**
@@ -122,9 +125,9 @@ public class PortfolioGenerationService {
                 .userId(userId)
                 .customerId(customerId)
                 .workOrderId(workOrderId)
-                .productIds(writeValueAsStringSafely(productIds))
-                .allocPcts(writeValueAsStringSafely(allocations))
-                .llmSuggestion(writeValueAsStringSafely(llmSuggestion))
+                .productIds(productIds)
+                .allocPcts(allocations)
+                .llmSuggestion(llmSuggestion)
                 .build();
     }
 
@@ -138,15 +141,92 @@ public class PortfolioGenerationService {
     /**
      * 获取最新的投资组合推荐
      */
+    @SingleFlight
     public Optional<PortfolioRecommendation> getLatestPortfolio(Long userId) {
         return Optional.ofNullable(portfolioRecommendationRepository.findLatestByUserId(userId));
     }
 
+    /**
+     * 对已有投资组合重新优化，以原组合权重热启动，结果保存为新的组合建议
+     */
+    @Transactional
+    public PortfolioRecommendation optimizeRecommendation(Long recommendationId) {
+        log.info("[INFO]PortfolioGenerationService::optimizeRecommendation: 重新优化投资组合 - ID: {}", recommendationId);
+
+        PortfolioRecommendation existing = portfolioRecommendationRepository.findById(recommendationId)
+                .orElseThrow(() -> new RuntimeException("投资组合不存在: " + recommendationId));
+
+        User user = getUserById(existing.getUserId());
+        Questionnaire latestQuestionnaire = getLatestQuestionnaire(existing.getUserId());
+        User.RiskLevel riskLevel = latestQuestionnaire != null ?
+                latestQuestionnaire.getStatus() : getUserRiskLevel(user);
+        int userScore = latestQuestionnaire != null ? latestQuestionnaire.getScore() : 50;
+        BigDecimal investAmount = user.getInvestAmount() != null ?
+                user.getInvestAmount() : BigDecimal.valueOf(100000);
+
+        List<Product> candidates = productRepository.findByIsActiveTrueAndRiskLevelIn(riskLevelsUpTo(riskLevel));
+        Map<Long, Double> warmStart = readAllocationWeights(existing);
+
+        // 优先沿预计算的有效前沿插值，前沿已过期或不满足起购金额时再在线求解
+        PortfolioAllocation allocation = null;
+        Optional<PortfolioOptimizationService.OptimizationResult> frontierResult =
+                efficientFrontierService.lookup(riskLevel, productRecommendationService.getScoreBandVolatilityCap(userScore));
+        if (frontierResult.isPresent()) {
+            PortfolioOptimizationService.OptimizationResult result = frontierResult.get();
+            Set<Long> candidateIds = new HashSet<>();
+            candidates.forEach(product -> candidateIds.add(product.getId()));
+            boolean current = result.getProducts().stream().allMatch(product -> candidateIds.contains(product.getId()));
+            if (current && portfolioOptimizationService.satisfiesMinimumInvestment(
+                    result.getProducts(), result.getWeights(), investAmount)) {
+                allocation = toAllocation(result, investAmount);
+            } else if (current) {
+                warmStart = new HashMap<>();
+                for (int i = 0; i < result.getProducts().size(); i++) {
+                    warmStart.put(result.getProducts().get(i).getId(), result.getWeights().get(i));
+                }
+            }
+        }
+        if (allocation == null) {
+            allocation = optimizePortfolio(riskLevel, investAmount, candidates, warmStart);
+        }
+
+        Map<String, Object> llmSuggestion = new HashMap<>();
+        llmSuggestion.put("risk_level", riskLevel.toString());
+        llmSuggestion.put("total_amount", allocation.getTotalAmount());
+        llmSuggestion.put("expected_return", allocation.getExpectedReturn());
+        llmSuggestion.put("expected_risk", allocation.getExpectedRisk());
+        llmSuggestion.put("risk_assessment", generateRiskAssessment(riskLevel));
+        llmSuggestion.put("recommendation_reason", generateRecommendationReason(riskLevel, allocation));
+        llmSuggestion.put("products_count", allocation.getProductIds().size());
+        llmSuggestion.put("optimized_from", recommendationId);
+
+        PortfolioRecommendation optimized = PortfolioRecommendation.builder()
+                .userId(existing.getUserId())
+                .customerId(existing.getCustomerId())
+                .workOrderId(existing.getWorkOrderId())
+                .productIds(allocation.getProductIds())
+                .allocPcts(allocation.getPercentages().stream().map(BigDecimal::valueOf).toList())
+                .llmSuggestion(llmSuggestion)
+                .build();
+
+        PortfolioRecommendation saved = portfolioRecommendationRepository.save(optimized);
+        log.info("[INFO]PortfolioGenerationService::optimizeRecommendation: 投资组合优化完成 - ID: {}, NewID: {}", recommendationId, saved.getId());
+        return saved;
+    }
+
     /**
      * 优化投资组合分配
      */
     public PortfolioAllocation optimizePortfolio(User.RiskLevel riskLevel, BigDecimal totalAmount,
                                                 List<Product> products) {
+        return optimizePortfolio(riskLevel, totalAmount, products, null);
+    }
+
+    /**
+     * 优化投资组合分配，可传入上一次的组合权重（产品ID -> 权重）用于热启动
+     */
+    public PortfolioAllocation optimizePortfolio(User.RiskLevel riskLevel, BigDecimal totalAmount,
+                                                List<Product> products, Map<Long, Double> previousWeights) {
         log.info("[INFO]PortfolioGenerationService::optimizePortfolio: 优化投资组合 - RiskLevel: {}, Amount: {}", riskLevel, totalAmount);
 
         int[] config = PORTFOLIO_CONFIGS.get(riskLevel);
@@ -154,43 +234,10 @@ public class PortfolioGenerationService {
             throw new RuntimeException("不支持的风险等级: " + riskLevel);
         }
 
-        List<Product> cashProducts = products.stream()
-                .filter(p -> p.getProductType() == Product.ProductType.CASH)
-                .toList();
-
-        List<Product> bondProducts = products.stream()
-                .filter(p -> p.getProductType() == Product.ProductType.BOND)
-                .toList();
-
-        List<Product> stockProducts = products.stream()
-                .filter(p -> p.getProductType() == Product.ProductType.STOCK ||
-                           p.getProductType() == Product.ProductType.ETF)
-                .toList();
-
-        PortfolioAllocation allocation = new PortfolioAllocation();
-
-        // 现金分配
-        if (!cashProducts.isEmpty()) {
-            BigDecimal cashAmount = totalAmount.multiply(BigDecimal.valueOf(config[0]))
-                    .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
-            allocateProducts(allocation, cashProducts, cashAmount, config[0]);
-        }
-
-        // 债券分配
-        if (!bondProducts.isEmpty()) {
-            BigDecimal bondAmount = totalAmount.multiply(BigDecimal.valueOf(config[1]))
-                    .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
-            allocateProducts(allocation, bondProducts, bondAmount, config[1]);
-        }
-
-        // 股票分配
-        if (!stockProducts.isEmpty()) {
-            BigDecimal stockAmount = totalAmount.multiply(BigDecimal.valueOf(config[2]))
-                    .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
-            allocateProducts(allocation, stockProducts, stockAmount, config[2]);
-        }
+        PortfolioOptimizationService.OptimizationResult result =
+                portfolioOptimizationService.optimize(riskLevel, totalAmount, products, config, previousWeights);
 
-        return allocation;
+        return toAllocation(result, totalAmount);
     }
 
     // 私有辅助方法
@@ -218,27 +265,46 @@ public class PortfolioGenerationService {
         return optimizePortfolio(riskLevel, totalAmount, products);
     }
 
-    private void allocateProducts(PortfolioAllocation allocation, List<Product> products,
-                                BigDecimal amount, int percentage) {
-        if (products.isEmpty() || amount.compareTo(BigDecimal.ZERO) <= 0) {
-            return;
+    /**
+     * 将优化权重转换为金额分配
+     */
+    private PortfolioAllocation toAllocation(PortfolioOptimizationService.OptimizationResult result, BigDecimal totalAmount) {
+        PortfolioAllocation allocation = new PortfolioAllocation();
+        for (PortfolioOptimizationService.RoundedAllocation item : result.roundedAllocations(totalAmount)) {
+            allocation.addProduct(item.product().getId(), item.amount(), item.percentage().doubleValue());
         }
+        allocation.setExpectedReturn(BigDecimal.valueOf(result.getExpectedReturn()).setScale(2, RoundingMode.HALF_UP));
+        allocation.setExpectedRisk(BigDecimal.valueOf(result.getExpectedVolatility()).setScale(2, RoundingMode.HALF_UP));
 
-        // 按预期收益率排序，选择最佳产品
-        products.sort((p1, p2) -> p2.getExpectedReturn().compareTo(p1.getExpectedReturn()));
-
-        // 选择前3个产品进行分配
-        int productCount = Math.min(3, products.size());
-        BigDecimal amountPerProduct = amount.divide(BigDecimal.valueOf(productCount), 2, RoundingMode.HALF_UP);
+        return allocation;
+    }
 
-        for (int i = 0; i < productCount; i++) {
-            Product product = products.get(i);
-            BigDecimal actualAmount = (i == productCount - 1) ?
-                    amount.subtract(amountPerProduct.multiply(BigDecimal.valueOf(i))) :
-                    amountPerProduct;
+    /**
+     * 不高于指定等级的风险等级集合
+     */
+    private List<User.RiskLevel> riskLevelsUpTo(User.RiskLevel riskLevel) {
+        return Arrays.stream(User.RiskLevel.values())
+                .filter(level -> level.ordinal() <= riskLevel.ordinal())
+                .toList();
+    }
 
-            allocation.addProduct(product.getId(), actualAmount, percentage / (double)productCount);
+    /**
+     * 读取已保存组合的权重（产品ID -> 权重），解析失败时返回空
+     */
+    private Map<Long, Double> readAllocationWeights(PortfolioRecommendation recommendation) {
+        List<Long> productIds = recommendation.getProductIds();
+        List<BigDecimal> percentages = recommendation.getAllocPcts();
+        if (productIds == null || percentages == null) {
+            log.warn("[WARN]PortfolioGenerationService::readAllocationWeights: 组合权重缺失 - ID: {}", recommendation.getId());
+            return Map.of();
         }
+        Map<Long, Double> weights = new HashMap<>();
+        for (int i = 0; i < Math.min(productIds.size(), percentages.size()); i++) {
+            if (productIds.get(i) != null && percentages.get(i) != null) {
+                weights.merge(productIds.get(i), percentages.get(i).doubleValue() / 100, Double::sum);
+            }
+        }
+        return weights;
     }
 
     private JsonNode generateLLMSuggestion(User user, User.RiskLevel riskLevel, PortfolioAllocation allocation) {
@@ -253,8 +319,7 @@ public class PortfolioGenerationService {
     }
 
     private BigDecimal calculateExpectedReturn(PortfolioAllocation allocation) {
-        // 简化的预期收益率计算
-        return BigDecimal.valueOf(8.5); // 默认年化收益率
+        return allocation.getExpectedReturn() != null ? allocation.getExpectedReturn() : BigDecimal.ZERO;
     }
 
     private String generateRiskAssessment(User.RiskLevel riskLevel) {
@@ -277,11 +342,15 @@ public class PortfolioGenerationService {
     public static class PortfolioAllocation {
         private List<Long> productIds = new ArrayList<>();
         private List<BigDecimal> allocations = new ArrayList<>();
+        private List<Double> percentages = new ArrayList<>();
         private BigDecimal totalAmount = BigDecimal.ZERO;
+        private BigDecimal expectedReturn;
+        private BigDecimal expectedRisk;
 
         public void addProduct(Long productId, BigDecimal amount, double percentage) {
             productIds.add(productId);
             allocations.add(amount);
+            percentages.add(percentage);
             totalAmount = totalAmount.add(amount);
         }
 
@@ -293,20 +362,29 @@ public class PortfolioGenerationService {
             return allocations;
         }
 
+        public List<Double> getPercentages() {
+            return percentages;
+        }
+
         public BigDecimal getTotalAmount() {
             return totalAmount;
         }
-    }
 
-    /**
-     * 安全地将对象转换为JSON字符串
-     */
-    private String writeValueAsStringSafely(Object object) {
-        try {
-            return objectMapper.writeValueAsString(object);
-        } catch (Exception e) {
-            log.error("[ERROR]PortfolioGenerationService::writeValueAsStringSafely: JSON序列化失败", e);
-            return "[]";
+        public BigDecimal getExpectedReturn() {
+            return expectedReturn;
+        }
+
+        public void setExpectedReturn(BigDecimal expectedReturn) {
+            this.expectedReturn = expectedReturn;
+        }
+
+        public BigDecimal getExpectedRisk() {
+            return expectedRisk;
+        }
+
+        public void setExpectedRisk(BigDecimal expectedRisk) {
+            this.expectedRisk = expectedRisk;
         }
     }
+
 }
@@ -0,0 +1,445 @@
+package com.xingye.bankrisk.service;
+
+import com.xingye.bankrisk.entity.Product;
+import com.xingye.bankrisk.entity.User;
+import com.xingye.bankrisk.quant.AssetClass;
+import com.xingye.bankrisk.quant.MeanVarianceOptimizer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+/**
+ * 投资组合优化服务类
+ * 在多头、波动率上限、起购金额和大类资产比例约束下求解均值-方差最优组合
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PortfolioOptimizationService {
+
+    // 不同风险等级的组合年化波动率上限（百分比）
+    private static final Map<User.RiskLevel, Double> VOLATILITY_CAPS = Map.of(
+        User.RiskLevel.CONSERVATIVE, 8.0,
+        User.RiskLevel.MODERATE, 12.0,
+        User.RiskLevel.AGGRESSIVE, 20.0
+    );
+
+    // 不同风险等级的风险厌恶系数 λ（收益与方差均以百分比计）
+    private static final Map<User.RiskLevel, Double> RISK_AVERSION = Map.of(
+        User.RiskLevel.CONSERVATIVE, 0.10,
+        User.RiskLevel.MODERATE, 0.04,
+        User.RiskLevel.AGGRESSIVE, 0.015
+    );
+
+    private static final double WEIGHT_EPSILON = 1e-6;
+    private static final int MAX_FLOOR_ROUNDS = 20;
+    private static final int MAX_CAP_ROUNDS = 12;
+    private static final int CAP_REFINE_STEPS = 6;
+
+    private final ProductCovarianceService productCovarianceService;
+
+    @Value("${risk.optimizer.max-iterations:500}")
+    private int maxIterations;
+
+    @Value("${risk.optimizer.max-total-iterations:20000}")
+    private int maxTotalIterations;
+
+    @Value("${risk.optimizer.tolerance:1e-5}")
+    private double tolerance;
+
+    @Value("${risk.optimizer.class-tolerance:0.10}")
+    private double classTolerance;
+
+    @Value("${risk.optimizer.max-single-weight:0.40}")
+    private double maxSingleWeight;
+
+    /**
+     * 求解最优组合
+     *
+     * @param classConfig     大类资产目标比例 [现金%, 债券%, 股票%]
+     * @param previousWeights 上一次的组合权重（产品ID -> 权重），用于热启动，可为空
+     */
+    public OptimizationResult optimize(User.RiskLevel riskLevel, BigDecimal totalAmount, List<Product> products,
+                                       int[] classConfig, Map<Long, Double> previousWeights) {
+        long startTime = System.nanoTime();
+
+        Prepared prepared = prepare(products, totalAmount, classConfig);
+        List<Product> candidates = prepared.candidates();
+        double[] floors = prepared.floors();
+        int n = candidates.size();
+        MeanVarianceOptimizer optimizer = new MeanVarianceOptimizer(maxIterations, tolerance);
+
+        double[] warmStart = buildWarmStart(candidates, previousWeights);
+        double riskAversion = getRiskAversion(riskLevel);
+        double cap = getVolatilityCap(riskLevel);
+
+        Attempt attempt = solveWithFloors(optimizer, prepared.problem(), floors, riskAversion, warmStart, maxTotalIterations);
+        int iterations = attempt.iterations();
+        boolean exhausted = attempt.exhausted();
+
+        // 超出波动率上限时提高风险厌恶系数，再二分回逼上限以保留尽可能高的收益；总迭代数达到上限即停止
+        if (attempt.result().volatility() > cap) {
+            double violating = riskAversion;
+            Attempt feasible = null;
+            for (int round = 0; round < MAX_CAP_ROUNDS && feasible == null && !exhausted; round++) {
+                riskAversion *= 2;
+                Attempt next = solveWithFloors(optimizer, attempt.problem(), floors, riskAversion, attempt.result().weights(),
+                        maxTotalIterations - iterations);
+                iterations += next.iterations();
+                exhausted = next.exhausted() || iterations >= maxTotalIterations;
+                if (next.result().volatility() <= cap) {
+                    feasible = next;
+                } else {
+                    violating = riskAversion;
+                    attempt = next;
+                }
+            }
+            if (feasible != null) {
+                double satisfying = riskAversion;
+                // 二分只影响收益的逼近程度，预算用尽时保留已满足上限的解
+                for (int step = 0; step < CAP_REFINE_STEPS && iterations < maxTotalIterations; step++) {
+                    double middle = Math.sqrt(violating * satisfying);
+                    Attempt next = solveWithFloors(optimizer, feasible.problem(), floors, middle, feasible.result().weights(),
+                            maxTotalIterations - iterations);
+                    iterations += next.iterations();
+                    if (next.exhausted()) {
+                        break;
+                    }
+                    if (next.result().volatility() <= cap) {
+                        feasible = next;
+                        satisfying = middle;
+                    } else {
+                        violating = middle;
+                    }
+                }
+                attempt = feasible;
+                riskAversion = satisfying;
+            } else {
+                log.warn("[WARN]PortfolioOptimizationService::optimize: 约束下无法满足波动率上限 - RiskLevel: {}, Cap: {}, Volatility: {}",
+                        riskLevel, cap, attempt.result().volatility());
+            }
+        }
+
+        MeanVarianceOptimizer.Result result = attempt.result();
+        List<Product> selected = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (result.weights()[i] > WEIGHT_EPSILON) {
+                selected.add(candidates.get(i));
+                weights.add(result.weights()[i]);
+            }
+        }
+
+        long elapsedMicros = (System.nanoTime() - startTime) / 1000;
+        if (exhausted) {
+            log.warn("[WARN]PortfolioOptimizationService::optimize: 达到总迭代上限，返回当前解 - RiskLevel: {}, Iterations: {}",
+                    riskLevel, iterations);
+        }
+        log.info("[INFO]PortfolioOptimizationService::optimize: 组合优化完成 - RiskLevel: {}, Candidates: {}, Selected: {}, Iterations: {}, ElapsedUs: {}",
+                riskLevel, n, selected.size(), iterations, elapsedMicros);
+
+        return OptimizationResult.builder()
+                .products(selected)
+                .weights(weights)
+                .expectedReturn(result.expectedReturn())
+                .expectedVolatility(result.volatility())
+                .volatilityCap(cap)
+                .volatilityCapSatisfied(result.volatility() <= cap)
+                .riskAversion(riskAversion)
+                .iterations(iterations)
+                .converged(result.converged() && !exhausted)
+                .elapsedMicros(elapsedMicros)
+                .build();
+    }
+
+    /**
+     * 沿风险厌恶系数网格求解有效前沿，不考虑起购金额约束，相邻点之间热启动
+     */
+    public TracedFrontier traceFrontier(List<Product> products, int[] classConfig, double[] riskAversions) {
+        Prepared prepared = prepare(products, null, classConfig);
+        MeanVarianceOptimizer optimizer = new MeanVarianceOptimizer(maxIterations, tolerance);
+
+        List<FrontierPoint> points = new ArrayList<>(riskAversions.length);
+        double[] warmStart = null;
+        for (double riskAversion : riskAversions) {
+            MeanVarianceOptimizer.Result result = optimizer.solve(prepared.problem(), riskAversion, warmStart);
+            warmStart = result.weights();
+            points.add(new FrontierPoint(riskAversion, result.volatility(), result.expectedReturn(), result.weights()));
+        }
+        return new TracedFrontier(prepared.candidates(), points);
+    }
+
+    /**
+     * 判断组合是否满足各产品起购金额
+     */
+    public boolean satisfiesMinimumInvestment(List<Product> products, List<Double> weights, BigDecimal totalAmount) {
+        for (int i = 0; i < products.size(); i++) {
+            BigDecimal minimum = products.get(i).getMinimumInvestment();
+            if (minimum != null && weights.get(i) > WEIGHT_EPSILON
+                    && totalAmount.doubleValue() * weights.get(i) < minimum.doubleValue() * (1 - 1e-6)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获取风险等级对应的风险厌恶系数
+     */
+    public double getRiskAversion(User.RiskLevel riskLevel) {
+        return RISK_AVERSION.getOrDefault(riskLevel, 0.04);
+    }
+
+    /**
+     * 获取风险等级对应的波动率上限
+     */
+    public double getVolatilityCap(User.RiskLevel riskLevel) {
+        return VOLATILITY_CAPS.getOrDefault(riskLevel, 12.0);
+    }
+
+    // 私有辅助方法
+
+    /**
+     * 筛选候选产品并构造优化问题，totalAmount 为空时不计算起购比例
+     */
+    private Prepared prepare(List<Product> products, BigDecimal totalAmount, int[] classConfig) {
+        List<Product> candidates = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (Product product : products) {
+            if (product.getExpectedReturn() != null && seen.add(product.getId())) {
+                candidates.add(product);
+            }
+        }
+        if (candidates.isEmpty()) {
+            throw new RuntimeException("无可用于优化的候选产品");
+        }
+
+        int n = candidates.size();
+        double amount = totalAmount != null ? totalAmount.doubleValue() : 0;
+        double[] expectedReturns = new double[n];
+        double[] floors = new double[n];
+        double[] lower = new double[n];
+        double[] upper = new double[n];
+        int[] groups = new int[n];
+        double singleCap = n * maxSingleWeight >= 1 ? maxSingleWeight : 1.0;
+        for (int i = 0; i < n; i++) {
+            Product product = candidates.get(i);
+            expectedReturns[i] = product.getExpectedReturn().doubleValue();
+            floors[i] = product.getMinimumInvestment() != null && amount > 0
+                    ? product.getMinimumInvestment().doubleValue() / amount : 0;
+            // 起购金额超过单品上限的产品无法配置
+            upper[i] = floors[i] > singleCap ? 0 : singleCap;
+            groups[i] = classGroup(AssetClass.of(product.getProductType()));
+        }
+
+        double[] groupLower = new double[classConfig.length];
+        double[] groupUpper = new double[classConfig.length];
+        for (int g = 0; g < classConfig.length; g++) {
+            groupLower[g] = Math.max(0, classConfig[g] / 100.0 - classTolerance);
+            groupUpper[g] = Math.min(1, classConfig[g] / 100.0 + classTolerance);
+        }
+        repairGroupBounds(lower, upper, groups, groupLower, groupUpper);
+
+        MeanVarianceOptimizer.Problem problem = new MeanVarianceOptimizer.Problem(
+                expectedReturns, productCovarianceService.covarianceMatrix(candidates),
+                lower, upper, groups, groupLower, groupUpper);
+        return new Prepared(candidates, floors, problem);
+    }
+
+    /**
+     * 求解并处理起购金额：权重低于起购比例的产品，接近起购比例的强制达到起购线，其余剔除，然后热启动重解
+     * 迭代数达到 budget 后不再重解，返回的解标记为 exhausted（可能仍不满足起购金额）
+     */
+    private Attempt solveWithFloors(MeanVarianceOptimizer optimizer, MeanVarianceOptimizer.Problem problem,
+                                    double[] floors, double riskAversion, double[] warmStart, int budget) {
+        MeanVarianceOptimizer.Result result = optimizer.solve(problem, riskAversion, warmStart);
+        int iterations = result.iterations();
+        boolean exhausted = false;
+
+        for (int round = 0; round < MAX_FLOOR_ROUNDS; round++) {
+            double[] lower = problem.lower();
+            double[] upper = problem.upper();
+            double[] forcedLower = lower.clone();
+            boolean violated = false;
+            for (int i = 0; i < floors.length; i++) {
+                double weight = result.weights()[i];
+                if (weight > WEIGHT_EPSILON && weight < floors[i] - WEIGHT_EPSILON) {
+                    violated = true;
+                    if (weight >= floors[i] / 2) {
+                        forcedLower[i] = floors[i];
+                    } else {
+                        upper[i] = 0;
+                    }
+                }
+            }
+            if (!violated) {
+                break;
+            }
+            if (iterations >= budget) {
+                exhausted = true;
+                break;
+            }
+
+            if (problem.isFeasible(forcedLower, upper)) {
+                lower = forcedLower;
+            } else {
+                // 强制起购不可行时全部剔除
+                for (int i = 0; i < floors.length; i++) {
+                    if (forcedLower[i] > lower[i]) {
+                        upper[i] = 0;
+                    }
+                }
+                if (!problem.isFeasible(lower, upper)) {
+                    log.warn("[WARN]PortfolioOptimizationService::solveWithFloors: 起购金额约束不可行，保留当前解");
+                    break;
+                }
+            }
+
+            problem = problem.withBounds(lower, upper);
+            result = optimizer.solve(problem, riskAversion, result.weights());
+            iterations += result.iterations();
+        }
+
+        return new Attempt(problem, result, iterations, exhausted || iterations >= budget);
+    }
+
+    /**
+     * 修正大类约束：空类别不占比例；单品上限不足以覆盖下限时放宽；整体不可行时取消大类约束，
+     * 仍不可行时取消单品上限（因起购金额被排除的产品仍保持排除）
+     */
+    private void repairGroupBounds(double[] lower, double[] upper, int[] groups, double[] groupLower, double[] groupUpper) {
+        double[] capacity = new double[groupLower.length];
+        for (int i = 0; i < groups.length; i++) {
+            capacity[groups[i]] += upper[i];
+        }
+        for (int g = 0; g < groupLower.length; g++) {
+            groupLower[g] = Math.min(groupLower[g], capacity[g]);
+            groupUpper[g] = Math.min(groupUpper[g], capacity[g]);
+        }
+
+        if (!MeanVarianceOptimizer.Problem.feasible(lower, upper, groups, groupLower, groupUpper)) {
+            log.warn("[WARN]PortfolioOptimizationService::repairGroupBounds: 候选产品无法满足大类资产比例，取消大类约束");
+            for (int g = 0; g < groupLower.length; g++) {
+                groupLower[g] = 0;
+                groupUpper[g] = 1;
+            }
+            if (!MeanVarianceOptimizer.Problem.feasible(lower, upper, groups, groupLower, groupUpper)) {
+                for (int i = 0; i < upper.length; i++) {
+                    if (upper[i] > 0) {
+                        upper[i] = 1.0;
+                    }
+                }
+                if (!MeanVarianceOptimizer.Problem.feasible(lower, upper, groups, groupLower, groupUpper)) {
+                    throw new RuntimeException("候选产品均不满足起购金额");
+                }
+            }
+        }
+    }
+
+    private double[] buildWarmStart(List<Product> candidates, Map<Long, Double> previousWeights) {
+        if (previousWeights == null || previousWeights.isEmpty()) {
+            return null;
+        }
+        double[] warmStart = new double[candidates.size()];
+        double total = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            warmStart[i] = previousWeights.getOrDefault(candidates.get(i).getId(), 0.0);
+            total += warmStart[i];
+        }
+        if (total <= 0) {
+            return null;
+        }
+        for (int i = 0; i < warmStart.length; i++) {
+            warmStart[i] /= total;
+        }
+        return warmStart;
+    }
+
+    /**
+     * 大类资产映射到配置下标 [现金, 债券, 股票]，另类资产并入股票类
+     */
+    private int classGroup(AssetClass assetClass) {
+        return switch (assetClass) {
+            case CASH -> 0;
+            case FIXED_INCOME -> 1;
+            case EQUITY, ALTERNATIVE -> 2;
+        };
+    }
+
+    private record Prepared(List<Product> candidates, double[] floors, MeanVarianceOptimizer.Problem problem) {
+    }
+
+    private record Attempt(MeanVarianceOptimizer.Problem problem, MeanVarianceOptimizer.Result result, int iterations,
+                           boolean exhausted) {
+    }
+
+    /**
+     * 有效前沿上的一个点
+     */
+    public record FrontierPoint(double riskAversion, double volatility, double expectedReturn, double[] weights) {
+    }
+
+    /**
+     * 有效前沿求解结果，点按风险厌恶系数传入顺序排列
+     */
+    public record TracedFrontier(List<Product> candidates, List<FrontierPoint> points) {
+    }
+
+    /**
+     * 单个产品的金额分配，比例为百分数
+     */
+    public record RoundedAllocation(Product product, BigDecimal amount, BigDecimal percentage) {
+    }
+
+    /**
+     * 优化结果
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class OptimizationResult {
+        private List<Product> products;
+        private List<Double> weights;
+        private double expectedReturn;
+        private double expectedVolatility;
+        private double volatilityCap;
+        private boolean volatilityCapSatisfied;
+        private double riskAversion;
+        private int iterations;
+        private boolean converged;
+        private long elapsedMicros;
+
+        /**
+         * 按投资金额换算各产品金额和比例：比例保留两位小数，舍入误差由权重最大的产品吸收，合计恰为100%和投资金额
+         */
+        public List<RoundedAllocation> roundedAllocations(BigDecimal totalAmount) {
+            int largest = 0;
+            for (int i = 1; i < weights.size(); i++) {
+                if (weights.get(i) > weights.get(largest)) {
+                    largest = i;
+                }
+            }
+            RoundedAllocation[] allocations = new RoundedAllocation[products.size()];
+            BigDecimal allocatedPercentage = BigDecimal.ZERO;
+            BigDecimal allocatedAmount = BigDecimal.ZERO;
+            for (int i = 0; i < products.size(); i++) {
+                if (i != largest) {
+                    BigDecimal percentage = BigDecimal.valueOf(weights.get(i) * 100).setScale(2, RoundingMode.HALF_UP);
+                    BigDecimal amount = totalAmount.multiply(percentage).divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+                    allocations[i] = new RoundedAllocation(products.get(i), amount, percentage);
+                    allocatedPercentage = allocatedPercentage.add(percentage);
+                    allocatedAmount = allocatedAmount.add(amount);
+                }
+            }
+            if (!products.isEmpty()) {
+                allocations[largest] = new RoundedAllocation(products.get(largest), totalAmount.subtract(allocatedAmount),
+                        BigDecimal.valueOf(100).setScale(2).subtract(allocatedPercentage));
+            }
+            return Arrays.asList(allocations);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.xingye.bankrisk.service;
+
+import com.xingye.bankrisk.entity.PortfolioRecommendation;
+import com.xingye.bankrisk.entity.Product;
+import com.xingye.bankrisk.exception.AdmissionRejectedException;
+import com.xingye.bankrisk.quant.MonteCarloSimulator;
+import com.xingye.bankrisk.repository.PortfolioRecommendationRepository;
+import com.xingye.bankrisk.repository.ProductRepository;
+import com.xingye.bankrisk.repository.QuestionnaireRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 投资组合情景模拟服务类
+ * 对组合进行蒙特卡洛模拟，给出期末收益分位数、亏损概率和预期损失。
+ * 每次模拟占满模拟线程池并按路径数分配内存：路径数有上限，同时进行的模拟数有界，满时直接拒绝（429）
+ */
+@Slf4j
+@Service
+@Transactional(readOnly = true)
+public class PortfolioSimulationService {
+
+    private final PortfolioRecommendationRepository portfolioRecommendationRepository;
+    private final ProductRepository productRepository;
+    private final QuestionnaireRepository questionnaireRepository;
+    private final ProductCovarianceService productCovarianceService;
+
+    private final ForkJoinPool simulationPool;
+    private final MonteCarloSimulator simulator;
+    private final Semaphore simulationPermits;
+
+    @Value("${risk.simulation.default-paths:100000}")
+    private int defaultPaths;
+
+    @Value("${risk.simulation.max-paths:200000}")
+    private int maxPaths;
+
+    @Value("${risk.simulation.confidence:0.95}")
+    private double confidence;
+
+    public PortfolioSimulationService(PortfolioRecommendationRepository portfolioRecommendationRepository,
+                                      ProductRepository productRepository,
+                                      QuestionnaireRepository questionnaireRepository,
+                                      ProductCovarianceService productCovarianceService,
+                                      @Value("${risk.simulation.parallelism:0}") int parallelism,
+                                      @Value("${risk.simulation.max-concurrent:2}") int maxConcurrent) {
+        this.portfolioRecommendationRepository = portfolioRecommendationRepository;
+        this.productRepository = productRepository;
+        this.questionnaireRepository = questionnaireRepository;
+        this.productCovarianceService = productCovarianceService;
+        // 独立线程池，避免与公共池中的并行流相互抢占
+        this.simulationPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.simulator = new MonteCarloSimulator(simulationPool);
+        this.simulationPermits = new Semaphore(Math.max(1, maxConcurrent));
+    }
+
+    /**
+     * 模拟指定投资组合在客户投资期限内的收益分布
+     *
+     * 不开启事务：模拟期间不占用数据库连接
+     *
+     * @param paths 路径数，为空时使用默认值，超过上限时按上限模拟
+     * @param seed  随机种子，为空时使用组合ID，保证同一组合结果可复现
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public SimulationResult simulatePortfolio(Long recommendationId, Integer paths, Long seed) {
+        if (!simulationPermits.tryAcquire()) {
+            throw new AdmissionRejectedException("情景模拟繁忙，请稍后重试", "SIMULATION_BUSY",
+                    HttpStatus.TOO_MANY_REQUESTS, 1);
+        }
+        try {
+            return simulate(recommendationId, paths, seed);
+        } finally {
+            simulationPermits.release();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        simulationPool.shutdown();
+    }
+
+    // 私有辅助方法
+
+    private SimulationResult simulate(Long recommendationId, Integer paths, Long seed) {
+        log.info("[INFO]PortfolioSimulationService::simulatePortfolio: 开始情景模拟 - ID: {}, Paths: {}", recommendationId, paths);
+
+        PortfolioRecommendation recommendation = portfolioRecommendationRepository.findById(recommendationId)
+                .orElseThrow(() -> new RuntimeException("投资组合不存在: " + recommendationId));
+
+        int pathCount = Math.min(paths != null ? paths : defaultPaths, maxPaths);
+        if (pathCount <= 0) {
+            throw new RuntimeException("模拟路径数需为正数");
+        }
+
+        Map<Long, Double> allocation = readAllocation(recommendation);
+        Map<Long, Product> productMap = new HashMap<>();
+        productRepository.findAllById(allocation.keySet()).forEach(product -> productMap.put(product.getId(), product));
+
+        List<Product> products = new ArrayList<>();
+        List<Double> weightList = new ArrayList<>();
+        double totalWeight = 0;
+        for (Map.Entry<Long, Double> entry : allocation.entrySet()) {
+            Product product = productMap.get(entry.getKey());
+            if (product != null && entry.getValue() > 0) {
+                products.add(product);
+                weightList.add(entry.getValue());
+                totalWeight += entry.getValue();
+            }
+        }
+        if (products.isEmpty()) {
+            throw new RuntimeException("投资组合无有效产品: " + recommendationId);
+        }
+
+        int k = products.size();
+        double[] weights = new double[k];
+        double[] expectedReturns = new double[k];
+        for (int i = 0; i < k; i++) {
+            weights[i] = weightList.get(i) / totalWeight;
+            BigDecimal expectedReturn = products.get(i).getExpectedReturn();
+            expectedReturns[i] = expectedReturn != null ? expectedReturn.doubleValue() / 100 : 0;
+        }
+        // 协方差以百分比平方计，转换为小数
+        double[] covariance = productCovarianceService.covarianceMatrix(products);
+        for (int i = 0; i < covariance.length; i++) {
+            covariance[i] /= 10000;
+        }
+
+        int horizonYears = questionnaireRepository.findLatestByUserId(recommendation.getUserId())
+                .map(q -> q.getYearForInvest())
+                .filter(years -> years != null && years > 0)
+                .orElse(1);
+
+        MonteCarloSimulator.Result result = simulator.simulate(weights, expectedReturns, covariance, horizonYears,
+                pathCount, confidence, seed != null ? seed : recommendationId);
+
+        log.info("[INFO]PortfolioSimulationService::simulatePortfolio: 情景模拟完成 - ID: {}, Paths: {}, Years: {}, LossProbability: {}, ElapsedMs: {}",
+                recommendationId, pathCount, horizonYears, result.lossProbability(), result.elapsedMillis());
+        return toSimulationResult(recommendationId, result);
+    }
+
+    private Map<Long, Double> readAllocation(PortfolioRecommendation recommendation) {
+        List<Long> productIds = recommendation.getProductIds();
+        List<BigDecimal> percentages = recommendation.getAllocPcts();
+        if (productIds == null || percentages == null) {
+            throw new RuntimeException("投资组合配置缺失: " + recommendation.getId());
+        }
+        Map<Long, Double> allocation = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(productIds.size(), percentages.size()); i++) {
+            if (productIds.get(i) != null && percentages.get(i) != null) {
+                allocation.merge(productIds.get(i), percentages.get(i).doubleValue(), Double::sum);
+            }
+        }
+        return allocation;
+    }
+
+    private SimulationResult toSimulationResult(Long recommendationId, MonteCarloSimulator.Result result) {
+        Map<String, BigDecimal> percentiles = new LinkedHashMap<>();
+        for (int p = 0; p < result.percentileLevels().length; p++) {
+            percentiles.put("P" + Math.round(result.percentileLevels()[p] * 100), toPercent(result.percentileValues()[p]));
+        }
+        return SimulationResult.builder()
+                .portfolioId(recommendationId)
+                .paths(result.paths())
+                .horizonYears((int) result.horizonYears())
+                .confidence(result.confidence())
+                .expectedReturn(toPercent(result.mean()))
+                .standardDeviation(toPercent(result.standardDeviation()))
+                .percentiles(percentiles)
+                .lossProbability(toPercent(result.lossProbability()))
+                .valueAtRisk(toPercent(result.valueAtRisk()))
+                .expectedShortfall(toPercent(result.expectedShortfall()))
+                .elapsedMillis(result.elapsedMillis())
+                .build();
+    }
+
+    private BigDecimal toPercent(double value) {
+        return BigDecimal.valueOf(value * 100).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 情景模拟结果，收益与概率均以百分比表示
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class SimulationResult {
+        private Long portfolioId;
+        private int paths;
+        private int horizonYears;
+        private double confidence;
+        private BigDecimal expectedReturn;      // 期末累计收益均值
+        private BigDecimal standardDeviation;   // 期末累计收益标准差
+        private Map<String, BigDecimal> percentiles;
+        private BigDecimal lossProbability;     // 亏损概率
+        private BigDecimal valueAtRisk;         // 在险价值（损失为正）
+        private BigDecimal expectedShortfall;   // 预期损失（损失为正）
+        private long elapsedMillis;
+    }
+}
@@ -0,0 +1,503 @@
+package com.xingye.bankrisk.service;
+
+import com.xingye.bankrisk.concurrent.SingleFlightExecutor;
+import com.xingye.bankrisk.entity.Product;
+import com.xingye.bankrisk.entity.User;
+import com.xingye.bankrisk.json.ProductJsonCache;
+import com.xingye.bankrisk.metrics.NoQueryStats;
+import com.xingye.bankrisk.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 产品目录服务类
+ * 在内存中维护激活产品的列式快照：筛选条件按列扫描得到命中集合（同时得到总数），
+ * 各排序键的次序在构建快照时预先计算，分页使用（排序值, ID）键集游标，翻页不随页码变深而变慢。
+ * 查询方法只读内存快照，不开启事务、不占用数据库连接
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class ProductCatalogService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final ProductRepository productRepository;
+    private final SingleFlightExecutor singleFlightExecutor;
+    private final ProductJsonCache productJsonCache;
+
+    /**
+     * 当前发布的只读快照，读路径无锁
+     */
+    private volatile CatalogSnapshot snapshot;
+
+    /**
+     * 串行化版本检查与快照重建：启动事件与定时检查可能同时触发
+     */
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    /**
+     * 产品目录变化时重建快照
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${product.catalog.refresh-interval-ms:30000}",
+            initialDelayString = "${product.catalog.refresh-interval-ms:30000}")
+    public void refreshIfStale() {
+        // 启动时快照为空，并发的首批查询合并为一次版本检查与重建
+        singleFlightExecutor.get("ProductCatalogService.refreshIfStale", "", () -> {
+            refreshLocked();
+            return null;
+        });
+    }
+
+    /**
+     * 筛选、排序并分页查询产品
+     * 传入游标时按游标续读，否则按页码跳过；两种方式返回的 nextCursor 均可用于读取下一页
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @NoQueryStats
+    public ProductPage search(ProductQuery query) {
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            refreshIfStale();
+            current = snapshot;
+        }
+
+        SortKey sortKey = SortKey.of(query.getSortBy());
+        boolean ascending = "asc".equalsIgnoreCase(query.getSortOrder());
+        int size = Math.max(1, Math.min(query.getSize(), MAX_PAGE_SIZE));
+        int page = Math.max(0, query.getPage());
+
+        BitSet matches = current.filter(query);
+        Ordering ordering = current.orderings.get(sortKey);
+
+        int step;
+        long skip;
+        if (query.getCursor() != null && !query.getCursor().isBlank()) {
+            Cursor cursor = Cursor.decode(query.getCursor(), sortKey);
+            if (cursor.ascending() != ascending) {
+                throw new RuntimeException("分页游标与排序方向不匹配");
+            }
+            step = ordering.stepAfter(cursor, ascending);
+            skip = 0;
+        } else {
+            step = 0;
+            skip = (long) page * size;
+        }
+
+        List<Product> products = new ArrayList<>(size);
+        int lastIndex = -1;
+        boolean hasMore = false;
+        for (; step < current.size; step++) {
+            int index = ordering.indexAt(step, ascending);
+            if (!matches.get(index)) {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            if (products.size() == size) {
+                hasMore = true;
+                break;
+            }
+            products.add(current.products[index]);
+            lastIndex = index;
+        }
+
+        return ProductPage.builder()
+                .products(products)
+                .total(matches.cardinality())
+                .page(page)
+                .size(size)
+                .sortBy(sortKey.field)
+                .sortOrder(ascending ? "asc" : "desc")
+                .hasMore(hasMore)
+                .nextCursor(hasMore ? Cursor.encode(sortKey, ascending, ordering.values[lastIndex], current.ids[lastIndex]) : null)
+                .version(current.version)
+                .build();
+    }
+
+    /**
+     * 获取当前快照版本，未加载时返回 null
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public String getVersion() {
+        CatalogSnapshot current = snapshot;
+        return current != null ? current.version : null;
+    }
+
+    /**
+     * 获取产品统计（总数及按类型、风险等级、行业的分布），随快照一起构建
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ProductStatistics getStatistics() {
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            refreshIfStale();
+            current = snapshot;
+        }
+        return current.statistics;
+    }
+
+    // 私有辅助方法
+
+    private void refreshLocked() {
+        refreshLock.lock();
+        try {
+            List<Object[]> rows = productRepository.findCatalogFingerprint();
+            Object[] fingerprint = rows.isEmpty() ? new Object[]{0, null} : rows.get(0);
+            String version = fingerprint[0] + "@" + fingerprint[1];
+            CatalogSnapshot current = snapshot;
+            if (current == null || !version.equals(current.version)) {
+                long startTime = System.currentTimeMillis();
+                CatalogSnapshot rebuilt = new CatalogSnapshot(version, productRepository.findByIsActiveTrue());
+                snapshot = rebuilt;
+                productJsonCache.onCatalogVersion(version);
+                log.info("[INFO]ProductCatalogService::refreshIfStale: 产品目录快照重建完成 - Products: {}, Version: {}, ElapsedMs: {}",
+                        rebuilt.size, version, System.currentTimeMillis() - startTime);
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object left, Object right) {
+        return ((Comparable<Object>) left).compareTo(right);
+    }
+
+    /**
+     * 支持的排序键，field 为接口参数名
+     */
+    public enum SortKey {
+        EXPECTED_RETURN("expectedReturn", Product::getExpectedReturn, BigDecimal::new),
+        EXPECTED_VOLATILITY("expectedVolatility", Product::getExpectedVolatility, BigDecimal::new),
+        SHARPE_RATIO("sharpeRatio", Product::getSharpeRatio, BigDecimal::new),
+        MAX_DRAWDOWN("maxDrawdown", Product::getMaxDrawdown, BigDecimal::new),
+        HISTORICAL_RETURN_1Y("historicalReturn1y", Product::getHistoricalReturn1y, BigDecimal::new),
+        HISTORICAL_RETURN_3Y("historicalReturn3y", Product::getHistoricalReturn3y, BigDecimal::new),
+        HISTORICAL_RETURN_5Y("historicalReturn5y", Product::getHistoricalReturn5y, BigDecimal::new),
+        EXPENSE_RATIO("expenseRatio", Product::getExpenseRatio, BigDecimal::new),
+        MINIMUM_INVESTMENT("minimumInvestment", Product::getMinimumInvestment, BigDecimal::new),
+        LIQUIDITY_SCORE("liquidityScore", Product::getLiquidityScore, Integer::valueOf),
+        PRODUCT_NAME("productName", Product::getProductName, value -> value),
+        CREATED_AT("createdAt", Product::getCreatedAt, LocalDateTime::parse),
+        ID("id", Product::getId, Long::valueOf);
+
+        private final String field;
+        private final Function<Product, Object> extractor;
+        private final Function<String, Object> parser;
+
+        SortKey(String field, Function<Product, Object> extractor, Function<String, Object> parser) {
+            this.field = field;
+            this.extractor = extractor;
+            this.parser = parser;
+        }
+
+        public static SortKey of(String field) {
+            for (SortKey key : values()) {
+                if (key.field.equals(field)) {
+                    return key;
+                }
+            }
+            throw new RuntimeException("不支持的排序字段: " + field);
+        }
+    }
+
+    /**
+     * 列式目录快照，构建后只读
+     */
+    private static final class CatalogSnapshot {
+
+        private final String version;
+        private final int size;
+        private final Product[] products;
+        private final long[] ids;
+        // 筛选列：枚举存序号、行业存字典编码，空值为 -1；收益率空值为 NaN
+        private final byte[] productTypes;
+        private final byte[] riskLevels;
+        private final double[] expectedReturns;
+        private final int[] sectors;
+        private final Map<String, Integer> sectorCodes = new HashMap<>();
+        private final Map<SortKey, Ordering> orderings = new EnumMap<>(SortKey.class);
+        private final ProductStatistics statistics;
+
+        CatalogSnapshot(String version, List<Product> source) {
+            this.version = version;
+            this.size = source.size();
+            this.products = source.toArray(new Product[0]);
+            this.ids = new long[size];
+            this.productTypes = new byte[size];
+            this.riskLevels = new byte[size];
+            this.expectedReturns = new double[size];
+            this.sectors = new int[size];
+
+            for (int i = 0; i < size; i++) {
+                Product product = products[i];
+                ids[i] = product.getId();
+                productTypes[i] = (byte) (product.getProductType() != null ? product.getProductType().ordinal() : -1);
+                riskLevels[i] = (byte) (product.getRiskLevel() != null ? product.getRiskLevel().ordinal() : -1);
+                expectedReturns[i] = product.getExpectedReturn() != null ? product.getExpectedReturn().doubleValue() : Double.NaN;
+                sectors[i] = product.getSector() != null
+                        ? sectorCodes.computeIfAbsent(product.getSector(), key -> sectorCodes.size())
+                        : -1;
+            }
+            for (SortKey key : SortKey.values()) {
+                orderings.put(key, new Ordering(this, key));
+            }
+            this.statistics = buildStatistics();
+        }
+
+        private ProductStatistics buildStatistics() {
+            Map<String, Long> byType = new TreeMap<>();
+            Map<String, Long> byRiskLevel = new TreeMap<>();
+            Map<String, Long> bySector = new TreeMap<>();
+            for (Product product : products) {
+                if (product.getProductType() != null) {
+                    byType.merge(product.getProductType().name(), 1L, Long::sum);
+                }
+                if (product.getRiskLevel() != null) {
+                    byRiskLevel.merge(product.getRiskLevel().name(), 1L, Long::sum);
+                }
+                if (product.getSector() != null) {
+                    bySector.merge(product.getSector(), 1L, Long::sum);
+                }
+            }
+            return ProductStatistics.builder()
+                    .totalProducts(size)
+                    .byType(byType)
+                    .byRiskLevel(byRiskLevel)
+                    .bySector(bySector)
+                    .version(version)
+                    .build();
+        }
+
+        /**
+         * 逐列扫描筛选条件，返回命中的产品下标集合
+         */
+        BitSet filter(ProductQuery query) {
+            boolean[] typeMask = mask(query.getProductTypes(), Product.ProductType.values().length);
+            boolean[] riskMask = mask(query.getRiskLevels(), User.RiskLevel.values().length);
+            boolean[] sectorMask = null;
+            if (query.getSectors() != null && !query.getSectors().isEmpty()) {
+                sectorMask = new boolean[sectorCodes.size()];
+                for (String sector : query.getSectors()) {
+                    Integer code = sectorCodes.get(sector);
+                    if (code != null) {
+                        sectorMask[code] = true;
+                    }
+                }
+            }
+            boolean returnBounded = query.getMinReturn() != null || query.getMaxReturn() != null;
+            double minReturn = query.getMinReturn() != null ? query.getMinReturn().doubleValue() : Double.NEGATIVE_INFINITY;
+            double maxReturn = query.getMaxReturn() != null ? query.getMaxReturn().doubleValue() : Double.POSITIVE_INFINITY;
+
+            BitSet matches = new BitSet(size);
+            for (int i = 0; i < size; i++) {
+                if (typeMask != null && (productTypes[i] < 0 || !typeMask[productTypes[i]])) {
+                    continue;
+                }
+                if (riskMask != null && (riskLevels[i] < 0 || !riskMask[riskLevels[i]])) {
+                    continue;
+                }
+                if (sectorMask != null && (sectors[i] < 0 || !sectorMask[sectors[i]])) {
+                    continue;
+                }
+                if (returnBounded && (Double.isNaN(expectedReturns[i])
+                        || expectedReturns[i] < minReturn || expectedReturns[i] > maxReturn)) {
+                    continue;
+                }
+                matches.set(i);
+            }
+            return matches;
+        }
+
+        private static boolean[] mask(Collection<? extends Enum<?>> selected, int cardinality) {
+            if (selected == null || selected.isEmpty()) {
+                return null;
+            }
+            boolean[] mask = new boolean[cardinality];
+            for (Enum<?> value : selected) {
+                if (value != null) {
+                    mask[value.ordinal()] = true;
+                }
+            }
+            return mask;
+        }
+    }
+
+    /**
+     * 单个排序键的预排序次序
+     * order 前 nonNullCount 项为非空值按（值, ID）升序，其后为空值按 ID 升序；降序时非空段倒序遍历，空值始终排在最后
+     */
+    private static final class Ordering {
+
+        private final int[] order;
+        private final int nonNullCount;
+        private final Object[] values;
+        private final long[] ids;
+
+        Ordering(CatalogSnapshot snapshot, SortKey key) {
+            this.ids = snapshot.ids;
+            this.values = new Object[snapshot.size];
+            Integer[] boxed = new Integer[snapshot.size];
+            int nonNull = 0;
+            for (int i = 0; i < snapshot.size; i++) {
+                values[i] = key.extractor.apply(snapshot.products[i]);
+                boxed[i] = i;
+                if (values[i] != null) {
+                    nonNull++;
+                }
+            }
+            Arrays.sort(boxed, (a, b) -> {
+                if (values[a] == null || values[b] == null) {
+                    if (values[a] != values[b]) {
+                        return values[a] == null ? 1 : -1;
+                    }
+                    return Long.compare(ids[a], ids[b]);
+                }
+                int result = compareValues(values[a], values[b]);
+                return result != 0 ? result : Long.compare(ids[a], ids[b]);
+            });
+            this.order = new int[snapshot.size];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = boxed[i];
+            }
+            this.nonNullCount = nonNull;
+        }
+
+        int indexAt(int step, boolean ascending) {
+            if (ascending || step >= nonNullCount) {
+                return order[step];
+            }
+            return order[nonNullCount - 1 - step];
+        }
+
+        /**
+         * 游标之后的第一个遍历位置
+         */
+        int stepAfter(Cursor cursor, boolean ascending) {
+            if (cursor.value() == null) {
+                int low = nonNullCount;
+                int high = order.length;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (ids[order[middle]] <= cursor.id()) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                return low;
+            }
+            // 在非空段中二分：升序取第一个大于游标的位置，降序取最后一个小于游标的位置
+            int low = 0;
+            int high = nonNullCount;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int result = compareAt(order[middle], cursor);
+                if (ascending ? result <= 0 : result < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return ascending ? low : nonNullCount - low;
+        }
+
+        private int compareAt(int index, Cursor cursor) {
+            int result = compareValues(values[index], cursor.value());
+            return result != 0 ? result : Long.compare(ids[index], cursor.id());
+        }
+    }
+
+    /**
+     * 键集分页游标：排序键、方向、最后一条记录的排序值与ID
+     */
+    private record Cursor(SortKey sortKey, boolean ascending, Object value, long id) {
+
+        static String encode(SortKey sortKey, boolean ascending, Object value, long id) {
+            String raw = sortKey.field + "\n" + (ascending ? "asc" : "desc") + "\n" + id + "\n"
+                    + (value != null ? "v" + value : "");
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String encoded, SortKey expectedKey) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+                String[] parts = raw.split("\n", 4);
+                SortKey sortKey = SortKey.of(parts[0]);
+                if (sortKey != expectedKey) {
+                    throw new IllegalArgumentException();
+                }
+                Object value = parts[3].isEmpty() ? null : sortKey.parser.apply(parts[3].substring(1));
+                return new Cursor(sortKey, "asc".equals(parts[1]), value, Long.parseLong(parts[2]));
+            } catch (RuntimeException e) {
+                throw new RuntimeException("无效的分页游标");
+            }
+        }
+    }
+
+    /**
+     * 产品查询条件
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class ProductQuery {
+        private List<Product.ProductType> productTypes;
+        private List<User.RiskLevel> riskLevels;
+        private BigDecimal minReturn;
+        private BigDecimal maxReturn;
+        private List<String> sectors;
+        private String sortBy;
+        private String sortOrder;
+        private int page;
+        private int size;
+        private String cursor;
+    }
+
+    /**
+     * 产品分页结果
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class ProductPage {
+        private List<Product> products;
+        private long total;
+        private int page;
+        private int size;
+        private String sortBy;
+        private String sortOrder;
+        private boolean hasMore;
+        private String nextCursor;      // 下一页游标，无下一页时为空
+        private String version;         // 目录快照版本
+    }
+
+    /**
+     * 产品统计
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class ProductStatistics {
+        private long totalProducts;
+        private Map<String, Long> byType;
+        private Map<String, Long> byRiskLevel;
+        private Map<String, Long> bySector;
+        private String version;         // 目录快照版本
+    }
+}
@@ -0,0 +1,376 @@
+package com.xingye.bankrisk.service;
+
+import com.xingye.bankrisk.datasource.ReadFromPrimary;
+import com.xingye.bankrisk.entity.Product;
+import com.xingye.bankrisk.entity.ProductReturn;
+import com.xingye.bankrisk.metrics.NoQueryStats;
+import com.xingye.bankrisk.quant.AssetClass;
+import com.xingye.bankrisk.quant.OnlineCovarianceEstimator;
+import com.xingye.bankrisk.quant.PackedCovarianceMatrix;
+import com.xingye.bankrisk.repository.ProductRepository;
+import com.xingye.bankrisk.repository.ProductReturnRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 产品协方差服务类
+ * 基于产品收益序列估计协方差矩阵，并以大类资产先验做收缩，用于计算组合真实波动率。
+ * 收益经 recordReturns 写库，事务提交后再更新内存估计
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class ProductCovarianceService {
+
+    // 半正定检查的相对容差，以及找不到半正定组合时收缩强度的提升次数
+    private static final double PSD_TOLERANCE = 1e-10;
+    private static final int MAX_SHRINKAGE_STEPS = 8;
+
+    private final ProductRepository productRepository;
+    private final ProductReturnRepository productReturnRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${risk.covariance.periods-per-year:12}")
+    private int periodsPerYear;
+
+    @Value("${risk.covariance.lookback-periods:60}")
+    private int lookbackPeriods;
+
+    @Value("${risk.covariance.min-shrinkage:0.1}")
+    private double minShrinkage;
+
+    /**
+     * 当前发布的只读快照，读路径无锁
+     */
+    private volatile CovarianceSnapshot snapshot = CovarianceSnapshot.EMPTY;
+
+    /**
+     * 串行化全量重建与提交后的增量更新，保护下面的估计器、先验和产品索引
+     */
+    private final ReentrantLock estimatorLock = new ReentrantLock();
+
+    // 以下字段由 estimatorLock 保护
+    private OnlineCovarianceEstimator estimator = new OnlineCovarianceEstimator(0);
+    private PackedCovarianceMatrix prior = new PackedCovarianceMatrix(0);
+    private Map<Long, Integer> productIndex = Map.of();
+    private NavigableSet<LocalDate> periods = new TreeSet<>();
+
+    /**
+     * 从数据库全量重建协方差估计
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${risk.covariance.refresh-interval-ms:3600000}",
+            initialDelayString = "${risk.covariance.refresh-interval-ms:3600000}")
+    public void rebuild() {
+        // 读库与换入在同一把锁内，与提交后的增量更新串行：增量更新据 periods 判断该期是否已被本次读取包含
+        estimatorLock.lock();
+        try {
+            rebuildLocked();
+        } finally {
+            estimatorLock.unlock();
+        }
+    }
+
+    /**
+     * 录入一期产品收益，事务提交后增量更新协方差
+     */
+    @Transactional
+    public void recordReturns(LocalDate returnDate, Map<Long, BigDecimal> returns) {
+        // 一次读出该期已有记录；已有记录（修正或补录）时无法增量撤销，提交后全量重建
+        Map<Long, ProductReturn> existing = new HashMap<>();
+        for (ProductReturn productReturn : productReturnRepository.findByReturnDate(returnDate)) {
+            existing.put(productReturn.getProductId(), productReturn);
+        }
+        boolean corrected = !existing.isEmpty();
+
+        List<ProductReturn> toSave = new ArrayList<>(returns.size());
+        for (Map.Entry<Long, BigDecimal> entry : returns.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            ProductReturn productReturn = existing.computeIfAbsent(entry.getKey(), productId -> ProductReturn.builder()
+                    .productId(productId)
+                    .returnDate(returnDate)
+                    .build());
+            productReturn.setReturnPct(entry.getValue());
+            toSave.add(productReturn);
+        }
+        productReturnRepository.saveAll(toSave);
+        eventPublisher.publishEvent(new ProductReturnsRecordedEvent(returnDate, new HashMap<>(returns), corrected));
+        log.info("[INFO]ProductCovarianceService::recordReturns: 产品收益已录入 - Date: {}, Products: {}, Corrected: {}",
+                returnDate, returns.size(), corrected);
+    }
+
+    /**
+     * 收益写入提交后更新内存估计；回滚时不触发，快照与数据库保持一致
+     * 读主库：修正时的全量重建必须读到刚提交的收益
+     */
+    @ReadFromPrimary
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void onReturnsRecorded(ProductReturnsRecordedEvent event) {
+        estimatorLock.lock();
+        try {
+            LocalDate windowStart = windowStart();
+            if (event.returnDate().isBefore(windowStart)) {
+                // 早于估计窗口的补录不影响估计
+                return;
+            }
+            // 修正无法增量撤销；最早的期已滑出窗口时在线估计器无法剔除，两种情况都按窗口全量重建
+            if (event.corrected() || (!periods.isEmpty() && periods.first().isBefore(windowStart))) {
+                rebuildLocked();
+                return;
+            }
+            if (periods.contains(event.returnDate())) {
+                // 提交后开始的全量重建已读到该期
+                return;
+            }
+            double[] observation = newObservation(estimator.dimension());
+            for (Map.Entry<Long, BigDecimal> entry : event.returns().entrySet()) {
+                Integer i = productIndex.get(entry.getKey());
+                if (i != null && entry.getValue() != null) {
+                    observation[i] = entry.getValue().doubleValue();
+                }
+            }
+            estimator.update(observation);
+            periods.add(event.returnDate());
+            publish();
+        } finally {
+            estimatorLock.unlock();
+        }
+    }
+
+    /**
+     * 计算组合年化波动率（百分比），权重需已归一化
+     */
+    @NoQueryStats
+    public double portfolioVolatility(List<Product> products, double[] weights) {
+        if (products.size() != weights.length) {
+            throw new IllegalArgumentException("产品与权重数量不匹配");
+        }
+        CovarianceSnapshot current = snapshot;
+        int[] indices = resolveIndices(current, products);
+
+        double variance;
+        // 已知产品的子矩阵取自半正定快照；混入缺少历史的产品时拼接的矩阵不保证半正定
+        if (allKnown(indices)) {
+            variance = current.matrix().quadraticForm(indices, weights);
+        } else {
+            double[] dense = denseCovariance(current, products, indices);
+            int k = products.size();
+            variance = 0;
+            for (int a = 0; a < k; a++) {
+                double row = 0;
+                for (int b = 0; b < k; b++) {
+                    row += dense[a * k + b] * weights[b];
+                }
+                variance += weights[a] * row;
+            }
+        }
+        if (variance < 0) {
+            log.warn("[WARN]ProductCovarianceService::portfolioVolatility: 组合方差为负，按0处理 - Variance: {}, Products: {}",
+                    variance, products.size());
+            return 0;
+        }
+        return Math.sqrt(variance);
+    }
+
+    /**
+     * 获取指定产品的年化协方差矩阵（k×k 行主序），缺少历史数据的产品使用先验
+     */
+    @NoQueryStats
+    public double[] covarianceMatrix(List<Product> products) {
+        CovarianceSnapshot current = snapshot;
+        int[] indices = resolveIndices(current, products);
+        return allKnown(indices)
+                ? current.matrix().extractDense(indices)
+                : denseCovariance(current, products, indices);
+    }
+
+    /**
+     * 获取当前协方差快照
+     */
+    public CovarianceSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    // 私有辅助方法
+
+    /**
+     * 全量重建，调用方需持有 estimatorLock
+     */
+    private void rebuildLocked() {
+        List<Product> products = productRepository.findByIsActiveTrue();
+        Map<Long, Integer> index = new HashMap<>(products.size() * 2);
+        for (int i = 0; i < products.size(); i++) {
+            index.put(products.get(i).getId(), i);
+        }
+
+        OnlineCovarianceEstimator newEstimator = new OnlineCovarianceEstimator(products.size());
+        List<ProductReturn> returns = productReturnRepository.findByReturnDateGreaterThanEqualOrderByReturnDateAsc(windowStart());
+
+        NavigableSet<LocalDate> dates = new TreeSet<>();
+        double[] observation = null;
+        LocalDate currentDate = null;
+        for (ProductReturn productReturn : returns) {
+            Integer i = index.get(productReturn.getProductId());
+            if (i == null || productReturn.getReturnPct() == null) {
+                continue;
+            }
+            if (!productReturn.getReturnDate().equals(currentDate)) {
+                if (observation != null) {
+                    newEstimator.update(observation);
+                }
+                currentDate = productReturn.getReturnDate();
+                dates.add(currentDate);
+                observation = newObservation(products.size());
+            }
+            observation[i] = productReturn.getReturnPct().doubleValue();
+        }
+        if (observation != null) {
+            newEstimator.update(observation);
+        }
+
+        estimator = newEstimator;
+        prior = buildPrior(products);
+        productIndex = index;
+        periods = dates;
+        publish();
+
+        log.info("[INFO]ProductCovarianceService::rebuild: 协方差矩阵重建完成 - Products: {}, Periods: {}",
+                products.size(), newEstimator.count());
+    }
+
+    /**
+     * 估计窗口的起始日期：最近 lookbackPeriods 期
+     */
+    private LocalDate windowStart() {
+        return LocalDate.now().minusDays((long) lookbackPeriods * 365 / Math.max(1, periodsPerYear));
+    }
+
+    private double[] newObservation(int dimension) {
+        double[] observation = new double[dimension];
+        Arrays.fill(observation, Double.NaN);
+        return observation;
+    }
+
+    /**
+     * 由样本协方差与先验矩阵合成新快照，调用方需持有 estimatorLock
+     * 收缩强度取 max(最小强度, min(1, 产品数/期数))：n 个产品只有 T 期时样本协方差的估计误差随 n/T 增大，n ≥ T 时矩阵奇异，
+     * 以 n/T 近似最优强度（与 Ledoit-Wolf 估计的量级一致）而不逐元素估计误差方差；下限保证矩阵条件数有界，优化器求解稳定。
+     * 共同观测不足两期的元素直接取先验。成对完整估计的样本矩阵不保证半正定，按上述强度收缩后仍不是半正定时，
+     * 逐步提高强度（每次把与1的差距减半）直到 Cholesky 检查通过，最终退化为先验
+     */
+    private void publish() {
+        int dimension = prior.dimension();
+        long count = estimator.count();
+        double intensity = count < 2 ? 1.0 : Math.max(minShrinkage, Math.min(1.0, (double) dimension / count));
+        PackedCovarianceMatrix sample = estimator.covariance().scale(periodsPerYear);
+        for (int i = 0; i < dimension; i++) {
+            for (int j = i; j < dimension; j++) {
+                if (Double.isNaN(sample.get(i, j))) {
+                    sample.set(i, j, prior.get(i, j));
+                }
+            }
+        }
+        PackedCovarianceMatrix matrix = sample.shrinkToward(prior, intensity);
+        double base = intensity;
+        for (int step = 0; step < MAX_SHRINKAGE_STEPS && intensity < 1 && !matrix.isPositiveSemidefinite(PSD_TOLERANCE); step++) {
+            intensity = step == MAX_SHRINKAGE_STEPS - 1 ? 1.0 : 1 - (1 - intensity) / 2;
+            matrix = sample.shrinkToward(prior, intensity);
+        }
+        if (intensity > base) {
+            log.warn("[WARN]ProductCovarianceService::publish: 样本协方差不是半正定，提高收缩强度 - From: {}, To: {}",
+                    base, intensity);
+        }
+        snapshot = new CovarianceSnapshot(snapshot.version() + 1, productIndex, matrix);
+    }
+
+    private PackedCovarianceMatrix buildPrior(List<Product> products) {
+        int n = products.size();
+        PackedCovarianceMatrix matrix = new PackedCovarianceMatrix(n);
+        double[] volatility = new double[n];
+        AssetClass[] classes = new AssetClass[n];
+        for (int i = 0; i < n; i++) {
+            volatility[i] = volatilityOf(products.get(i));
+            classes[i] = AssetClass.of(products.get(i).getProductType());
+        }
+        for (int i = 0; i < n; i++) {
+            matrix.set(i, i, volatility[i] * volatility[i]);
+            for (int j = i + 1; j < n; j++) {
+                matrix.set(i, j, classes[i].correlationWith(classes[j]) * volatility[i] * volatility[j]);
+            }
+        }
+        return matrix;
+    }
+
+    private int[] resolveIndices(CovarianceSnapshot current, List<Product> products) {
+        int[] indices = new int[products.size()];
+        for (int a = 0; a < indices.length; a++) {
+            Integer i = current.index().get(products.get(a).getId());
+            indices[a] = i != null ? i : -1;
+        }
+        return indices;
+    }
+
+    private boolean allKnown(int[] indices) {
+        for (int i : indices) {
+            if (i < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double[] denseCovariance(CovarianceSnapshot current, List<Product> products, int[] indices) {
+        int k = products.size();
+        double[] volatility = new double[k];
+        AssetClass[] classes = new AssetClass[k];
+        for (int a = 0; a < k; a++) {
+            volatility[a] = indices[a] >= 0
+                    ? Math.sqrt(current.matrix().variance(indices[a]))
+                    : volatilityOf(products.get(a));
+            classes[a] = AssetClass.of(products.get(a).getProductType());
+        }
+
+        double[] dense = new double[k * k];
+        for (int a = 0; a < k; a++) {
+            dense[a * k + a] = volatility[a] * volatility[a];
+            for (int b = a + 1; b < k; b++) {
+                double covariance = indices[a] >= 0 && indices[b] >= 0
+                        ? current.matrix().get(indices[a], indices[b])
+                        : classes[a].correlationWith(classes[b]) * volatility[a] * volatility[b];
+                dense[a * k + b] = covariance;
+                dense[b * k + a] = covariance;
+            }
+        }
+        return dense;
+    }
+
+    private double volatilityOf(Product product) {
+        return product.getExpectedVolatility() != null ? product.getExpectedVolatility().doubleValue() : 0;
+    }
+
+    /**
+     * 协方差快照（年化，单位为百分比的平方）
+     */
+    public record CovarianceSnapshot(long version, Map<Long, Integer> index, PackedCovarianceMatrix matrix) {
+
+        static final CovarianceSnapshot EMPTY = new CovarianceSnapshot(0, Map.of(), new PackedCovarianceMatrix(0));
+    }
+}
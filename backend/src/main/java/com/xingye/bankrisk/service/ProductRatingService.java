@@ -0,0 +1,243 @@
+package com.xingye.bankrisk.service;
+
+import com.xingye.bankrisk.entity.ProductRating;
+import com.xingye.bankrisk.entity.ProductRatingSummary;
+import com.xingye.bankrisk.repository.ProductRatingRepository;
+import com.xingye.bankrisk.repository.ProductRatingSummaryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * 产品评分服务类
+ * 写入评分时在同一事务内维护 product_rating_summary（最新评分、历史平均、评分次数、指数衰减平均），
+ * 评分读取只访问汇总表，不再对评分历史做聚合
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class ProductRatingService {
+
+    private final ProductRatingRepository productRatingRepository;
+    private final ProductRatingSummaryRepository productRatingSummaryRepository;
+
+    @Value("${risk.rating.decay-half-life-days:180}")
+    private double decayHalfLifeDays;
+
+    /**
+     * 写入评分并更新汇总；rating 带ID时为修改已有评分（需为游离对象），汇总中先撤回原值再计入新值
+     * 汇总行先 INSERT IGNORE 再加写锁读取，同一产品的并发写入在汇总行上串行
+     */
+    @Transactional
+    public ProductRating recordRating(ProductRating rating) {
+        log.info("[INFO]ProductRatingService::recordRating: 写入产品评分 - ProductID: {}, RatingID: {}, Date: {}",
+                rating.getProductId(), rating.getId(), rating.getRatingDate());
+
+        productRatingSummaryRepository.insertIfAbsent(rating.getProductId());
+        ProductRatingSummary summary = productRatingSummaryRepository.findForUpdate(rating.getProductId())
+                .orElseThrow(() -> new RuntimeException("评分汇总不存在: " + rating.getProductId()));
+
+        // 持有汇总行锁后再读原值，并发修改同一评分时不会重复撤回
+        RatingValue previous = null;
+        if (rating.getId() != null) {
+            ProductRating existing = productRatingRepository.findById(rating.getId())
+                    .orElseThrow(() -> new RuntimeException("评分不存在: " + rating.getId()));
+            if (!existing.getProductId().equals(rating.getProductId())) {
+                throw new RuntimeException("不能修改评分所属产品: " + rating.getId());
+            }
+            previous = new RatingValue(existing.getId(), existing.getRatingDate(), existing.getOverallRating());
+            rating.setCreatedAt(existing.getCreatedAt());
+        }
+
+        ProductRating savedRating = productRatingRepository.save(rating);
+        if (previous != null) {
+            retract(summary, previous);
+        }
+        apply(summary, savedRating);
+        productRatingSummaryRepository.save(summary);
+
+        return savedRating;
+    }
+
+    /**
+     * 根据评分历史重建单个产品的汇总，用于修正历史数据或调整衰减半衰期之后
+     */
+    @Transactional
+    public ProductRatingSummary rebuildSummary(Long productId) {
+        log.info("[INFO]ProductRatingService::rebuildSummary: 重建产品评分汇总 - ProductID: {}", productId);
+
+        productRatingSummaryRepository.insertIfAbsent(productId);
+        ProductRatingSummary summary = productRatingSummaryRepository.findForUpdate(productId)
+                .orElseThrow(() -> new RuntimeException("评分汇总不存在: " + productId));
+        reset(summary);
+        for (ProductRating rating : productRatingRepository.findByProductIdOrderByRatingDateDesc(productId)) {
+            apply(summary, rating);
+        }
+        return productRatingSummaryRepository.save(summary);
+    }
+
+    /**
+     * 获取产品评分汇总
+     */
+    public Optional<ProductRatingSummary> getSummary(Long productId) {
+        return productRatingSummaryRepository.findById(productId);
+    }
+
+    /**
+     * 批量获取产品评分汇总
+     */
+    public Map<Long, ProductRatingSummary> getSummaries(Collection<Long> productIds) {
+        Map<Long, ProductRatingSummary> summaries = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return summaries;
+        }
+        productRatingSummaryRepository.findAllById(productIds)
+                .forEach(summary -> summaries.put(summary.getProductId(), summary));
+        return summaries;
+    }
+
+    /**
+     * 获取产品的最新评分记录
+     */
+    public Optional<ProductRating> getLatestRating(Long productId) {
+        return getSummary(productId)
+                .map(ProductRatingSummary::getLatestRatingId)
+                .flatMap(productRatingRepository::findById);
+    }
+
+    /**
+     * 获取最新综合评分最高的产品汇总
+     */
+    public List<ProductRatingSummary> getTopRated(int limit) {
+        return productRatingSummaryRepository.findTopRated(PageRequest.of(0, Math.max(1, limit)));
+    }
+
+    /**
+     * 获取最新综合评分不低于指定值的产品汇总
+     */
+    public List<ProductRatingSummary> getLatestHighRated(BigDecimal minRating) {
+        return productRatingSummaryRepository.findByLatestOverallRatingGreaterThanEqualOrderByLatestOverallRatingDesc(minRating);
+    }
+
+    // 私有辅助方法
+
+    /**
+     * 从汇总中撤回一条评分的原值；撤回的是最新评分时按当前评分记录（已含修改后的值）重新确定最新评分
+     */
+    private void retract(ProductRatingSummary summary, RatingValue rating) {
+        if (rating.overall() == null || rating.date() == null) {
+            return;
+        }
+        long count = summary.getRatingCount() - 1;
+        if (count <= 0) {
+            reset(summary);
+            return;
+        }
+
+        BigDecimal sum = summary.getRatingSum().subtract(rating.overall());
+        summary.setRatingCount(count);
+        summary.setRatingSum(sum);
+        summary.setAverageRating(sum.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP));
+
+        // 参考日期不早于任何已计入评分的日期
+        double lambda = Math.log(2) / decayHalfLifeDays;
+        double weight = Math.exp(-lambda * ChronoUnit.DAYS.between(rating.date(), summary.getDecayReferenceDate()));
+        double decayedSum = summary.getDecayedSum() - rating.overall().doubleValue() * weight;
+        double decayedWeight = summary.getDecayedWeight() - weight;
+        summary.setDecayedSum(decayedSum);
+        summary.setDecayedWeight(decayedWeight);
+        summary.setDecayedRating(decayedWeight > 0
+                ? BigDecimal.valueOf(decayedSum / decayedWeight).setScale(2, RoundingMode.HALF_UP)
+                : null);
+
+        if (rating.id().equals(summary.getLatestRatingId())) {
+            summary.setLatestRatingId(null);
+            summary.setLatestRatingDate(null);
+            summary.setLatestOverallRating(null);
+            productRatingRepository.findFirstByProductIdAndOverallRatingIsNotNullOrderByRatingDateDescIdDesc(summary.getProductId())
+                    .ifPresent(latest -> {
+                        summary.setLatestRatingId(latest.getId());
+                        summary.setLatestRatingDate(latest.getRatingDate());
+                        summary.setLatestOverallRating(latest.getOverallRating());
+                    });
+        }
+    }
+
+    private void reset(ProductRatingSummary summary) {
+        summary.setLatestRatingId(null);
+        summary.setLatestRatingDate(null);
+        summary.setLatestOverallRating(null);
+        summary.setRatingCount(0L);
+        summary.setRatingSum(BigDecimal.ZERO);
+        summary.setAverageRating(null);
+        summary.setDecayedSum(0.0);
+        summary.setDecayedWeight(0.0);
+        summary.setDecayReferenceDate(null);
+        summary.setDecayedRating(null);
+    }
+
+    /**
+     * 将一条评分计入汇总；与写入顺序无关，补录的历史评分同样正确计入
+     * 综合评分为空的记录不参与汇总
+     */
+    private void apply(ProductRatingSummary summary, ProductRating rating) {
+        BigDecimal overall = rating.getOverallRating();
+        LocalDate ratingDate = rating.getRatingDate();
+        if (overall == null || ratingDate == null) {
+            return;
+        }
+
+        // 最新评分：日期最大者，同日取ID较大者
+        LocalDate latestDate = summary.getLatestRatingDate();
+        if (latestDate == null || ratingDate.isAfter(latestDate)
+                || (ratingDate.isEqual(latestDate) && summary.getLatestRatingId() != null
+                    && rating.getId() > summary.getLatestRatingId())) {
+            summary.setLatestRatingId(rating.getId());
+            summary.setLatestRatingDate(ratingDate);
+            summary.setLatestOverallRating(overall);
+        }
+
+        // 历史平均
+        long count = summary.getRatingCount() + 1;
+        BigDecimal sum = summary.getRatingSum().add(overall);
+        summary.setRatingCount(count);
+        summary.setRatingSum(sum);
+        summary.setAverageRating(sum.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP));
+
+        // 指数衰减平均：分子与权重统一折算到参考日期，比值与读取时间无关
+        double lambda = Math.log(2) / decayHalfLifeDays;
+        double value = overall.doubleValue();
+        LocalDate referenceDate = summary.getDecayReferenceDate();
+        double decayedSum = summary.getDecayedSum();
+        double decayedWeight = summary.getDecayedWeight();
+        if (referenceDate == null || !ratingDate.isBefore(referenceDate)) {
+            double factor = referenceDate == null ? 0 : Math.exp(-lambda * ChronoUnit.DAYS.between(referenceDate, ratingDate));
+            decayedSum = decayedSum * factor + value;
+            decayedWeight = decayedWeight * factor + 1;
+            summary.setDecayReferenceDate(ratingDate);
+        } else {
+            double weight = Math.exp(-lambda * ChronoUnit.DAYS.between(ratingDate, referenceDate));
+            decayedSum += value * weight;
+            decayedWeight += weight;
+        }
+        summary.setDecayedSum(decayedSum);
+        summary.setDecayedWeight(decayedWeight);
+        summary.setDecayedRating(BigDecimal.valueOf(decayedSum / decayedWeight).setScale(2, RoundingMode.HALF_UP));
+    }
+
+    /**
+     * 评分修改前计入汇总的值
+     */
+    private record RatingValue(Long id, LocalDate date, BigDecimal overall) {
+    }
+}
@@ -1,10 +1,13 @@
 package com.xingye.bankrisk.service;
 
+import com.xingye.bankrisk.concurrent.SingleFlightExecutor;
 import com.xingye.bankrisk.entity.Product;
-import com.xingye.bankrisk.entity.ProductRating;
+import com.xingye.bankrisk.entity.ProductRatingSummary;
 import com.xingye.bankrisk.entity.ProductTag;
 import com.xingye.bankrisk.entity.User;
-import com.xingye.bankrisk.repository.ProductRatingRepository;
+import com.xingye.bankrisk.metrics.NoQueryStats;
+import com.xingye.bankrisk.metrics.RecommendationMetrics;
+import com.xingye.bankrisk.metrics.RecommendationMetrics.Stage;
 import com.xingye.bankrisk.repository.ProductRepository;
 import com.xingye.bankrisk.repository.ProductTagRelationRepository;
 import com.xingye.bankrisk.repository.ProductTagRepository;
@@ -29,9 +32,14 @@ import java.util.stream.Collectors;
 public class ProductRecommendationService {
 
     private final ProductRepository productRepository;
-    private final ProductRatingRepository productRatingRepository;
+    private final ProductRatingService productRatingService;
     private final ProductTagRepository productTagRepository;
     private final ProductTagRelationRepository productTagRelationRepository;
+    private final ProductCovarianceService productCovarianceService;
+    private final EfficientFrontierService efficientFrontierService;
+    private final PortfolioOptimizationService portfolioOptimizationService;
+    private final RecommendationMetrics recommendationMetrics;
+    private final SingleFlightExecutor singleFlightExecutor;
 
     // 推荐算法权重配置
     private static final double RETURN_WEIGHT = 0.25;
@@ -39,6 +47,9 @@ public class ProductRecommendationService {
     private static final double SHARPE_WEIGHT = 0.25;
     private static final double RATING_WEIGHT = 0.20;
 
+    // 每个风险等级最多保留的候选产品数
+    private static final int CANDIDATES_PER_LEVEL = 10;
+
     /**
      * 根据用户得分推荐产品组合
      */
@@ -47,29 +58,70 @@ public class ProductRecommendationService {
         log.info("[INFO]ProductRecommendationService::recommendProducts: 开始个性化产品推荐 - Score: {}, RiskLevel: {}, Amount: {}",
                 userScore, riskLevel, investAmount);
 
-        // 1. 确定推荐策略
-        RecommendationStrategy strategy = determineStrategy(userScore, riskLevel, preferences);
-
-        // 2. 获取候选产品
-        List<Product> candidateProducts = getCandidateProducts(strategy, investAmount);
-
-        // 3. 评分和排序产品
-        List<ScoredProduct> scoredProducts = scoreAndRankProducts(candidateProducts, userScore, riskLevel);
-
-        // 4. 生成投资组合
-        PortfolioRecommendation portfolio = generatePortfolio(scoredProducts, strategy, investAmount);
+        RecommendationMetrics.Recording recording = recommendationMetrics.start(riskLevel);
+        String outcome = "error";
+        try {
+            // 1. 确定推荐策略
+            RecommendationStrategy strategy = recording.time(Stage.DETERMINE_STRATEGY,
+                    () -> determineStrategy(userScore, riskLevel, preferences));
+            recording.strategy(strategyName(userScore));
+
+            // 2. 获取候选产品
+            List<Product> candidateProducts = recording.time(Stage.CANDIDATES,
+                    () -> getCandidateProducts(strategy, investAmount, recording));
+            recording.candidates(candidateProducts.size());
+
+            // 3. 评分和排序产品
+            List<ScoredProduct> scoredProducts = recording.time(Stage.SCORE_AND_RANK,
+                    () -> scoreAndRankProducts(candidateProducts, userScore, riskLevel, recording));
+
+            // 4. 生成投资组合：优先沿预计算的有效前沿插值，不满足本次筛选条件时按分档规则分配
+            PortfolioRecommendation portfolio = recording.time(Stage.PORTFOLIO,
+                    () -> frontierPortfolio(strategy, investAmount, preferences)
+                            .orElseGet(() -> generatePortfolio(scoredProducts, strategy, investAmount)));
+
+            // 5. 创建推荐结果
+            String explanation = recording.time(Stage.EXPLANATION,
+                    () -> generateExplanation(strategy, userScore, riskLevel));
+            ProductRecommendationResult result = ProductRecommendationResult.builder()
+                    .strategy(strategy)
+                    .recommendedProducts(scoredProducts)
+                    .portfolio(portfolio)
+                    .explanation(explanation)
+                    .build();
+            outcome = "success";
+
+            log.info("[INFO]ProductRecommendationService::recommendProducts: 产品推荐完成 - 推荐产品数量: {}",
+                    scoredProducts.size());
+            return result;
+        } finally {
+            recording.complete(outcome);
+        }
+    }
 
-        // 5. 创建推荐结果
-        ProductRecommendationResult result = ProductRecommendationResult.builder()
-                .strategy(strategy)
-                .recommendedProducts(scoredProducts)
-                .portfolio(portfolio)
-                .explanation(generateExplanation(strategy, userScore, riskLevel))
-                .build();
+    /**
+     * 按得分区间给出策略名称，与 determineStrategy 的分档一致，用作指标标签
+     */
+    private String strategyName(int userScore) {
+        if (userScore < 35) {
+            return "conservative";
+        } else if (userScore < 65) {
+            return "moderate";
+        }
+        return "aggressive";
+    }
 
-        log.info("[INFO]ProductRecommendationService::recommendProducts: 产品推荐完成 - 推荐产品数量: {}",
-                scoredProducts.size());
-        return result;
+    /**
+     * 得分区间对应的组合波动率上限（%），与 determineStrategy 的分档一致
+     */
+    @NoQueryStats
+    public double getScoreBandVolatilityCap(int userScore) {
+        if (userScore < 35) {
+            return 8.0;
+        } else if (userScore < 65) {
+            return 12.0;
+        }
+        return 20.0;
     }
 
     /**
@@ -88,23 +140,22 @@ public class ProductRecommendationService {
             strategy.setBalancedRatio(0.25);
             strategy.setAggressiveRatio(0.05);
             strategy.setMinSharpeRatio(BigDecimal.valueOf(2.0));
-            strategy.setMaxVolatility(BigDecimal.valueOf(8.0));
         } else if (userScore < 65) {
             // 稳健型投资者
             strategy.setConservativeRatio(0.30);
             strategy.setBalancedRatio(0.50);
             strategy.setAggressiveRatio(0.20);
             strategy.setMinSharpeRatio(BigDecimal.valueOf(2.5));
-            strategy.setMaxVolatility(BigDecimal.valueOf(12.0));
         } else {
             // 激进型投资者
             strategy.setConservativeRatio(0.10);
             strategy.setBalancedRatio(0.30);
             strategy.setAggressiveRatio(0.60);
             strategy.setMinSharpeRatio(BigDecimal.valueOf(3.0));
-            strategy.setMaxVolatility(BigDecimal.valueOf(20.0));
         }
 
+        strategy.setMaxVolatility(BigDecimal.valueOf(getScoreBandVolatilityCap(userScore)));
+
         // 根据偏好调整策略
         if (preferences != null) {
             String liquidity = preferences.get("liquidity");
@@ -125,22 +176,23 @@ public class ProductRecommendationService {
     /**
      * 获取候选产品
      */
-    private List<Product> getCandidateProducts(RecommendationStrategy strategy, BigDecimal investAmount) {
+    private List<Product> getCandidateProducts(RecommendationStrategy strategy, BigDecimal investAmount,
+                                               RecommendationMetrics.Recording recording) {
         List<Product> candidates = new ArrayList<>();
 
         // 获取保守型产品
         List<Product> conservativeProducts = getProductsByRiskProfile(
-                User.RiskLevel.CONSERVATIVE, strategy, investAmount);
+                User.RiskLevel.CONSERVATIVE, strategy, investAmount, recording);
         candidates.addAll(conservativeProducts);
 
         // 获取平衡型产品
         List<Product> moderateProducts = getProductsByRiskProfile(
-                User.RiskLevel.MODERATE, strategy, investAmount);
+                User.RiskLevel.MODERATE, strategy, investAmount, recording);
         candidates.addAll(moderateProducts);
 
         // 获取激进型产品
         List<Product> aggressiveProducts = getProductsByRiskProfile(
-                User.RiskLevel.AGGRESSIVE, strategy, investAmount);
+                User.RiskLevel.AGGRESSIVE, strategy, investAmount, recording);
         candidates.addAll(aggressiveProducts);
 
         // 去重并返回
@@ -153,39 +205,65 @@ public class ProductRecommendationService {
      * 根据风险特征获取产品
      */
     private List<Product> getProductsByRiskProfile(User.RiskLevel riskLevel, RecommendationStrategy strategy,
-                                                 BigDecimal investAmount) {
-        return productRepository.findBestProductsByRiskLevel(riskLevel).stream()
-                .filter(product -> {
-                    // 过滤条件
-                    if (product.getSharpeRatio() != null &&
-                        product.getSharpeRatio().compareTo(strategy.getMinSharpeRatio()) < 0) {
-                        return false;
-                    }
-                    if (product.getExpectedVolatility() != null &&
-                        product.getExpectedVolatility().compareTo(strategy.getMaxVolatility()) > 0) {
-                        return false;
-                    }
-                    if (product.getMinimumInvestment() != null &&
-                        investAmount.compareTo(product.getMinimumInvestment()) < 0) {
-                        return false;
-                    }
-                    if (product.getLiquidityScore() != null && strategy.getMinLiquidityScore() != null &&
-                        product.getLiquidityScore() < strategy.getMinLiquidityScore()) {
-                        return false;
-                    }
-                    return true;
-                })
-                .limit(10) // 每个风险等级最多10个产品
-                .collect(Collectors.toList());
+                                                 BigDecimal investAmount, RecommendationMetrics.Recording recording) {
+        // 同一风险等级的并发推荐共享一次候选查询，结果只读
+        List<Product> products = singleFlightExecutor.get("ProductRepository.findBestProductsByRiskLevel", riskLevel, () -> {
+            recording.dbRoundTrip();
+            return productRepository.findBestProductsByRiskLevel(riskLevel);
+        });
+
+        List<Product> accepted = new ArrayList<>();
+        for (Product product : products) {
+            String rule = rejectionRule(product, strategy, investAmount);
+            if (rule == null && accepted.size() >= CANDIDATES_PER_LEVEL) {
+                rule = "per_level_limit";
+            }
+            if (rule != null) {
+                recording.filtered(rule);
+            } else {
+                accepted.add(product);
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * 判断产品是否被过滤，返回命中的过滤规则，未被过滤时返回 null
+     */
+    private String rejectionRule(Product product, RecommendationStrategy strategy, BigDecimal investAmount) {
+        if (product.getSharpeRatio() != null &&
+            product.getSharpeRatio().compareTo(strategy.getMinSharpeRatio()) < 0) {
+            return "min_sharpe_ratio";
+        }
+        if (product.getExpectedVolatility() != null &&
+            product.getExpectedVolatility().compareTo(strategy.getMaxVolatility()) > 0) {
+            return "max_volatility";
+        }
+        if (product.getMinimumInvestment() != null &&
+            investAmount.compareTo(product.getMinimumInvestment()) < 0) {
+            return "minimum_investment";
+        }
+        if (product.getLiquidityScore() != null && strategy.getMinLiquidityScore() != null &&
+            product.getLiquidityScore() < strategy.getMinLiquidityScore()) {
+            return "min_liquidity_score";
+        }
+        return null;
     }
 
     /**
      * 评分和排序产品
      */
-    private List<ScoredProduct> scoreAndRankProducts(List<Product> products, int userScore, User.RiskLevel riskLevel) {
+    private List<ScoredProduct> scoreAndRankProducts(List<Product> products, int userScore, User.RiskLevel riskLevel,
+                                                     RecommendationMetrics.Recording recording) {
+        // 评分汇总一次批量读取
+        Map<Long, ProductRatingSummary> ratingSummaries = productRatingService.getSummaries(
+                products.stream().map(Product::getId).collect(Collectors.toList()));
+        recording.dbRoundTrip();
+
         return products.stream()
                 .map(product -> {
-                    double score = calculateProductScore(product, userScore, riskLevel);
+                    double score = calculateProductScore(product, userScore, riskLevel,
+                            ratingSummaries.get(product.getId()));
                     return new ScoredProduct(product, score);
                 })
                 .sorted((a, b) -> Double.compare(b.getScore(), a.getScore()))
@@ -195,7 +273,8 @@ public class ProductRecommendationService {
     /**
      * 计算产品评分
      */
-    private double calculateProductScore(Product product, int userScore, User.RiskLevel riskLevel) {
+    private double calculateProductScore(Product product, int userScore, User.RiskLevel riskLevel,
+                                         ProductRatingSummary ratingSummary) {
         double score = 0;
 
         // 收益率评分（归一化处理）
@@ -217,9 +296,8 @@ public class ProductRecommendationService {
         }
 
         // 产品评级评分
-        Optional<BigDecimal> rating = productRatingRepository.findAverageRatingByProductId(product.getId());
-        if (rating.isPresent()) {
-            double ratingScore = normalizeValue(rating.get().doubleValue(), 0, 10);
+        if (ratingSummary != null && ratingSummary.getAverageRating() != null) {
+            double ratingScore = normalizeValue(ratingSummary.getAverageRating().doubleValue(), 0, 10);
             score += ratingScore * RATING_WEIGHT;
         }
 
@@ -312,6 +390,45 @@ public class ProductRecommendationService {
                 .build();
     }
 
+    /**
+     * 按风险等级和得分区间的波动率上限在有效前沿上取组合
+     * 前沿按默认大类配比计算，带偏好的请求、含被本次策略过滤的产品或不满足起购金额时返回空
+     */
+    private Optional<PortfolioRecommendation> frontierPortfolio(RecommendationStrategy strategy, BigDecimal totalAmount,
+                                                                Map<String, String> preferences) {
+        if (preferences != null && !preferences.isEmpty()) {
+            return Optional.empty();
+        }
+        Optional<PortfolioOptimizationService.OptimizationResult> lookup = efficientFrontierService.lookup(
+                strategy.getRiskLevel(), strategy.getMaxVolatility().doubleValue());
+        if (lookup.isEmpty()) {
+            return Optional.empty();
+        }
+        PortfolioOptimizationService.OptimizationResult result = lookup.get();
+        List<Product> products = result.getProducts();
+        List<Double> weights = result.getWeights();
+        if (products.isEmpty()
+                || products.stream().anyMatch(product -> rejectionRule(product, strategy, totalAmount) != null)
+                || !portfolioOptimizationService.satisfiesMinimumInvestment(products, weights, totalAmount)) {
+            return Optional.empty();
+        }
+
+        List<PortfolioItem> items = result.roundedAllocations(totalAmount).stream()
+                .map(item -> PortfolioItem.builder()
+                        .product(item.product())
+                        .amount(item.amount())
+                        .percentage(item.percentage())
+                        .build())
+                .collect(Collectors.toList());
+
+        return Optional.of(PortfolioRecommendation.builder()
+                .items(items)
+                .totalAmount(totalAmount)
+                .expectedReturn(BigDecimal.valueOf(result.getExpectedReturn()).setScale(4, RoundingMode.HALF_UP))
+                .expectedRisk(BigDecimal.valueOf(result.getExpectedVolatility()).setScale(2, RoundingMode.HALF_UP))
+                .build());
+    }
+
     /**
      * 分配金额到产品
      */
@@ -370,28 +487,28 @@ public class ProductRecommendationService {
 
     /**
      * 计算组合预期风险
+     * 基于协方差矩阵计算组合波动率 sqrt(wᵀΣw)
      */
     private BigDecimal calculatePortfolioRisk(List<PortfolioItem> items) {
-        // 简化的风险计算（实际应该考虑相关性）
-        BigDecimal totalRisk = BigDecimal.ZERO;
-        BigDecimal totalWeight = BigDecimal.ZERO;
-
-        for (PortfolioItem item : items) {
-            if (item.getProduct().getExpectedVolatility() != null) {
-                BigDecimal weight = item.getAmount();
-                totalRisk = totalRisk.add(
-                        item.getProduct().getExpectedVolatility()
-                                .multiply(weight)
-                );
-                totalWeight = totalWeight.add(weight);
-            }
+        BigDecimal totalAmount = items.stream()
+                .map(PortfolioItem::getAmount)
+                .filter(Objects::nonNull)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (totalAmount.compareTo(BigDecimal.ZERO) <= 0) {
+            return BigDecimal.ZERO;
         }
 
-        if (totalWeight.compareTo(BigDecimal.ZERO) > 0) {
-            return totalRisk.divide(totalWeight, 2, RoundingMode.HALF_UP);
+        List<Product> products = new ArrayList<>(items.size());
+        double[] weights = new double[items.size()];
+        double total = totalAmount.doubleValue();
+        for (int i = 0; i < items.size(); i++) {
+            PortfolioItem item = items.get(i);
+            products.add(item.getProduct());
+            weights[i] = item.getAmount() != null ? item.getAmount().doubleValue() / total : 0;
         }
 
-        return BigDecimal.ZERO;
+        double volatility = productCovarianceService.portfolioVolatility(products, weights);
+        return BigDecimal.valueOf(volatility).setScale(2, RoundingMode.HALF_UP);
     }
 
     /**
@@ -0,0 +1,13 @@
+package com.xingye.bankrisk.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * 一期产品收益写入事件，监听方在事务提交后更新协方差估计
+ *
+ * @param corrected 该日期此前已有收益记录（修正或补录），需全量重建
+ */
+public record ProductReturnsRecordedEvent(LocalDate returnDate, Map<Long, BigDecimal> returns, boolean corrected) {
+}
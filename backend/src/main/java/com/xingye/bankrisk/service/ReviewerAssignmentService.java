@@ -0,0 +1,644 @@
+package com.xingye.bankrisk.service;
+
+import com.xingye.bankrisk.datasource.ReadFromPrimary;
+import com.xingye.bankrisk.entity.User;
+import com.xingye.bankrisk.entity.WorkOrder;
+import com.xingye.bankrisk.entity.WorkOrderEvent;
+import com.xingye.bankrisk.metrics.NoQueryStats;
+import com.xingye.bankrisk.repository.WorkOrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 审核任务自动分配
+ * 内存中维护各审核员的实时负载（在办工单数、近期完成数、在线状态），工单进入待审环节后由调度任务推送给该环节角色的在线审核员：
+ * 高优先级工单分给当前负载最低者，其余工单随机取两人、分给负载较低者（二选一），避免同时到达的工单集中到同一人。
+ * 队列在内存中按优先级和SLA排序，写库只按主键条件更新（处理人未被他人改动时才生效），不在队首行上争用。
+ * 审核员离线时收回系统分配给该审核员的工单；有审核员空闲时从同角色负载最高者处移交一单。手动认领仍然可用，认领结果计入负载
+ */
+@Slf4j
+@Service
+public class ReviewerAssignmentService {
+
+    private static final Map<WorkOrder.WorkOrderStatus, User.UserRole> STAGE_ROLES = Map.of(
+            WorkOrder.WorkOrderStatus.PENDING_JUNIOR, User.UserRole.AUDITOR_JUNIOR,
+            WorkOrder.WorkOrderStatus.PENDING_MID, User.UserRole.AUDITOR_MID,
+            WorkOrder.WorkOrderStatus.PENDING_SENIOR, User.UserRole.AUDITOR_SENIOR,
+            WorkOrder.WorkOrderStatus.PENDING_COMMITTEE, User.UserRole.INVEST_COMMITTEE);
+
+    // 以预期处理人为条件：首次分配为 NULL，移交和收回为原处理人；分配时同时开始认领租约
+    private static final String ASSIGN_SQL =
+            "UPDATE work_orders SET reviewer_id = ?, claim_expires_at = ?, updated_at = ? "
+                    + "WHERE id = ? AND status = ? AND reviewer_id <=> ?";
+
+    // 优先级从高到低，同优先级按SLA截止时间从早到晚
+    private static final Comparator<PendingOrder> DISPATCH_ORDER = Comparator
+            .comparing((PendingOrder order) -> order.priority().ordinal(), Comparator.reverseOrder())
+            .thenComparing(PendingOrder::slaDeadline, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(PendingOrder::workOrderId);
+
+    private final WorkOrderRepository workOrderRepository;
+    private final WorkOrderEventLog workOrderEventLog;
+    private final ClaimLeaseService claimLeaseService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, Counter> moveCounters = new HashMap<>();
+
+    @Value("${workflow.assignment.enabled:true}")
+    private boolean enabled;
+
+    @Value("${workflow.assignment.max-open-per-reviewer:5}")
+    private int maxOpenPerReviewer;
+
+    @Value("${workflow.assignment.offline-after-ms:900000}")
+    private long offlineAfterMillis;
+
+    @Value("${workflow.assignment.dispatch-batch-size:1000}")
+    private int dispatchBatchSize;
+
+    @Value("${workflow.assignment.throughput-half-life-ms:3600000}")
+    private long throughputHalfLifeMillis;
+
+    /**
+     * 保护审核员负载、分配表和待分配队列：事件监听、调度、校准与审核员接口在不同线程上访问
+     */
+    private final ReentrantLock stateLock = new ReentrantLock();
+
+    /**
+     * 串行化调度、再平衡与校准：调度写库在 stateLock 之外进行，校准期间不能有已计划未写库的分配
+     */
+    private final ReentrantLock dispatchLock = new ReentrantLock();
+
+    // 以下由 stateLock 保护
+    private final Map<Long, ReviewerLoad> reviewers = new HashMap<>();
+    private final Map<Long, Assignment> assignments = new HashMap<>();
+    private final Map<WorkOrder.WorkOrderStatus, TreeSet<PendingOrder>> unassigned =
+            new EnumMap<>(WorkOrder.WorkOrderStatus.class);
+    private final Map<Long, PendingOrder> queued = new HashMap<>();
+    // 校准读库期间到达的变更，换入快照后重放；不在校准时为 null
+    private List<WorkOrderTransitionEvent> replayLog;
+
+    public ReviewerAssignmentService(WorkOrderRepository workOrderRepository,
+                                     WorkOrderEventLog workOrderEventLog,
+                                     ClaimLeaseService claimLeaseService,
+                                     ApplicationEventPublisher eventPublisher,
+                                     JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry) {
+        this.workOrderRepository = workOrderRepository;
+        this.workOrderEventLog = workOrderEventLog;
+        this.claimLeaseService = claimLeaseService;
+        this.eventPublisher = eventPublisher;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        for (WorkOrder.WorkOrderStatus status : STAGE_ROLES.keySet()) {
+            unassigned.put(status, new TreeSet<>(DISPATCH_ORDER));
+        }
+        for (String type : List.of("assign", "handover", "release")) {
+            moveCounters.put(type, Counter.builder("workflow.assignment.moves")
+                    .description("自动分配、空闲移交和离线收回的工单数")
+                    .tag("type", type)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("workflow.assignment.unassigned", this, service -> service.withState(service.queued::size))
+                .description("等待自动分配的工单数")
+                .register(meterRegistry);
+        Gauge.builder("workflow.assignment.reviewers.online", this, service -> service.withState(() -> {
+                    long now = System.currentTimeMillis();
+                    return (int) service.reviewers.values().stream().filter(load -> load.isOnline(now)).count();
+                }))
+                .description("当前在线的审核员数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 审核员活动或心跳：标记在线；角色取自令牌（由账号确定的审核角色）
+     */
+    public void touch(Long reviewerId, User.UserRole role) {
+        if (!STAGE_ROLES.containsValue(role)) {
+            return;
+        }
+        stateLock.lock();
+        try {
+            ReviewerLoad load = loadOf(reviewerId, role);
+            load.lastSeen = System.currentTimeMillis();
+            load.offline = false;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * 审核员主动下线：不再接收分配，下次再平衡时收回系统分配给该审核员的工单
+     */
+    public void goOffline(Long reviewerId) {
+        stateLock.lock();
+        try {
+            ReviewerLoad load = reviewers.get(reviewerId);
+            if (load != null) {
+                load.offline = true;
+            }
+        } finally {
+            stateLock.unlock();
+        }
+        log.info("[INFO]ReviewerAssignmentService::goOffline: 审核员下线 - ReviewerID: {}", reviewerId);
+    }
+
+    /**
+     * 从数据库全量校准待审工单的分配情况
+     * 读主库：校准结果会覆盖已提交的增量更新，不能基于有延迟的从库。
+     * 读库前开始缓存变更事件，换入快照后按工单在快照中的状态重放快照未包含的变更；校准期间暂停调度与再平衡，不会有已计划未写库的分配
+     */
+    @ReadFromPrimary
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${workflow.assignment.reconcile-interval-ms:300000}",
+            initialDelayString = "${workflow.assignment.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        dispatchLock.lock();
+        try {
+            stateLock.lock();
+            try {
+                replayLog = new ArrayList<>();
+            } finally {
+                stateLock.unlock();
+            }
+
+            List<Object[]> rows = workOrderRepository.findOpenWorkOrderAssignments(STAGE_ROLES.keySet());
+            long now = System.currentTimeMillis();
+            int replayed;
+
+            stateLock.lock();
+            try {
+                Map<Long, Assignment> previous = new HashMap<>(assignments);
+                assignments.clear();
+                queued.clear();
+                unassigned.values().forEach(TreeSet::clear);
+                reviewers.values().forEach(load -> load.open = 0);
+
+                for (Object[] row : rows) {
+                    PendingOrder order = new PendingOrder((Long) row[0], (WorkOrder.WorkOrderStatus) row[1],
+                            (WorkOrder.Priority) row[2], (LocalDateTime) row[4]);
+                    Long reviewerId = (Long) row[3];
+                    if (reviewerId == null) {
+                        enqueue(order);
+                        continue;
+                    }
+                    // 只有内存中记录为系统分配的才可移交或收回；重启后的已有分配一律视为手动认领
+                    Assignment known = previous.get(order.workOrderId());
+                    boolean automatic = known != null && known.automatic() && reviewerId.equals(known.reviewerId());
+                    track(new Assignment(order, reviewerId, automatic, automatic ? known.assignedAt() : now));
+                }
+
+                replayed = 0;
+                for (WorkOrderTransitionEvent event : replayLog) {
+                    WorkOrder.WorkOrderStatus expected = event.isStatusChanged() ? event.previousStatus() : event.status();
+                    if (trackedStatus(event.workOrderId()) == expected) {
+                        transition(event, now, false);
+                        replayed++;
+                    }
+                }
+            } finally {
+                stateLock.unlock();
+            }
+            log.info("[INFO]ReviewerAssignmentService::reconcile: 分配状态校准完成 - Open: {}, Replayed: {}",
+                    rows.size(), replayed);
+        } finally {
+            stateLock.lock();
+            try {
+                replayLog = null;
+            } finally {
+                stateLock.unlock();
+            }
+            dispatchLock.unlock();
+        }
+    }
+
+    /**
+     * 工单变更提交后更新负载和待分配队列
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @NoQueryStats
+    public void onWorkOrderTransition(WorkOrderTransitionEvent event) {
+        long now = System.currentTimeMillis();
+
+        stateLock.lock();
+        try {
+            if (replayLog != null) {
+                replayLog.add(event);
+            }
+            transition(event, now, true);
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * 把待分配工单推送给在线审核员
+     */
+    @Scheduled(fixedDelayString = "${workflow.assignment.dispatch-interval-ms:200}")
+    public void dispatch() {
+        if (!enabled || !dispatchLock.tryLock()) {
+            return;
+        }
+        try {
+            apply(planDispatch(), "assign");
+        } catch (RuntimeException e) {
+            log.error("[ERROR]ReviewerAssignmentService::dispatch: 自动分配失败", e);
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    /**
+     * 再平衡：收回离线审核员的系统分配，向空闲审核员移交工单
+     */
+    @Scheduled(fixedDelayString = "${workflow.assignment.rebalance-interval-ms:30000}")
+    public void rebalance() {
+        if (!enabled || !dispatchLock.tryLock()) {
+            return;
+        }
+        try {
+            List<Move> releases = new ArrayList<>();
+            List<Move> handovers = new ArrayList<>();
+            planRebalance(releases, handovers);
+            apply(releases, "release");
+            apply(handovers, "handover");
+            if (!releases.isEmpty() || !handovers.isEmpty()) {
+                log.info("[INFO]ReviewerAssignmentService::rebalance: 再平衡完成 - Released: {}, HandedOver: {}",
+                        releases.size(), handovers.size());
+            }
+        } catch (RuntimeException e) {
+            log.error("[ERROR]ReviewerAssignmentService::rebalance: 再平衡失败", e);
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    // 私有辅助方法
+
+    /**
+     * 在 stateLock 下应用一次工单变更；重放时（live 为 false）不重复记录完成数和在线时间，实时处理时已记录
+     */
+    private void transition(WorkOrderTransitionEvent event, long now, boolean live) {
+        PendingOrder waiting = queued.remove(event.workOrderId());
+        if (waiting != null) {
+            unassigned.get(waiting.status()).remove(waiting);
+        }
+
+        Assignment current = assignments.get(event.workOrderId());
+        if (current != null && !event.isStatusChanged() && current.reviewerId().equals(event.reviewerId())) {
+            // 本服务自己的分配，已计入
+            return;
+        }
+        if (current != null) {
+            untrack(current);
+            if (live && event.isStatusChanged()) {
+                reviewers.get(current.reviewerId()).recordCompletion(now);
+            }
+        }
+        if (!STAGE_ROLES.containsKey(event.status())) {
+            return;
+        }
+
+        PendingOrder order = new PendingOrder(event.workOrderId(), event.status(), event.priority(), event.slaDeadline());
+        if (event.reviewerId() == null) {
+            enqueue(order);
+        } else {
+            track(new Assignment(order, event.reviewerId(), false, now));
+            if (live) {
+                // 手动认领说明审核员在线
+                loadOf(event.reviewerId(), STAGE_ROLES.get(event.status())).lastSeen = now;
+            }
+        }
+    }
+
+    private WorkOrder.WorkOrderStatus trackedStatus(Long workOrderId) {
+        PendingOrder waiting = queued.get(workOrderId);
+        if (waiting != null) {
+            return waiting.status();
+        }
+        Assignment current = assignments.get(workOrderId);
+        return current != null ? current.order().status() : null;
+    }
+
+    private List<Move> planDispatch() {
+        long now = System.currentTimeMillis();
+        List<Move> moves = new ArrayList<>();
+
+        stateLock.lock();
+        try {
+            for (Map.Entry<WorkOrder.WorkOrderStatus, TreeSet<PendingOrder>> entry : unassigned.entrySet()) {
+                TreeSet<PendingOrder> queue = entry.getValue();
+                if (queue.isEmpty()) {
+                    continue;
+                }
+                List<ReviewerLoad> candidates = availableReviewers(STAGE_ROLES.get(entry.getKey()), now);
+                while (!queue.isEmpty() && !candidates.isEmpty() && moves.size() < dispatchBatchSize) {
+                    PendingOrder order = queue.pollFirst();
+                    queued.remove(order.workOrderId());
+
+                    ReviewerLoad reviewer = select(candidates, order.priority(), now);
+                    Assignment planned = new Assignment(order, reviewer.reviewerId, true, now);
+                    track(planned);
+                    moves.add(new Move(order, null, null, planned));
+                    if (reviewer.open >= maxOpenPerReviewer) {
+                        candidates.remove(reviewer);
+                    }
+                }
+            }
+        } finally {
+            stateLock.unlock();
+        }
+        return moves;
+    }
+
+    private void planRebalance(List<Move> releases, List<Move> handovers) {
+        long now = System.currentTimeMillis();
+
+        stateLock.lock();
+        try {
+            Map<Long, List<Assignment>> automaticByReviewer = new HashMap<>();
+            for (Assignment assignment : List.copyOf(assignments.values())) {
+                if (!assignment.automatic()) {
+                    continue;
+                }
+                if (!reviewers.get(assignment.reviewerId()).isOnline(now)) {
+                    untrack(assignment);
+                    releases.add(new Move(assignment.order(), assignment.reviewerId(), assignment, null));
+                } else {
+                    automaticByReviewer.computeIfAbsent(assignment.reviewerId(), id -> new ArrayList<>()).add(assignment);
+                }
+            }
+
+            // 空闲审核员从同角色在办最多的人处接手其最近被分配的一单
+            for (ReviewerLoad idle : List.copyOf(reviewers.values())) {
+                if (idle.open > 0 || !idle.isOnline(now)) {
+                    continue;
+                }
+                ReviewerLoad donor = null;
+                for (ReviewerLoad peer : reviewers.values()) {
+                    if (peer.role == idle.role && peer.open >= 2
+                            && automaticByReviewer.containsKey(peer.reviewerId)
+                            && (donor == null || peer.open > donor.open)) {
+                        donor = peer;
+                    }
+                }
+                if (donor == null) {
+                    continue;
+                }
+                List<Assignment> donated = automaticByReviewer.get(donor.reviewerId);
+                Assignment previous = donated.stream().max(Comparator.comparingLong(Assignment::assignedAt)).orElseThrow();
+                donated.remove(previous);
+                if (donated.isEmpty()) {
+                    automaticByReviewer.remove(donor.reviewerId);
+                }
+
+                untrack(previous);
+                Assignment planned = new Assignment(previous.order(), idle.reviewerId, true, now);
+                track(planned);
+                handovers.add(new Move(previous.order(), previous.reviewerId(), previous, planned));
+            }
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * 批量按主键条件写库，成功的追加工单事件并发布变更事件；条件不满足的说明工单已被并发修改，以该修改的事件为准
+     */
+    private void apply(List<Move> moves, String type) {
+        if (moves.isEmpty()) {
+            return;
+        }
+        List<Move> conflicts = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                conflicts.clear();
+                LocalDateTime now = LocalDateTime.now();
+                Timestamp leaseExpiry = Timestamp.valueOf(claimLeaseService.leaseExpiry(now));
+                int[][] counts = jdbcTemplate.batchUpdate(ASSIGN_SQL, moves, moves.size(), (statement, move) -> {
+                    statement.setObject(1, move.toReviewerId(), Types.BIGINT);
+                    statement.setTimestamp(2, move.toReviewerId() != null ? leaseExpiry : null);
+                    statement.setTimestamp(3, Timestamp.valueOf(now));
+                    statement.setLong(4, move.order().workOrderId());
+                    statement.setString(5, move.order().status().name());
+                    statement.setObject(6, move.fromReviewerId(), Types.BIGINT);
+                });
+
+                int index = 0;
+                for (int[] batch : counts) {
+                    for (int count : batch) {
+                        Move move = moves.get(index++);
+                        if (count == 0) {
+                            conflicts.add(move);
+                        } else {
+                            record(move, now);
+                        }
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            revert(moves, true);
+            throw e;
+        }
+        revert(conflicts, false);
+        moveCounters.get(type).increment(moves.size() - conflicts.size());
+    }
+
+    private void record(Move move, LocalDateTime now) {
+        PendingOrder order = move.order();
+        workOrderEventLog.append(WorkOrderEvent.builder()
+                .workOrderId(order.workOrderId())
+                .eventType(WorkOrderEvent.EventType.REASSIGN)
+                .stage(WorkOrder.stageOf(order.status()))
+                .fromStatus(order.status())
+                .toStatus(order.status())
+                .reviewerId(move.toReviewerId())
+                .occurredAt(now)
+                .build());
+        eventPublisher.publishEvent(new WorkOrderTransitionEvent(order.workOrderId(), order.status(), order.status(),
+                order.priority(), move.toReviewerId(), order.slaDeadline(), now));
+    }
+
+    /**
+     * 撤销未生效的内存变更；restore 为 true 时（写库失败）恢复原状态，否则留给并发修改的事件更新
+     */
+    private void revert(List<Move> moves, boolean restore) {
+        if (moves.isEmpty()) {
+            return;
+        }
+        stateLock.lock();
+        try {
+            for (Move move : moves) {
+                if (assignments.get(move.order().workOrderId()) != move.planned()) {
+                    continue;
+                }
+                if (move.planned() != null) {
+                    untrack(move.planned());
+                }
+                if (!restore) {
+                    continue;
+                }
+                if (move.previous() != null) {
+                    track(move.previous());
+                } else {
+                    enqueue(move.order());
+                }
+            }
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private ReviewerLoad select(List<ReviewerLoad> candidates, WorkOrder.Priority priority, long now) {
+        if (priority.compareTo(WorkOrder.Priority.HIGH) >= 0 || candidates.size() <= 2) {
+            ReviewerLoad best = candidates.get(0);
+            for (ReviewerLoad candidate : candidates) {
+                if (candidate.score(now) < best.score(now)) {
+                    best = candidate;
+                }
+            }
+            return best;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        ReviewerLoad a = candidates.get(first);
+        ReviewerLoad b = candidates.get(second);
+        return a.score(now) <= b.score(now) ? a : b;
+    }
+
+    private List<ReviewerLoad> availableReviewers(User.UserRole role, long now) {
+        List<ReviewerLoad> available = new ArrayList<>();
+        for (ReviewerLoad load : reviewers.values()) {
+            if (load.role == role && load.isOnline(now) && load.open < maxOpenPerReviewer) {
+                available.add(load);
+            }
+        }
+        return available;
+    }
+
+    private void enqueue(PendingOrder order) {
+        if (queued.putIfAbsent(order.workOrderId(), order) == null) {
+            unassigned.get(order.status()).add(order);
+        }
+    }
+
+    private void track(Assignment assignment) {
+        assignments.put(assignment.order().workOrderId(), assignment);
+        loadOf(assignment.reviewerId(), STAGE_ROLES.get(assignment.order().status())).open++;
+    }
+
+    private void untrack(Assignment assignment) {
+        assignments.remove(assignment.order().workOrderId());
+        reviewers.get(assignment.reviewerId()).open--;
+    }
+
+    private ReviewerLoad loadOf(Long reviewerId, User.UserRole role) {
+        // 首次出现（认领或校准发现）时按当前时刻计在线，超过离线时限无活动后才视为离线
+        return reviewers.computeIfAbsent(reviewerId, id -> new ReviewerLoad(id, role, System.currentTimeMillis()));
+    }
+
+    private <T extends Number> double withState(Supplier<T> reader) {
+        stateLock.lock();
+        try {
+            return reader.get().doubleValue();
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private record PendingOrder(Long workOrderId, WorkOrder.WorkOrderStatus status,
+                                WorkOrder.Priority priority, LocalDateTime slaDeadline) {
+    }
+
+    /**
+     * @param automatic 是否系统分配；只有系统分配的工单会被移交或收回
+     */
+    private record Assignment(PendingOrder order, Long reviewerId, boolean automatic, long assignedAt) {
+    }
+
+    /**
+     * 一次处理人变更：previous 为空表示首次分配，planned 为空表示收回
+     */
+    private record Move(PendingOrder order, Long fromReviewerId, Assignment previous, Assignment planned) {
+
+        Long toReviewerId() {
+            return planned != null ? planned.reviewerId() : null;
+        }
+    }
+
+    /**
+     * 审核员实时负载
+     */
+    private final class ReviewerLoad {
+        private final Long reviewerId;
+        private final User.UserRole role;
+        private int open;
+        private long lastSeen;
+        private boolean offline;
+
+        // 按半衰期指数衰减的完成数
+        private double recentCompletions;
+        private long decayedAt;
+
+        private ReviewerLoad(Long reviewerId, User.UserRole role, long now) {
+            this.reviewerId = reviewerId;
+            this.role = role;
+            this.lastSeen = now;
+            this.decayedAt = now;
+        }
+
+        boolean isOnline(long now) {
+            return !offline && now - lastSeen <= offlineAfterMillis;
+        }
+
+        void recordCompletion(long now) {
+            decay(now);
+            recentCompletions += 1;
+        }
+
+        /**
+         * 预计清空在办工单（含新分配的一单）所需的相对时间，越小越空闲
+         */
+        double score(long now) {
+            decay(now);
+            return (open + 1) / (1 + recentCompletions);
+        }
+
+        private void decay(long now) {
+            if (now > decayedAt) {
+                recentCompletions *= Math.pow(0.5, (double) (now - decayedAt) / throughputHalfLifeMillis);
+                decayedAt = now;
+            }
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.xingye.bankrisk.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xingye.bankrisk.concurrent.SingleFlight;
 import com.xingye.bankrisk.entity.Questionnaire;
 import com.xingye.bankrisk.entity.User;
 import com.xingye.bankrisk.repository.QuestionnaireRepository;
@@ -28,7 +28,6 @@ public class RiskAssessmentService {
 
     private final QuestionnaireRepository questionnaireRepository;
     private final UserRepository userRepository;
-    private final ObjectMapper objectMapper;
 
     // 风险评分权重配置
     private static final double AGE_WEIGHT = 0.15;
@@ -70,7 +69,7 @@ public class RiskAssessmentService {
                 .yearForInvest(extractYearForInvestFromAnswers(answers))
                 .score(riskScore)
                 .status(riskLevel)
-                .answers(writeValueAsStringSafely(answers))
+                .answers(answers)
                 .scoreBreakdown(createScoreBreakdown(user, answers, riskScore))
                 .build();
 
@@ -159,15 +158,16 @@ public class RiskAssessmentService {
     /**
      * 获取用户最新评估结果
      */
+    @SingleFlight
     public Optional<Questionnaire> getLatestAssessment(Long userId) {
         return questionnaireRepository.findLatestByUserId(userId);
     }
 
     /**
-     * 获取用户评估历史
+     * 获取用户评估历史（包含已归档的问卷）
      */
     public List<Questionnaire> getAssessmentHistory(Long userId) {
-        return questionnaireRepository.findByUserIdOrderByCreatedAtDesc(userId);
+        return questionnaireRepository.findByUserIdIncludingArchive(userId);
     }
 
     /**
@@ -184,7 +184,7 @@ public class RiskAssessmentService {
                 .orElseThrow(() -> new RuntimeException("用户不存在: " + questionnaire.getUserId()));
 
         // 重新计算评分
-        Map<String, String> answers = objectMapper.convertValue(questionnaire.getAnswers(), Map.class);
+        Map<String, String> answers = questionnaire.getAnswers() != null ? questionnaire.getAnswers() : Map.of();
         int newScore = calculateRiskScore(user, answers);
         User.RiskLevel newRiskLevel = determineRiskLevel(newScore);
 
@@ -269,7 +269,7 @@ public class RiskAssessmentService {
         return questionCount > 0 ? score / questionCount * 20 : 50; // 标准化到0-100分
     }
 
-    private String createScoreBreakdown(User user, Map<String, String> answers, int totalScore) {
+    private Map<String, Object> createScoreBreakdown(User user, Map<String, String> answers, int totalScore) {
         Map<String, Object> breakdown = new HashMap<>();
         breakdown.put("total_score", totalScore);
         breakdown.put("risk_level", determineRiskLevel(totalScore).toString());
@@ -295,23 +295,6 @@ public class RiskAssessmentService {
         }
 
         breakdown.put("score_details", scoreDetails);
-        try {
-            return objectMapper.writeValueAsString(breakdown);
-        } catch (Exception e) {
-            log.error("[ERROR]RiskAssessmentService::createScoreBreakdown: JSON序列化失败", e);
-            return "{}";
-        }
-    }
-
-    /**
-     * 安全地将对象转换为JSON字符串
-     */
-    private String writeValueAsStringSafely(Object object) {
-        try {
-            return objectMapper.writeValueAsString(object);
-        } catch (Exception e) {
-            log.error("[ERROR]RiskAssessmentService::writeValueAsStringSafely: JSON序列化失败", e);
-            return "{}";
-        }
+        return breakdown;
     }
 }
@@ -0,0 +1,32 @@
+package com.xingye.bankrisk.service;
+
+import com.xingye.bankrisk.entity.WorkOrder;
+
+import java.time.LocalDateTime;
+
+/**
+ * 工单变更事件，在工单创建、认领和状态推进时发布，监听方在事务提交后处理
+ *
+ * @param previousStatus 变更前状态，新建工单为 null；认领时与 status 相同
+ */
+public record WorkOrderTransitionEvent(Long workOrderId,
+                                       WorkOrder.WorkOrderStatus previousStatus,
+                                       WorkOrder.WorkOrderStatus status,
+                                       WorkOrder.Priority priority,
+                                       Long reviewerId,
+                                       LocalDateTime slaDeadline,
+                                       LocalDateTime occurredAt) {
+
+    public static WorkOrderTransitionEvent of(WorkOrder workOrder, WorkOrder.WorkOrderStatus previousStatus) {
+        return new WorkOrderTransitionEvent(workOrder.getId(), previousStatus, workOrder.getStatus(),
+                workOrder.getPriority(), workOrder.getReviewerId(), workOrder.getSlaDeadline(), LocalDateTime.now());
+    }
+
+    public boolean isCreated() {
+        return previousStatus == null;
+    }
+
+    public boolean isStatusChanged() {
+        return previousStatus != status;
+    }
+}
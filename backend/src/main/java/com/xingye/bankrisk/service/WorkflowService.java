@@ -1,20 +1,39 @@
 package com.xingye.bankrisk.service;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.xingye.bankrisk.datasource.ReadFromPrimary;
 import com.xingye.bankrisk.entity.*;
 import com.xingye.bankrisk.repository.UserRepository;
+import com.xingye.bankrisk.repository.WorkOrderEventRepository;
 import com.xingye.bankrisk.repository.WorkOrderRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * 工作流服务类
- * 管理多级审核流程
+ * 管理多级审核流程；工单只保存当前状态，每次变更追加一条工单事件（WorkOrderEventLog），审核历史由事件回放得到
  */
 @Slf4j
 @Service
@@ -22,9 +41,27 @@ import java.util.Optional;
 @Transactional(readOnly = true)
 public class WorkflowService {
 
+    // 以读到的状态为条件，并且只处理未被他人认领（或认领已到期）的工单：期间被推进或认领的工单不受影响。
+    // updated_at 由实体的 @PreUpdate 维护，表上没有 ON UPDATE，直接更新时须显式设置
+    private static final String BULK_ADVANCE_SQL =
+            "UPDATE work_orders SET status = ?, reviewer_id = NULL, claim_expires_at = NULL, sla_deadline = ?, updated_at = ? "
+                    + "WHERE id = ? AND status = ? AND (reviewer_id IS NULL OR reviewer_id = ? OR claim_expires_at < ?)";
+
     private final WorkOrderRepository workOrderRepository;
+    private final WorkOrderEventRepository workOrderEventRepository;
+    private final WorkOrderEventLog workOrderEventLog;
+    private final ClaimLeaseService claimLeaseService;
     private final UserRepository userRepository;
     private final PortfolioGenerationService portfolioGenerationService;
+    private final AuditDashboardService auditDashboardService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${workflow.bulk.max-items:100}")
+    private int bulkMaxItems;
 
     /**
      * 创建工单
@@ -43,6 +80,8 @@ public class WorkflowService {
                 .build();
 
         WorkOrder savedWorkOrder = workOrderRepository.save(workOrder);
+        appendEvent(savedWorkOrder, WorkOrderEvent.EventType.CREATE, savedWorkOrder.getCurrentStage(), null, customerId, null);
+        eventPublisher.publishEvent(WorkOrderTransitionEvent.of(savedWorkOrder, null));
 
         log.info("[INFO]WorkflowService::createWorkOrder: 工单创建成功 - ID: {}", savedWorkOrder.getId());
         return savedWorkOrder;
@@ -60,22 +99,22 @@ public class WorkflowService {
                 .orElseThrow(() -> new RuntimeException("工单不存在: " + workOrderId));
 
         WorkOrder.WorkOrderStatus currentStatus = workOrder.getStatus();
+        WorkOrder.WorkflowStage currentStage = workOrder.getCurrentStage();
         WorkOrder.WorkOrderStatus nextStatus = determineNextStatus(currentStatus, decision);
 
-        // 记录审核意见
-        recordReviewComments(workOrder, reviewerId, currentStatus, comments);
-
         // 更新工单状态
         workOrder.setStatus(nextStatus);
         workOrder.setReviewerId(null); // 清空当前处理人
+        workOrder.setClaimExpiresAt(null);
         workOrder.setSlaDeadline(calculateSLADeadline(nextStatus));
 
-        // 如果流程结束，生成投资组合
-        if (isWorkflowCompleted(nextStatus)) {
-            generateFinalPortfolio(workOrder);
-        }
-
+        // 流程通过后的投资组合在事务提交后生成（见 onWorkOrderTransition）
         WorkOrder savedWorkOrder = workOrderRepository.save(workOrder);
+        // 记录审核意见
+        appendEvent(savedWorkOrder,
+                "APPROVE".equals(decision) ? WorkOrderEvent.EventType.APPROVE : WorkOrderEvent.EventType.REJECT,
+                currentStage, currentStatus, reviewerId, comments);
+        eventPublisher.publishEvent(WorkOrderTransitionEvent.of(savedWorkOrder, currentStatus));
 
         log.info("[INFO]WorkflowService::advanceWorkflow: 工作流推进完成 - ID: {}, From: {}, To: {}",
                 workOrderId, currentStatus, nextStatus);
@@ -92,17 +131,156 @@ public class WorkflowService {
         WorkOrder workOrder = workOrderRepository.findById(workOrderId)
                 .orElseThrow(() -> new RuntimeException("工单不存在: " + workOrderId));
 
-        if (workOrder.getReviewerId() != null) {
+        // 租约已到期、尚未被后台释放的认领可直接接手
+        LocalDateTime now = LocalDateTime.now();
+        if (workOrder.getReviewerId() != null && !claimLeaseService.isExpired(workOrder, now)) {
             throw new RuntimeException("工单已被其他审核员认领");
         }
 
         workOrder.setReviewerId(reviewerId);
+        workOrder.setClaimExpiresAt(claimLeaseService.leaseExpiry(now));
         WorkOrder savedWorkOrder = workOrderRepository.save(workOrder);
+        appendEvent(savedWorkOrder, WorkOrderEvent.EventType.CLAIM,
+                savedWorkOrder.getCurrentStage(), savedWorkOrder.getStatus(), reviewerId, null);
+        eventPublisher.publishEvent(WorkOrderTransitionEvent.of(savedWorkOrder, savedWorkOrder.getStatus()));
 
         log.info("[INFO]WorkflowService::claimWorkOrder: 审核任务认领成功 - ID: {}, ReviewerID: {}", workOrderId, reviewerId);
         return savedWorkOrder;
     }
 
+    /**
+     * 批量审核
+     * 同一审核决定和意见作用于多个工单：一次查询载入、按状态各校验一次权限、一次批量更新，事件随事务一次批量写入。
+     * 逐项返回结果；不存在、无权限、已被他人认领或期间状态已变更的工单跳过，不影响其余工单
+     */
+    @Transactional
+    public List<BulkDecisionResult> bulkAdvanceWorkflow(Long reviewerId, List<Long> workOrderIds,
+                                                        String decision, String comments) {
+        if (!"APPROVE".equals(decision) && !"REJECT".equals(decision)) {
+            throw new RuntimeException("无效的审核决定: " + decision);
+        }
+        List<Long> ids = workOrderIds == null ? List.of()
+                : workOrderIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) {
+            throw new RuntimeException("工单列表不能为空");
+        }
+        if (ids.size() > bulkMaxItems) {
+            throw new RuntimeException("单次批量审核的工单数不能超过: " + bulkMaxItems);
+        }
+        log.info("[INFO]WorkflowService::bulkAdvanceWorkflow: 批量审核 - ReviewerID: {}, Decision: {}, Count: {}",
+                reviewerId, decision, ids.size());
+
+        Map<Long, WorkOrder> workOrders = workOrderRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(WorkOrder::getId, Function.identity()));
+        Map<WorkOrder.WorkOrderStatus, Boolean> permissions = new EnumMap<>(WorkOrder.WorkOrderStatus.class);
+        LocalDateTime now = LocalDateTime.now();
+
+        Map<Long, BulkDecisionResult> results = new LinkedHashMap<>();
+        List<PendingAdvance> advances = new ArrayList<>();
+        for (Long id : ids) {
+            WorkOrder workOrder = workOrders.get(id);
+            String failure = null;
+            if (workOrder == null) {
+                failure = "工单不存在";
+            } else if (workOrder.getCurrentStage() == null) {
+                failure = "工单不在待审核状态";
+            } else if (!permissions.computeIfAbsent(workOrder.getStatus(), status -> hasReviewPermission(reviewerId, status))) {
+                failure = "无权审核该环节";
+            } else if (workOrder.getReviewerId() != null && !workOrder.getReviewerId().equals(reviewerId)
+                    && !claimLeaseService.isExpired(workOrder, now)) {
+                failure = "工单已被其他审核员认领";
+            }
+
+            if (failure != null) {
+                results.put(id, BulkDecisionResult.builder()
+                        .workOrderId(id)
+                        .success(false)
+                        .fromStatus(workOrder != null ? workOrder.getStatus() : null)
+                        .message(failure)
+                        .build());
+            } else {
+                WorkOrder.WorkOrderStatus nextStatus = determineNextStatus(workOrder.getStatus(), decision);
+                advances.add(new PendingAdvance(workOrder, nextStatus, calculateSLADeadline(nextStatus)));
+            }
+        }
+
+        if (!advances.isEmpty()) {
+            int[][] counts = jdbcTemplate.batchUpdate(BULK_ADVANCE_SQL, advances, advances.size(), (statement, advance) -> {
+                statement.setString(1, advance.nextStatus().name());
+                statement.setTimestamp(2, Timestamp.valueOf(advance.slaDeadline()));
+                statement.setTimestamp(3, Timestamp.valueOf(now));
+                statement.setLong(4, advance.workOrder().getId());
+                statement.setString(5, advance.workOrder().getStatus().name());
+                statement.setLong(6, reviewerId);
+                statement.setTimestamp(7, Timestamp.valueOf(now));
+            });
+            // 持久化上下文中的工单仍是更新前的状态，移出上下文：本事务后续读取会重新查询，下面只用其旧状态生成事件
+            workOrders.values().forEach(entityManager::detach);
+
+            WorkOrderEvent.EventType eventType = "APPROVE".equals(decision)
+                    ? WorkOrderEvent.EventType.APPROVE : WorkOrderEvent.EventType.REJECT;
+            int index = 0;
+            for (int[] batch : counts) {
+                for (int count : batch) {
+                    PendingAdvance advance = advances.get(index++);
+                    WorkOrder workOrder = advance.workOrder();
+                    if (count == 0) {
+                        results.put(workOrder.getId(), BulkDecisionResult.builder()
+                                .workOrderId(workOrder.getId())
+                                .success(false)
+                                .fromStatus(workOrder.getStatus())
+                                .message("工单状态已变更，请刷新后重试")
+                                .build());
+                        continue;
+                    }
+
+                    // 记录审核意见；同一事务的事件在提交前一次写入
+                    workOrderEventLog.append(WorkOrderEvent.builder()
+                            .workOrderId(workOrder.getId())
+                            .eventType(eventType)
+                            .stage(workOrder.getCurrentStage())
+                            .fromStatus(workOrder.getStatus())
+                            .toStatus(advance.nextStatus())
+                            .actorId(reviewerId)
+                            .comment(comments)
+                            .occurredAt(now)
+                            .build());
+                    eventPublisher.publishEvent(new WorkOrderTransitionEvent(workOrder.getId(), workOrder.getStatus(),
+                            advance.nextStatus(), workOrder.getPriority(), null, advance.slaDeadline(), now));
+
+                    results.put(workOrder.getId(), BulkDecisionResult.builder()
+                            .workOrderId(workOrder.getId())
+                            .success(true)
+                            .fromStatus(workOrder.getStatus())
+                            .toStatus(advance.nextStatus())
+                            .build());
+                }
+            }
+        }
+
+        log.info("[INFO]WorkflowService::bulkAdvanceWorkflow: 批量审核完成 - ReviewerID: {}, Succeeded: {}, Failed: {}",
+                reviewerId, results.values().stream().filter(BulkDecisionResult::isSuccess).count(),
+                results.values().stream().filter(result -> !result.isSuccess()).count());
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * 工单终审通过后生成投资组合
+     * 在审核事务提交后异步执行，每个工单单独事务：生成失败只记录日志，不影响审核结果，也不影响同批其他工单。
+     * 刚提交的工单读主库，避免从库延迟读不到
+     */
+    @Async
+    @ReadFromPrimary
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void onWorkOrderTransition(WorkOrderTransitionEvent event) {
+        if (event.status() != WorkOrder.WorkOrderStatus.APPROVED || !event.isStatusChanged()) {
+            return;
+        }
+        workOrderRepository.findById(event.workOrderId())
+                .ifPresent(workOrder -> generateFinalPortfolio(workOrder.getId(), workOrder.getCustomerId()));
+    }
+
     /**
      * 获取待审核工单列表
      */
@@ -124,10 +302,46 @@ public class WorkflowService {
     }
 
     /**
-     * 获取工单详情（包含工作流历史）
+     * 获取工单详情（包含工作流历史）；已归档的工单从归档表读取，只读
      */
     public Optional<WorkOrder> getWorkOrderDetail(Long workOrderId) {
-        return workOrderRepository.findById(workOrderId);
+        return workOrderRepository.findByIdIncludingArchive(workOrderId);
+    }
+
+    /**
+     * 回放工单事件，得到审核历史（工单已归档时仍可查询）
+     */
+    public WorkOrderHistory getWorkOrderHistory(Long workOrderId) {
+        List<WorkOrderEvent> events = workOrderEventRepository.findByWorkOrderIdOrderByIdAsc(workOrderId);
+        if (events.isEmpty()) {
+            throw new RuntimeException("工单不存在: " + workOrderId);
+        }
+
+        WorkOrder.WorkOrderStatus status = null;
+        Long reviewerId = null;
+        List<StageReview> reviews = new ArrayList<>();
+        for (WorkOrderEvent event : events) {
+            status = event.getToStatus();
+            reviewerId = event.getReviewerId();
+            if (event.getEventType() == WorkOrderEvent.EventType.APPROVE
+                    || event.getEventType() == WorkOrderEvent.EventType.REJECT) {
+                reviews.add(StageReview.builder()
+                        .stage(event.getStage())
+                        .decision(event.getEventType())
+                        .reviewerId(event.getActorId())
+                        .comment(event.getComment())
+                        .commitTime(event.getOccurredAt())
+                        .build());
+            }
+        }
+
+        return WorkOrderHistory.builder()
+                .workOrderId(workOrderId)
+                .status(status)
+                .reviewerId(reviewerId)
+                .reviews(reviews)
+                .events(events)
+                .build();
     }
 
     /**
@@ -141,7 +355,7 @@ public class WorkflowService {
      * 统计工作流状态
      */
     public List<Object[]> getWorkflowStatistics() {
-        return workOrderRepository.countWorkOrdersByStatus();
+        return auditDashboardService.getStatusCounts();
     }
 
     // 私有辅助方法
@@ -209,51 +423,27 @@ public class WorkflowService {
         };
     }
 
-    private void recordReviewComments(WorkOrder workOrder, Long reviewerId,
-                                    WorkOrder.WorkOrderStatus status, String comments) {
-        LocalDateTime now = LocalDateTime.now();
-
-        switch (status) {
-            case PENDING_JUNIOR -> {
-                workOrder.setJuniorReviewerId(reviewerId);
-                workOrder.setJuniorComment(comments);
-                workOrder.setJuniorCommitTime(now);
-            }
-            case PENDING_MID -> {
-                workOrder.setMidReviewerId(reviewerId);
-                workOrder.setMidComment(comments);
-                workOrder.setMidCommitTime(now);
-            }
-            case PENDING_SENIOR -> {
-                workOrder.setSeniorReviewerId(reviewerId);
-                workOrder.setSeniorComment(comments);
-                workOrder.setSeniorCommitTime(now);
-            }
-            case PENDING_COMMITTEE -> {
-                workOrder.setCommitteeReviewerId(reviewerId);
-                workOrder.setCommitteeComment(comments);
-                workOrder.setCommitteeCommitTime(now);
-            }
-        }
-    }
-
-    private boolean isWorkflowCompleted(WorkOrder.WorkOrderStatus status) {
-        return status == WorkOrder.WorkOrderStatus.APPROVED ||
-               status == WorkOrder.WorkOrderStatus.REJECTED;
+    private void appendEvent(WorkOrder workOrder, WorkOrderEvent.EventType type, WorkOrder.WorkflowStage stage,
+                             WorkOrder.WorkOrderStatus fromStatus, Long actorId, String comment) {
+        workOrderEventLog.append(WorkOrderEvent.builder()
+                .workOrderId(workOrder.getId())
+                .eventType(type)
+                .stage(stage)
+                .fromStatus(fromStatus)
+                .toStatus(workOrder.getStatus())
+                .actorId(actorId)
+                .reviewerId(workOrder.getReviewerId())
+                .comment(comment)
+                .occurredAt(LocalDateTime.now())
+                .build());
     }
 
-    private void generateFinalPortfolio(WorkOrder workOrder) {
-        if (workOrder.getStatus() == WorkOrder.WorkOrderStatus.APPROVED) {
-            try {
-                portfolioGenerationService.generatePortfolio(
-                        workOrder.getCustomerId(),
-                        workOrder.getCustomerId(),
-                        workOrder.getId()
-                );
-                log.info("[INFO]WorkflowService::generateFinalPortfolio: 投资组合生成成功 - WorkOrderID: {}", workOrder.getId());
-            } catch (Exception e) {
-                log.error("[ERROR]WorkflowService::generateFinalPortfolio: 投资组合生成失败 - WorkOrderID: {}", workOrder.getId(), e);
-            }
+    private void generateFinalPortfolio(Long workOrderId, Long customerId) {
+        try {
+            portfolioGenerationService.generatePortfolio(customerId, customerId, workOrderId);
+            log.info("[INFO]WorkflowService::generateFinalPortfolio: 投资组合生成成功 - WorkOrderID: {}", workOrderId);
+        } catch (Exception e) {
+            log.error("[ERROR]WorkflowService::generateFinalPortfolio: 投资组合生成失败 - WorkOrderID: {}", workOrderId, e);
         }
     }
 
@@ -291,4 +481,47 @@ public class WorkflowService {
             default -> false;
         };
     }
+
+    /**
+     * 批量审核中单个工单的结果
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class BulkDecisionResult {
+        private Long workOrderId;
+        private boolean success;
+        private WorkOrder.WorkOrderStatus fromStatus;
+        private WorkOrder.WorkOrderStatus toStatus;
+        private String message;
+    }
+
+    private record PendingAdvance(WorkOrder workOrder, WorkOrder.WorkOrderStatus nextStatus, LocalDateTime slaDeadline) {
+    }
+
+    /**
+     * 工单审核历史（由事件回放得到）
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class WorkOrderHistory {
+        private Long workOrderId;
+        private WorkOrder.WorkOrderStatus status;
+        private Long reviewerId;
+        private List<StageReview> reviews;
+        private List<WorkOrderEvent> events;
+    }
+
+    /**
+     * 单个环节的审核记录
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class StageReview {
+        private WorkOrder.WorkflowStage stage;
+        private WorkOrderEvent.EventType decision;
+        private Long reviewerId;
+        private String comment;
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        private LocalDateTime commitTime;
+    }
 }
@@ -0,0 +1,91 @@
+package com.xingye.bankrisk.service;
+
+import com.xingye.bankrisk.entity.WorkOrder;
+import com.xingye.bankrisk.entity.WorkOrderEvent;
+import com.xingye.bankrisk.metrics.QueryCountingDataSource;
+import com.xingye.bankrisk.metrics.QueryStats;
+import com.xingye.bankrisk.support.QueryCountAssertions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 工单事件日志的SQL语句数：同一事务追加的事件在提交前一次批量写入，而不是每个事件一条 INSERT
+ */
+class WorkOrderEventLogTest {
+
+    private PreparedStatement statement;
+    private WorkOrderEventLog eventLog;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Connection connection = mock(Connection.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        statement = mock(PreparedStatement.class);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.supportsBatchUpdates()).thenReturn(true);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.getConnection()).thenReturn(connection);
+        when(statement.executeBatch()).thenReturn(new int[]{1, 1, 1});
+
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+
+        eventLog = new WorkOrderEventLog(new JdbcTemplate(new QueryCountingDataSource(dataSource)), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(eventLog, "entityManager", mock(EntityManager.class));
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (Object key : new ArrayList<>(TransactionSynchronizationManager.getResourceMap().keySet())) {
+            TransactionSynchronizationManager.unbindResource(key);
+        }
+        TransactionSynchronizationManager.clear();
+    }
+
+    @Test
+    void eventsOfOneTransactionAreInsertedInOneBatch() throws Exception {
+        for (long id = 1; id <= 3; id++) {
+            eventLog.append(event(id));
+        }
+
+        QueryStats stats = QueryCountAssertions.assertMaxStatements(1, () -> {
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.beforeCommit(false);
+            }
+        });
+
+        assertEquals(3, stats.getRows());
+        verify(statement, times(3)).addBatch();
+        verify(statement, never()).executeUpdate();
+    }
+
+    // 私有辅助方法
+
+    private static WorkOrderEvent event(long workOrderId) {
+        return WorkOrderEvent.builder()
+                .workOrderId(workOrderId)
+                .eventType(WorkOrderEvent.EventType.CREATE)
+                .toStatus(WorkOrder.WorkOrderStatus.PENDING_JUNIOR)
+                .occurredAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,70 @@
+package com.xingye.bankrisk.support;
+
+import com.xingye.bankrisk.metrics.QueryStats;
+import com.xingye.bankrisk.metrics.QueryStatsHeaderAdvice;
+import com.xingye.bankrisk.metrics.QueryStatsRecorder;
+import org.springframework.http.HttpHeaders;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 集成测试中断言SQL语句数的辅助类
+ * 同线程调用（服务方法、MockMvc）直接统计；经真实HTTP调用时读取 X-Query-Stats 响应头（需开启 query-stats.header-enabled）
+ *
+ * <pre>
+ * QueryCountAssertions.assertMaxStatements(5, () -> mockMvc.perform(get("/products/tags")));
+ * QueryCountAssertions.assertMaxStatements(5, restTemplate.getForEntity("/api/products/tags", String.class).getHeaders());
+ * </pre>
+ */
+public final class QueryCountAssertions {
+
+    private static final Pattern STATEMENTS = Pattern.compile("statements=(\\d+)");
+
+    private QueryCountAssertions() {
+    }
+
+    @FunctionalInterface
+    public interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    /**
+     * 执行并返回期间的SQL统计
+     */
+    public static QueryStats capture(ThrowingRunnable action) throws Exception {
+        try (QueryStatsRecorder.Scope scope = QueryStatsRecorder.open()) {
+            action.run();
+            return scope.stats();
+        }
+    }
+
+    /**
+     * 断言执行期间的SQL语句数不超过 max
+     */
+    public static QueryStats assertMaxStatements(long max, ThrowingRunnable action) throws Exception {
+        QueryStats stats = capture(action);
+        if (stats.getStatements() > max) {
+            throw new AssertionError("预期最多 " + max + " 条SQL语句，实际 " + stats);
+        }
+        return stats;
+    }
+
+    /**
+     * 根据响应头断言SQL语句数不超过 max
+     */
+    public static void assertMaxStatements(long max, HttpHeaders headers) {
+        String value = headers.getFirst(QueryStatsHeaderAdvice.HEADER);
+        if (value == null) {
+            throw new AssertionError("响应缺少 " + QueryStatsHeaderAdvice.HEADER + " 头，请开启 query-stats.header-enabled");
+        }
+        Matcher matcher = STATEMENTS.matcher(value);
+        if (!matcher.find()) {
+            throw new AssertionError("无法解析 " + QueryStatsHeaderAdvice.HEADER + ": " + value);
+        }
+        long statements = Long.parseLong(matcher.group(1));
+        if (statements > max) {
+            throw new AssertionError("预期最多 " + max + " 条SQL语句，实际 " + value);
+        }
+    }
+}
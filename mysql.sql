@@ -44,7 +44,9 @@ CREATE TABLE questionnaires (
   created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
   updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
   CONSTRAINT fk_questionnaire_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
-  INDEX idx_questionnaire_user (user_id, ctime)
+  INDEX idx_questionnaire_user (user_id, ctime),
+  INDEX idx_questionnaire_target (target, max_loss),  -- target、max_loss 提交时已从 answers 提取为普通列
+  INDEX idx_questionnaire_archive (is_latest, created_at)   -- ArchiveService 选取待归档问卷
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 -- 把 users.latest_questionnaire_id 建立外键（无问题）
@@ -131,6 +133,7 @@ CREATE TABLE work_orders (
   id BIGINT AUTO_INCREMENT PRIMARY KEY,
   customer_id BIGINT NOT NULL,              -- 谁提交的
   reviewer_id BIGINT,                       -- 当前环节处理人
+  claim_expires_at DATETIME,                -- 认领租约到期时间，心跳续期，到期由后台释放
 
   -- 当前工单状态：四个待审 + 已通过/已拒绝
   status ENUM(
@@ -153,37 +156,19 @@ CREATE TABLE work_orders (
   -- 修复：注释修正（原“表5”错误，改为“表8 portfolio_recommendations”）
   user_choice       BIGINT,        -- 用户选择的组合 ,映射到 表8 portfolio_recommendations
 
-
-  -- 四级审核的意见与时间（每级仅一条）
-  junior_reviewer_id   BIGINT,
-  junior_comment       TEXT,
-  junior_commit_time   DATETIME,
-
-  mid_reviewer_id      BIGINT,
-  mid_comment          TEXT,
-  mid_commit_time      DATETIME,
-
-  senior_reviewer_id   BIGINT,
-  senior_comment       TEXT,
-  senior_commit_time   DATETIME,
-
-  committee_reviewer_id BIGINT,
-  committee_comment     TEXT,
-  committee_commit_time DATETIME,
-
+  -- 各环节的审核人、意见与时间见 work_order_events，本表只保存当前状态
   created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
   updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
 
   CONSTRAINT fk_wo_customer FOREIGN KEY (customer_id) REFERENCES users(id) ON DELETE CASCADE,
   CONSTRAINT fk_wo_reviewer FOREIGN KEY (reviewer_id) REFERENCES users(id) ON DELETE SET NULL,
-  CONSTRAINT fk_wo_jr FOREIGN KEY (junior_reviewer_id) REFERENCES users(id) ON DELETE SET NULL,
-  CONSTRAINT fk_wo_mr FOREIGN KEY (mid_reviewer_id) REFERENCES users(id) ON DELETE SET NULL,
-  CONSTRAINT fk_wo_sr FOREIGN KEY (senior_reviewer_id) REFERENCES users(id) ON DELETE SET NULL,
-  CONSTRAINT fk_wo_cr FOREIGN KEY (committee_reviewer_id) REFERENCES users(id) ON DELETE SET NULL,
 
   INDEX idx_wo_status (status, priority),
   INDEX idx_wo_customer (customer_id, created_at),
-  INDEX idx_wo_reviewer (reviewer_id, status)
+  INDEX idx_wo_reviewer (reviewer_id, status),
+  INDEX idx_wo_created (created_at),
+  INDEX idx_wo_status_updated (status, updated_at),
+  INDEX idx_wo_claim_expires (claim_expires_at)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 -- 8) 组合明细：修复3个问题（多余逗号、缺失外键、缺失索引）
@@ -198,19 +183,106 @@ CREATE TABLE portfolio_recommendations (
   llm_suggestion    JSON NULL,        -- GPT/其他大模型生成或优化 每个组合下面都有一个AI 推荐理由
   created_at    DATETIME DEFAULT CURRENT_TIMESTAMP,
 
+  -- 由 JSON 字段派生的虚拟生成列，不占行存储，仅用于索引和筛选
+  products_count  INT AS (JSON_LENGTH(product_ids)) VIRTUAL,
+  risk_level      VARCHAR(16) AS (JSON_VALUE(llm_suggestion, '$.risk_level' RETURNING CHAR(16) NULL ON ERROR)) VIRTUAL,
+  expected_return DECIMAL(10,4) AS (JSON_VALUE(llm_suggestion, '$.expected_return' RETURNING DECIMAL(10,4) NULL ON ERROR)) VIRTUAL,
+  expected_risk   DECIMAL(10,4) AS (JSON_VALUE(llm_suggestion, '$.expected_risk' RETURNING DECIMAL(10,4) NULL ON ERROR)) VIRTUAL,
+
   -- 修复1：为user_id添加外键（确保绑定用户有效）
   CONSTRAINT fk_pr_user     FOREIGN KEY (user_id)       REFERENCES users(id)      ON DELETE CASCADE,
-  CONSTRAINT fk_pr_wo       FOREIGN KEY (work_order_id) REFERENCES work_orders(id) ON DELETE CASCADE,
+  -- 不对 work_order_id 建外键：已完成的工单会被移入 work_orders_archive，组合明细须保留
   -- 修复2：移除最后一个外键后的多余逗号
   CONSTRAINT fk_pr_customer FOREIGN KEY (customer_id)   REFERENCES users(id)      ON DELETE CASCADE,
 
   -- 修复3：添加常用查询索引（提升按用户、工单查询的效率）
   INDEX idx_pr_user (user_id, created_at),
   INDEX idx_pr_customer (customer_id, work_order_id),
-  INDEX idx_pr_wo (work_order_id)
+  INDEX idx_pr_wo (work_order_id),
+  INDEX idx_pr_risk_return (risk_level, expected_return),
+  INDEX idx_pr_products_count (products_count)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 
+-- 9) 产品收益序列：用于估计协方差矩阵
+DROP TABLE IF EXISTS product_returns;
+CREATE TABLE product_returns (
+  id          BIGINT AUTO_INCREMENT PRIMARY KEY,
+  product_id  BIGINT NOT NULL,
+  return_date DATE NOT NULL,         -- 收益期末日期
+  return_pct  DECIMAL(8,4) NOT NULL, -- 区间收益率（百分比）
+  created_at  DATETIME DEFAULT CURRENT_TIMESTAMP,
+  CONSTRAINT fk_return_product FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE CASCADE,
+  UNIQUE KEY uk_return_product_date (product_id, return_date),
+  INDEX idx_return_date (return_date)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 10) 产品评分汇总：写入评分时增量维护，评分读取只访问本表
+DROP TABLE IF EXISTS product_rating_summary;
+CREATE TABLE product_rating_summary (
+  product_id            BIGINT PRIMARY KEY,
+  latest_rating_id      BIGINT,
+  latest_rating_date    DATE,
+  latest_overall_rating DECIMAL(3,1),
+  rating_count          BIGINT NOT NULL DEFAULT 0,  -- 综合评分非空的评分次数
+  rating_sum            DECIMAL(14,1) NOT NULL DEFAULT 0,
+  average_rating        DECIMAL(5,2),
+  decayed_sum           DOUBLE NOT NULL DEFAULT 0,  -- 折算到 decay_reference_date 的加权评分和
+  decayed_weight        DOUBLE NOT NULL DEFAULT 0,
+  decay_reference_date  DATE,
+  decayed_rating        DECIMAL(5,2),               -- 指数衰减平均（半衰期见 risk.rating.decay-half-life-days）
+  updated_at            DATETIME DEFAULT CURRENT_TIMESTAMP,
+  CONSTRAINT fk_summary_product FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE CASCADE,
+  INDEX idx_summary_latest (latest_overall_rating)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 11) 归档表：已完成的工单、历史问卷超过保留期后由 ArchiveService 移入，按创建月份分区
+-- 分区表不支持外键，热表保持原结构；归档表只在末尾分区 pmax 之前按月拆分（见 ArchiveService），
+-- 过期月份可直接 DROP / EXCHANGE PARTITION 导出，无需逐行删除
+DROP TABLE IF EXISTS work_orders_archive;
+CREATE TABLE work_orders_archive LIKE work_orders;
+ALTER TABLE work_orders_archive
+  MODIFY id BIGINT NOT NULL,
+  MODIFY created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  DROP PRIMARY KEY,
+  ADD PRIMARY KEY (id, created_at);
+ALTER TABLE work_orders_archive
+  PARTITION BY RANGE COLUMNS(created_at) (
+    PARTITION p_history VALUES LESS THAN ('2024-01-01'),
+    PARTITION pmax VALUES LESS THAN (MAXVALUE)
+  );
+
+DROP TABLE IF EXISTS questionnaires_archive;
+CREATE TABLE questionnaires_archive LIKE questionnaires;
+ALTER TABLE questionnaires_archive
+  MODIFY id BIGINT NOT NULL,
+  MODIFY created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  DROP PRIMARY KEY,
+  ADD PRIMARY KEY (id, created_at);
+ALTER TABLE questionnaires_archive
+  PARTITION BY RANGE COLUMNS(created_at) (
+    PARTITION p_history VALUES LESS THAN ('2024-01-01'),
+    PARTITION pmax VALUES LESS THAN (MAXVALUE)
+  );
+
+-- 12) 工单事件：只追加的审核历史（创建、认领、通过、拒绝、升级、改派），按 id 顺序回放得到各环节审核记录
+-- 由 WorkOrderEventLog 随业务事务批量写入；不对 work_order_id 建外键，工单归档后事件保留
+DROP TABLE IF EXISTS work_order_events;
+CREATE TABLE work_order_events (
+  id           BIGINT AUTO_INCREMENT PRIMARY KEY,
+  work_order_id BIGINT NOT NULL,
+  event_type   VARCHAR(16) NOT NULL,   -- CREATE / CLAIM / APPROVE / REJECT / ESCALATE / REASSIGN
+  stage        VARCHAR(32),            -- 发生时的审核环节，状态不限于四级
+  from_status  VARCHAR(32),
+  to_status    VARCHAR(32) NOT NULL,
+  actor_id     BIGINT,                 -- 操作人
+  reviewer_id  BIGINT,                 -- 事件后的当前处理人
+  comment      MEDIUMBLOB,             -- 压缩编码（见 CompressedTextConverter）
+  occurred_at  DATETIME NOT NULL,
+  INDEX idx_woe_work_order (work_order_id, id),
+  INDEX idx_woe_actor (actor_id, occurred_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
 SET FOREIGN_KEY_CHECKS = 1;
 
 -- 初始化数据（无问题，已校验字段对应关系）
@@ -311,4 +383,28 @@ INSERT INTO product_ratings (product_id, rating_date, overall_rating, risk_adjus
 (12, '2024-01-15', 8.5, 8.2, 8.8, 8.2, '晨星'),
 (13, '2024-01-15', 8.8, 8.5, 9.0, 8.5, '晨星'),
 (14, '2024-01-15', 7.5, 8.0, 7.0, 7.5, '晨星'),
-(15, '2024-01-15', 7.0, 7.5, 6.5, 7.0, '晨星');
\ No newline at end of file
+(15, '2024-01-15', 7.0, 7.5, 6.5, 7.0, '晨星');
+
+-- 根据评分历史初始化产品评分汇总（衰减半衰期 180 天）
+INSERT INTO product_rating_summary (product_id, latest_rating_id, latest_rating_date, latest_overall_rating,
+  rating_count, rating_sum, average_rating, decayed_sum, decayed_weight, decay_reference_date, decayed_rating, updated_at)
+SELECT agg.product_id, latest.id, latest.rating_date, latest.overall_rating,
+       agg.rating_count, agg.rating_sum, ROUND(agg.rating_sum / agg.rating_count, 2),
+       agg.decayed_sum, agg.decayed_weight, agg.reference_date, ROUND(agg.decayed_sum / agg.decayed_weight, 2), NOW()
+FROM (
+  SELECT pr.product_id, ref.reference_date,
+         COUNT(*) AS rating_count,
+         SUM(pr.overall_rating) AS rating_sum,
+         SUM(pr.overall_rating * EXP(-LN(2) / 180 * DATEDIFF(ref.reference_date, pr.rating_date))) AS decayed_sum,
+         SUM(EXP(-LN(2) / 180 * DATEDIFF(ref.reference_date, pr.rating_date))) AS decayed_weight
+  FROM product_ratings pr
+  JOIN (SELECT product_id, MAX(rating_date) AS reference_date
+        FROM product_ratings WHERE overall_rating IS NOT NULL GROUP BY product_id) ref
+    ON ref.product_id = pr.product_id
+  WHERE pr.overall_rating IS NOT NULL
+  GROUP BY pr.product_id, ref.reference_date
+) agg
+JOIN product_ratings latest
+  ON latest.id = (SELECT p2.id FROM product_ratings p2
+                  WHERE p2.product_id = agg.product_id AND p2.overall_rating IS NOT NULL
+                  ORDER BY p2.rating_date DESC, p2.id DESC LIMIT 1);